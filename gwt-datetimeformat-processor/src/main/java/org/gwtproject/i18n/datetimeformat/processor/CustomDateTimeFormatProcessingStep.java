@@ -23,15 +23,12 @@ import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
-import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.*;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.*;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
-import org.gwtproject.ext.PropertyOracle;
-import org.gwtproject.ext.PropertyOracleImpl;
 import org.gwtproject.i18n.processor.*;
 import org.gwtproject.i18n.shared.CustomDateTimeFormat;
 import org.gwtproject.i18n.shared.DateTimeFormat;
@@ -42,8 +39,22 @@ import org.gwtproject.i18n.shared.annotations.IsCustomDateTimeFormat;
 /** Created by colin on 7/17/16. */
 public class CustomDateTimeFormatProcessingStep extends AbstractProcessingStep {
 
+  /**
+   * The processor option naming the locale of the formats of types without {@link
+   * SupportedLocales}, {@code default} if not set.
+   */
+  static final String LOCALE_OPTION = "locale";
+
+  private final DateTimePatternCache patternCache;
+
+  private final ParallelCodeGenerator generator;
+
+  private boolean reportedLocaleProperty;
+
   public CustomDateTimeFormatProcessingStep(ProcessingEnvironment processingEnv) {
     super(processingEnv);
+    patternCache = DateTimePatternCache.load(processingEnv);
+    generator = new ParallelCodeGenerator(processingEnv);
   }
 
   public static class Builder extends StepBuilder<CustomDateTimeFormatProcessingStep> {
@@ -63,85 +74,82 @@ public class CustomDateTimeFormatProcessingStep extends AbstractProcessingStep {
       SetMultimap<Class<? extends Annotation>, Element> elementsByAnnotation) {
 
     for (Element element : elementsByAnnotation.get(IsCustomDateTimeFormat.class)) {
-      try {
-        generateCustomDateTimeFormats((TypeElement) element);
-      } catch (IOException e) {
-        ExceptionUtil.messageStackTrace(messager, e);
-      }
+      generateCustomDateTimeFormats((TypeElement) element);
     }
+    generator.writeAll();
+    patternCache.save(messager);
 
     return ImmutableSet.of();
   }
 
-  private void generateCustomDateTimeFormats(TypeElement element) throws IOException {
+  private void generateCustomDateTimeFormats(TypeElement element) {
 
     TypeElement dateTimeFormat = elements.getTypeElement(DateTimeFormat.class.getName());
     // TODO(jat): runtime locales support
     List<String> supportedLocales = getSupportedLocales(element);
 
+    // snapshot the methods on this thread, the patterns are looked up in parallel
+    String packageName = elements.getPackageOf(element).getQualifiedName().toString();
+    TypeName interfaceName = TypeName.get(element.asType());
+    List<FormatMethod> methods = new ArrayList<>();
+    element
+        .getEnclosedElements()
+        .stream()
+        .filter(e -> ElementKind.METHOD.equals(e.getKind()))
+        .map(e -> (ExecutableElement) e)
+        .forEach(
+            method -> {
+              TypeMirror returnType = method.getReturnType();
+              if (!types.isSameType(returnType, dateTimeFormat.asType())) {
+                messager.printMessage(
+                    Diagnostic.Kind.ERROR,
+                    element.getQualifiedName()
+                        + "."
+                        + method.getSimpleName().toString()
+                        + " must return DateTimeFormat");
+              }
+              CustomDateTimeFormat.Pattern annotation =
+                  method.getAnnotation(CustomDateTimeFormat.Pattern.class);
+              if (annotation == null) {
+                messager.printMessage(
+                    Diagnostic.Kind.ERROR,
+                    element.getQualifiedName()
+                        + "."
+                        + method.getSimpleName()
+                        + " must have an @Pattern annotation");
+                return;
+              }
+              methods.add(
+                  new FormatMethod(
+                      method.getSimpleName().toString(),
+                      TypeName.get(returnType),
+                      annotation.value()));
+            });
+
     supportedLocales.forEach(
         locale -> {
-          DateTimePatternGenerator dtpg = getDateTimePatternGenerator(locale);
           String className = element.getSimpleName().toString().replace('.', '_') + "_" + locale;
-
-          TypeSpec.Builder typeBuilder =
-              TypeSpec.classBuilder(className)
-                  .addModifiers(Modifier.PUBLIC)
-                  .addSuperinterface(TypeName.get(element.asType()));
-
-          element
-              .getEnclosedElements()
-              .stream()
-              .filter(e -> ElementKind.METHOD.equals(e.getKind()))
-              .map(e -> (ExecutableElement) e)
-              .forEach(
-                  method -> {
-                    TypeMirror returnType = method.getReturnType();
-                    if (!types.isSameType(returnType, dateTimeFormat.asType())) {
-                      messager.printMessage(
-                          Diagnostic.Kind.ERROR,
-                          element.getQualifiedName()
-                              + "."
-                              + method.getSimpleName().toString()
-                              + " must return DateTimeFormat");
-                    }
-                    String pattern;
-                    CustomDateTimeFormat.Pattern annotation =
-                        method.getAnnotation(CustomDateTimeFormat.Pattern.class);
-                    if (annotation == null) {
-                      messager.printMessage(
-                          Diagnostic.Kind.ERROR,
-                          element.getQualifiedName()
-                              + "."
-                              + method.getSimpleName()
-                              + " must have an @Pattern annotation");
-                    }
-                    pattern = annotation.value();
-                    pattern = dtpg.getBestPattern(pattern);
-
-                    typeBuilder.addMethod(
-                        MethodSpec.methodBuilder(method.getSimpleName().toString())
-                            .addAnnotation(Override.class)
-                            .addModifiers(Modifier.PUBLIC)
-                            .returns(TypeName.get(method.getReturnType()))
-                            .addStatement(
-                                "return $T.getFormat(\"$L\")",
-                                TypeName.get(method.getReturnType()),
-                                pattern)
-                            .build());
-                  });
-
-          JavaFile driverFile =
-              JavaFile.builder(
-                      elements.getPackageOf(element).getQualifiedName().toString(),
-                      typeBuilder.build())
-                  .build();
-
-          try {
-            driverFile.writeTo(filer);
-          } catch (IOException e) {
-            ExceptionUtil.messageStackTrace(messager, e);
-          }
+          generator.submit(
+              element,
+              () -> {
+                TypeSpec.Builder typeBuilder =
+                    TypeSpec.classBuilder(className)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addSuperinterface(interfaceName)
+                        .addOriginatingElement(element);
+                for (FormatMethod method : methods) {
+                  String pattern = getBestPattern(locale, method.skeleton);
+                  typeBuilder.addMethod(
+                      MethodSpec.methodBuilder(method.name)
+                          .addAnnotation(Override.class)
+                          .addModifiers(Modifier.PUBLIC)
+                          .returns(method.returnType)
+                          .addStatement(
+                              "return $T.getFormat(\"$L\")", method.returnType, pattern)
+                          .build());
+                }
+                return JavaFile.builder(packageName, typeBuilder.build()).build();
+              });
         });
   }
 
@@ -151,16 +159,63 @@ public class CustomDateTimeFormatProcessingStep extends AbstractProcessingStep {
       return Arrays.asList(supportedLocales.value());
     }
 
-    ProcessorContext context = new ProcessorContext(processingEnv);
-    // Get the current locale and interface type.
-    PropertyOracle propertyOracle = new PropertyOracleImpl();
-    LocaleUtils localeUtils = LocaleUtils.getInstance(messager, propertyOracle, context);
-    GwtLocale gwtLocale = localeUtils.getCompileLocale();
+    // a processor option rather than a system property, so that the build tool knows the input
+    String localeName = processingEnv.getOptions().get(LOCALE_OPTION);
+    if (localeName == null && !reportedLocaleProperty) {
+      // older builds set the system property of the compiler JVM, which is no longer used as
+      // incremental builds cannot track it; fail rather than silently ignoring it
+      String propertyValue = System.getProperty(LOCALE_OPTION);
+      if (propertyValue != null) {
+        reportedLocaleProperty = true;
+        messager.printMessage(
+            Diagnostic.Kind.ERROR,
+            "The locale system property is no longer supported, pass -A"
+                + LOCALE_OPTION
+                + "="
+                + propertyValue
+                + " to the compiler instead",
+            element);
+      }
+    }
+    GwtLocale gwtLocale =
+        LocaleUtils.getLocaleFactory()
+            .fromString(localeName == null ? GwtLocale.DEFAULT_LOCALE : localeName);
 
     return Collections.singletonList(gwtLocale.getAsString());
   }
 
+  /**
+   * Returns the localized pattern of a skeleton, from the pattern cache if possible so that ICU
+   * data is only loaded for new skeletons and locales. Called on the threads of the {@link
+   * ParallelCodeGenerator}.
+   */
+  private String getBestPattern(String localeName, String skeleton) {
+    String pattern = patternCache.get(localeName, skeleton);
+    if (pattern == null) {
+      pattern = getDateTimePatternGenerator(localeName).getBestPattern(skeleton);
+      patternCache.put(localeName, skeleton, pattern);
+    }
+    return pattern;
+  }
+
+  /**
+   * Returns the pattern generator of a locale; called on the threads of the {@link
+   * ParallelCodeGenerator}.
+   */
   protected DateTimePatternGenerator getDateTimePatternGenerator(String localeName) {
-    return new DateTimePatternGenerator(localeName);
+    return DateTimePatternGenerator.forLocale(localeName);
+  }
+
+  /** A snapshot of a method of a custom format interface. */
+  private static final class FormatMethod {
+    final String name;
+    final TypeName returnType;
+    final String skeleton;
+
+    FormatMethod(String name, TypeName returnType, String skeleton) {
+      this.name = name;
+      this.returnType = returnType;
+      this.skeleton = skeleton;
+    }
   }
 }
@@ -19,9 +19,14 @@ import com.google.auto.common.BasicAnnotationProcessor;
 import com.google.auto.service.AutoService;
 import com.google.common.collect.ImmutableList;
 import javax.annotation.processing.Processor;
+import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
 
 @AutoService(Processor.class)
+@SupportedOptions({
+  CustomDateTimeFormatProcessingStep.LOCALE_OPTION,
+  DateTimePatternCache.CACHE_DIR_OPTION
+})
 public class CustomDateTimeFormatProcessor extends BasicAnnotationProcessor {
 
   @Override
@@ -32,6 +37,7 @@ public class CustomDateTimeFormatProcessor extends BasicAnnotationProcessor {
   @Override
   protected Iterable<? extends ProcessingStep> initSteps() {
     return ImmutableList.of(
-        new CustomDateTimeFormatProcessingStep.Builder().setProcessingEnv(processingEnv).build());
+        new CustomDateTimeFormatProcessingStep.Builder().setProcessingEnv(processingEnv).build(),
+        new SupportedTimeZonesProcessingStep.Builder().setProcessingEnv(processingEnv).build());
   }
 }
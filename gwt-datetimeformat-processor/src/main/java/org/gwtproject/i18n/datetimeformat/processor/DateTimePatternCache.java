@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * The localized patterns of {@code @Pattern} skeletons computed by earlier builds, persisted in
+ * {@value #FILE_NAME}, so that an unchanged build does not need to load any skeleton tables.
+ *
+ * <p>Patterns are keyed by locale and skeleton; the whole file is discarded when it was written
+ * with other data, see {@link DateTimePatternGenerator#getDataVersion()}. It is kept in a {@code
+ * gwt-i18n} directory next to the class output directory, or in the directory given by the
+ * {@value #CACHE_DIR_OPTION} processor option. The cache is disabled when the class output is not
+ * on the file system.
+ *
+ * <p>All methods may be called from multiple threads.
+ */
+final class DateTimePatternCache {
+
+  /** The processor option setting the directory of the cache file. */
+  static final String CACHE_DIR_OPTION = "gwt.i18n.cacheDir";
+
+  static final String FILE_NAME = "date-time-patterns.properties";
+
+  private static final String DATA_VERSION_KEY = "data.version";
+
+  // the cache file, or null if disabled
+  private final Path file;
+
+  private final Properties patterns = new Properties();
+
+  private boolean modified;
+
+  private DateTimePatternCache(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Loads the cache of a compilation.
+   *
+   * @param processingEnv the environment of the processor
+   * @return the cache, empty if no usable file exists yet
+   */
+  static DateTimePatternCache load(ProcessingEnvironment processingEnv) {
+    Path directory = getDirectory(processingEnv);
+    DateTimePatternCache cache =
+        new DateTimePatternCache(directory == null ? null : directory.resolve(FILE_NAME));
+    if (cache.file != null && Files.isRegularFile(cache.file)) {
+      try (InputStream in = Files.newInputStream(cache.file)) {
+        cache.patterns.load(in);
+      } catch (IOException | IllegalArgumentException e) {
+        cache.patterns.clear();
+      }
+      String version = cache.patterns.getProperty(DATA_VERSION_KEY);
+      if (!DateTimePatternGenerator.getDataVersion().equals(version)) {
+        cache.patterns.clear();
+      }
+    }
+    return cache;
+  }
+
+  private static Path getDirectory(ProcessingEnvironment processingEnv) {
+    String option = processingEnv.getOptions().get(CACHE_DIR_OPTION);
+    if (option != null) {
+      return Paths.get(option);
+    }
+    try {
+      FileObject probe =
+          processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", FILE_NAME);
+      URI uri = probe.toUri();
+      if (!"file".equals(uri.getScheme())) {
+        return null;
+      }
+      Path classOutput = Paths.get(uri).getParent();
+      return classOutput == null || classOutput.getParent() == null
+          ? null
+          : classOutput.getParent().resolve("gwt-i18n");
+    } catch (IOException | IllegalArgumentException | UnsupportedOperationException e) {
+      // some build tools do not let incremental processors look up resources
+      return null;
+    }
+  }
+
+  /**
+   * Returns the cached pattern of a skeleton.
+   *
+   * @param localeName the name of the locale
+   * @param skeleton the skeleton pattern
+   * @return the localized pattern, or null if not cached
+   */
+  synchronized String get(String localeName, String skeleton) {
+    return patterns.getProperty(key(localeName, skeleton));
+  }
+
+  /**
+   * Caches the pattern of a skeleton, to be written by the next {@link #save(Messager)}.
+   *
+   * @param localeName the name of the locale
+   * @param skeleton the skeleton pattern
+   * @param pattern the localized pattern
+   */
+  synchronized void put(String localeName, String skeleton, String pattern) {
+    if (!pattern.equals(patterns.setProperty(key(localeName, skeleton), pattern))) {
+      modified = true;
+    }
+  }
+
+  /**
+   * Writes the cache file if patterns were added since it was loaded. A failure to write it is
+   * reported as a warning, as it only costs the next build some time.
+   *
+   * @param messager the messager to report a failure to
+   */
+  synchronized void save(Messager messager) {
+    if (file == null || !modified) {
+      return;
+    }
+    patterns.setProperty(DATA_VERSION_KEY, DateTimePatternGenerator.getDataVersion());
+    try {
+      Files.createDirectories(file.getParent());
+      // replace the file at once where supported, so a concurrent build never reads it half written
+      Path temp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+      try {
+        try (OutputStream out = Files.newOutputStream(temp)) {
+          patterns.store(out, "Localized patterns of date/time format skeletons");
+        }
+        try {
+          Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+      modified = false;
+    } catch (IOException e) {
+      messager.printMessage(
+          Diagnostic.Kind.WARNING,
+          "Unable to write the date/time pattern cache " + file + ": " + e);
+    }
+  }
+
+  private static String key(String localeName, String skeleton) {
+    // locale names never contain a tab
+    return localeName + '\t' + skeleton;
+  }
+}
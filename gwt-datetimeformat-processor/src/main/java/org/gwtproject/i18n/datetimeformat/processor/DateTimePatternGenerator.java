@@ -15,24 +15,128 @@
  */
 package org.gwtproject.i18n.datetimeformat.processor;
 
-import com.ibm.icu.util.ULocale;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
 
-/** Helper class to create a localized date/time pattern based on a pattern skeleton. */
+/**
+ * Helper class to create a localized date/time pattern based on a pattern skeleton.
+ *
+ * <p>Patterns are looked up in the CLDR skeleton tables precompiled into the processor, see {@link
+ * SkeletonTable}, which give the same patterns as ICU4J. ICU4J is only used when the tables are not
+ * on the processor path, or to report a skeleton with unknown or repeated fields.
+ *
+ * <p>Instances may be shared between threads. Those returned by {@link #forLocale(String)} are
+ * cached for the life of the class loader, which in a long-lived build daemon spans processing
+ * rounds and compilations.
+ */
 public class DateTimePatternGenerator {
-  // TODO(jat): Currently uses ICU4J's DateTimePatternGenerator, but should
-  // probably be rewritten to avoid that dependency.
 
-  private final com.ibm.icu.text.DateTimePatternGenerator dtpg;
+  private static final boolean ICU_AVAILABLE = isIcuAvailable();
+
+  private static final Object lock = new Object[0];
+
+  // generators by locale name; the soft references let them go when memory runs low
+  private static final Map<String, CacheEntry> cache = new HashMap<>();
+
+  private static final ReferenceQueue<DateTimePatternGenerator> cleared = new ReferenceQueue<>();
+
+  private final String localeName;
+
+  // the precompiled patterns, or null if not on the class path
+  private final SkeletonTable table;
+
+  // the ICU generator for skeletons the table cannot match, created on first use
+  private IcuPatternGenerator icu;
+
+  // best patterns by skeleton
+  private final Map<String, String> bestPatterns = new HashMap<>();
+
+  /**
+   * Returns the shared DateTimePatternGenerator of a locale, creating it on first use or after it
+   * was reclaimed by the garbage collector.
+   *
+   * @param localeName the name of the locale, e.g. {@code "en_US"}
+   * @return the generator of the locale
+   */
+  public static DateTimePatternGenerator forLocale(String localeName) {
+    synchronized (lock) {
+      expungeCleared();
+      CacheEntry entry = cache.get(localeName);
+      DateTimePatternGenerator generator = entry == null ? null : entry.get();
+      if (generator != null) {
+        return generator;
+      }
+    }
+    // load outside of the lock; a concurrent miss for the same locale just loads twice
+    DateTimePatternGenerator generator = new DateTimePatternGenerator(localeName);
+    synchronized (lock) {
+      CacheEntry entry = cache.get(localeName);
+      DateTimePatternGenerator cached = entry == null ? null : entry.get();
+      if (cached != null) {
+        return cached;
+      }
+      cache.put(localeName, new CacheEntry(localeName, generator));
+      return generator;
+    }
+  }
+
+  /** Removes the entries whose generator was reclaimed; must be called holding the lock. */
+  private static void expungeCleared() {
+    for (Object ref = cleared.poll(); ref != null; ref = cleared.poll()) {
+      CacheEntry entry = (CacheEntry) ref;
+      if (cache.get(entry.localeName) == entry) {
+        cache.remove(entry.localeName);
+      }
+    }
+  }
+
+  /**
+   * Returns the version of the data patterns are computed from, which changes with the skeleton
+   * tables or the ICU4J version used as fallback.
+   */
+  static String getDataVersion() {
+    String version;
+    try {
+      version = "cldr " + SkeletonTable.getVersion();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return ICU_AVAILABLE ? version + ", icu " + IcuPatternGenerator.getVersion() : version;
+  }
+
+  private static boolean isIcuAvailable() {
+    try {
+      Class.forName(
+          "com.ibm.icu.text.DateTimePatternGenerator",
+          false,
+          DateTimePatternGenerator.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
 
   /**
    * Construct a DateTimePatternGenerator for a given locale.
    *
    * @param localeName
+   * @throws IllegalStateException if neither the skeleton tables nor ICU4J are on the class path
    */
   public DateTimePatternGenerator(String localeName) {
-    localeName = ULocale.canonicalize(localeName);
-    ULocale locale = new ULocale(localeName);
-    dtpg = com.ibm.icu.text.DateTimePatternGenerator.getInstance(locale);
+    this.localeName = localeName;
+    try {
+      table = SkeletonTable.load(localeName);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (table == null && !ICU_AVAILABLE) {
+      throw new IllegalStateException(
+          "Neither the date/time skeleton tables nor ICU4J are on the processor path");
+    }
   }
 
   /**
@@ -42,8 +146,49 @@ public class DateTimePatternGenerator {
    *     punctuation are ignored
    * @return a localized pattern suitable for use with {@link
    *     org.gwtproject.i18n.client.DateTimeFormat}.
+   * @throws IllegalArgumentException if the tables cannot match the skeleton and ICU4J is not on
+   *     the class path
    */
   public String getBestPattern(String skeleton) {
-    return dtpg.getBestPattern(skeleton);
+    synchronized (bestPatterns) {
+      String pattern = bestPatterns.get(skeleton);
+      if (pattern == null) {
+        pattern = table == null ? null : table.getBestPattern(skeleton);
+        if (pattern == null) {
+          pattern = getIcu(skeleton).getBestPattern(skeleton);
+        }
+        bestPatterns.put(skeleton, pattern);
+      }
+      return pattern;
+    }
+  }
+
+  /**
+   * Returns the ICU generator of the locale to match a skeleton with; must be called holding the
+   * bestPatterns lock.
+   */
+  private IcuPatternGenerator getIcu(String skeleton) {
+    if (icu == null) {
+      if (!ICU_AVAILABLE) {
+        throw new IllegalArgumentException(
+            "No date/time pattern matches the skeleton \""
+                + skeleton
+                + "\" in locale "
+                + localeName
+                + "; add ICU4J to the processor path to generate one");
+      }
+      icu = new IcuPatternGenerator(localeName);
+    }
+    return icu;
+  }
+
+  /** A soft reference to a cached generator, remembering its key for removal once cleared. */
+  private static final class CacheEntry extends SoftReference<DateTimePatternGenerator> {
+    final String localeName;
+
+    CacheEntry(String localeName, DateTimePatternGenerator generator) {
+      super(generator, cleared);
+      this.localeName = localeName;
+    }
   }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import com.ibm.icu.text.DateTimePatternGenerator;
+import com.ibm.icu.util.ULocale;
+import com.ibm.icu.util.VersionInfo;
+
+/**
+ * The ICU4J pattern generator of a locale, for the skeletons the precompiled {@link SkeletonTable}
+ * cannot match. Only loaded when ICU4J is on the class path.
+ */
+final class IcuPatternGenerator {
+
+  private final DateTimePatternGenerator dtpg;
+
+  IcuPatternGenerator(String localeName) {
+    // resolve the default locale like the tables do
+    ULocale locale = new ULocale(ULocale.canonicalize(SkeletonTable.getTableName(localeName)));
+    dtpg = DateTimePatternGenerator.getInstance(locale).freeze();
+  }
+
+  /** Returns the version of ICU4J. */
+  static String getVersion() {
+    return VersionInfo.ICU_VERSION.toString();
+  }
+
+  /** Returns the best pattern for a skeleton; the generator is frozen, so this is thread-safe. */
+  String getBestPattern(String skeleton) {
+    return dtpg.getBestPattern(skeleton);
+  }
+}
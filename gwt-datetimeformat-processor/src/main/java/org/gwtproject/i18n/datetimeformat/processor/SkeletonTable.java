@@ -0,0 +1,687 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The localized patterns of the date/time skeletons of one locale, precompiled from CLDR by {@link
+ * SkeletonTableExtractor}, and the matching of requested skeletons against them the way ICU4J's
+ * {@code DateTimePatternGenerator} does.
+ *
+ * <p>The tables are UTF-8 properties resources in {@value #RESOURCE_DIRECTORY}, mapping skeletons
+ * to patterns, with the other data of the generator under keys starting with {@code @}. Each table
+ * is complete; a locale without a table of its own uses the one of the closest locale found by
+ * removing the last {@code _} component of its name, down to {@value #ROOT}. Tables are written for
+ * ICU's locale aliases too, e.g. {@code iw} or {@code zh_HK}, so that those resolve like in ICU.
+ *
+ * <p>Instances are immutable.
+ */
+final class SkeletonTable {
+
+  static final String RESOURCE_DIRECTORY = "skeletons/";
+
+  /** The name of the table of the root locale, the last one looked up. */
+  static final String ROOT = "root";
+
+  /** The locale used for the {@code default} locale. */
+  static final String DEFAULT_LOCALE = "en";
+
+  /** The name of the resource holding {@value #VERSION_KEY}. */
+  static final String INDEX = "index";
+
+  /** The key of the version of the CLDR data of the tables, in the index. */
+  static final String VERSION_KEY = "version";
+
+  /** The key of the hour field used for {@code j}, e.g. {@code h} or {@code H}. */
+  static final String HOUR_KEY = "@hour";
+
+  /** The key of the preferred hour format used for {@code C}, e.g. {@code h} or {@code hB}. */
+  static final String ALLOWED_HOUR_KEY = "@allowedHour";
+
+  /** The key of the pattern combining a date ({@code {1}}) and a time ({@code {0}}). */
+  static final String DATE_TIME_KEY = "@dateTime";
+
+  /** The key of the decimal separator put before fractional seconds. */
+  static final String DECIMAL_KEY = "@decimal";
+
+  /**
+   * The prefix of the keys of the patterns appending a field to a pattern ({@code {0}}), followed
+   * by the number of the field; {@code {1}} is the field and {@code {2}} its name.
+   */
+  static final String APPEND_KEY = "@append";
+
+  /** The prefix of the keys of the names of the fields, followed by the number of the field. */
+  static final String NAME_KEY = "@name";
+
+  /** The number of fields of a skeleton. */
+  static final int FIELD_COUNT = 16;
+
+  private static final int DAY_PERIOD = 10;
+  private static final int HOUR = 11;
+  private static final int MINUTE = 12;
+  private static final int SECOND = 13;
+  private static final int FRACTIONAL_SECOND = 14;
+
+  private static final int DATE_MASK = (1 << DAY_PERIOD) - 1;
+  private static final int TIME_MASK = (1 << FIELD_COUNT) - 1 & ~DATE_MASK;
+  private static final int SECOND_AND_FRACTIONAL_MASK = 1 << SECOND | 1 << FRACTIONAL_SECOND;
+
+  private static final int EXTRA_FIELD = 0x10000;
+  private static final int MISSING_FIELD = 0x1000;
+
+  // the kinds of a field, numeric ones positive; the distance between two is their difference
+  private static final int DELTA = 0x10;
+  private static final int NUMERIC = 0x100;
+  private static final int NARROW = -0x101;
+  private static final int SHORTER = -0x102;
+  private static final int SHORT = -0x103;
+  private static final int LONG = -0x104;
+
+  // the patterns every table has, one per field
+  private static final String CANONICAL_ITEMS = "GyQMwWEdDFaHmsSv";
+
+  // the pattern letters: the letter, its field, its kind, and the range of widths it applies to
+  private static final int[][] TYPES = {
+    {'G', 0, SHORT, 1, 3},
+    {'G', 0, LONG, 4},
+    {'G', 0, NARROW, 5},
+    {'y', 1, NUMERIC, 1, 20},
+    {'Y', 1, NUMERIC + DELTA, 1, 20},
+    {'u', 1, NUMERIC + 2 * DELTA, 1, 20},
+    {'r', 1, NUMERIC + 3 * DELTA, 1, 20},
+    {'U', 1, SHORT, 1, 3},
+    {'U', 1, LONG, 4},
+    {'U', 1, NARROW, 5},
+    {'Q', 2, NUMERIC, 1, 2},
+    {'Q', 2, SHORT, 3},
+    {'Q', 2, LONG, 4},
+    {'Q', 2, NARROW, 5},
+    {'q', 2, NUMERIC + DELTA, 1, 2},
+    {'q', 2, SHORT - DELTA, 3},
+    {'q', 2, LONG - DELTA, 4},
+    {'q', 2, NARROW - DELTA, 5},
+    {'M', 3, NUMERIC, 1, 2},
+    {'M', 3, SHORT, 3},
+    {'M', 3, LONG, 4},
+    {'M', 3, NARROW, 5},
+    {'L', 3, NUMERIC + DELTA, 1, 2},
+    {'L', 3, SHORT - DELTA, 3},
+    {'L', 3, LONG - DELTA, 4},
+    {'L', 3, NARROW - DELTA, 5},
+    {'l', 3, NUMERIC + DELTA, 1, 1},
+    {'w', 4, NUMERIC, 1, 2},
+    {'W', 5, NUMERIC, 1},
+    {'E', 6, SHORT, 1, 3},
+    {'E', 6, LONG, 4},
+    {'E', 6, NARROW, 5},
+    {'E', 6, SHORTER, 6},
+    {'c', 6, NUMERIC + 2 * DELTA, 1, 2},
+    {'c', 6, SHORT - 2 * DELTA, 3},
+    {'c', 6, LONG - 2 * DELTA, 4},
+    {'c', 6, NARROW - 2 * DELTA, 5},
+    {'c', 6, SHORTER - 2 * DELTA, 6},
+    {'e', 6, NUMERIC + DELTA, 1, 2},
+    {'e', 6, SHORT - DELTA, 3},
+    {'e', 6, LONG - DELTA, 4},
+    {'e', 6, NARROW - DELTA, 5},
+    {'e', 6, SHORTER - DELTA, 6},
+    {'d', 7, NUMERIC, 1, 2},
+    {'g', 7, NUMERIC + DELTA, 1, 20},
+    {'D', 8, NUMERIC, 1, 3},
+    {'F', 9, NUMERIC, 1},
+    {'a', DAY_PERIOD, SHORT, 1, 3},
+    {'a', DAY_PERIOD, LONG, 4},
+    {'a', DAY_PERIOD, NARROW, 5},
+    {'b', DAY_PERIOD, SHORT - DELTA, 1, 3},
+    {'b', DAY_PERIOD, LONG - DELTA, 4},
+    {'b', DAY_PERIOD, NARROW - DELTA, 5},
+    {'B', DAY_PERIOD, SHORT - 3 * DELTA, 1, 3},
+    {'B', DAY_PERIOD, LONG - 3 * DELTA, 4},
+    {'B', DAY_PERIOD, NARROW - 3 * DELTA, 5},
+    {'H', HOUR, NUMERIC + 10 * DELTA, 1, 2},
+    {'k', HOUR, NUMERIC + 11 * DELTA, 1, 2},
+    {'h', HOUR, NUMERIC, 1, 2},
+    {'K', HOUR, NUMERIC + DELTA, 1, 2},
+    {'m', MINUTE, NUMERIC, 1, 2},
+    {'s', SECOND, NUMERIC, 1, 2},
+    {'A', SECOND, NUMERIC + DELTA, 1, 1000},
+    {'S', FRACTIONAL_SECOND, NUMERIC, 1, 1000},
+    {'v', 15, SHORT - 2 * DELTA, 1},
+    {'v', 15, LONG - 2 * DELTA, 4},
+    {'z', 15, SHORT, 1, 3},
+    {'z', 15, LONG, 4},
+    {'Z', 15, NARROW - DELTA, 1, 3},
+    {'Z', 15, LONG - DELTA, 4},
+    {'Z', 15, SHORT - DELTA, 5},
+    {'O', 15, SHORT - DELTA, 1},
+    {'O', 15, LONG - DELTA, 4},
+    {'V', 15, SHORT - DELTA, 1},
+    {'V', 15, LONG - DELTA, 2},
+    {'V', 15, LONG - 1 - DELTA, 3},
+    {'V', 15, LONG - 2 - DELTA, 4},
+    {'X', 15, NARROW - DELTA, 1},
+    {'X', 15, SHORT - DELTA, 2},
+    {'X', 15, LONG - DELTA, 4},
+    {'x', 15, NARROW - DELTA, 1},
+    {'x', 15, SHORT - DELTA, 2},
+    {'x', 15, LONG - DELTA, 4},
+  };
+
+  // the entries, in the order ICU4J tries them
+  private final Entry[] entries;
+  private final char hourField;
+  private final String allowedHourFormat;
+  private final String dateTimeFormat;
+  private final String decimal;
+  private final String[] appendFormats = new String[FIELD_COUNT];
+  private final String[] names = new String[FIELD_COUNT];
+
+  SkeletonTable(Map<String, String> table) {
+    hourField = table.getOrDefault(HOUR_KEY, "H").charAt(0);
+    allowedHourFormat = table.getOrDefault(ALLOWED_HOUR_KEY, String.valueOf(hourField));
+    dateTimeFormat = table.getOrDefault(DATE_TIME_KEY, "{1} {0}");
+    decimal = table.getOrDefault(DECIMAL_KEY, ".");
+    for (int i = 0; i < FIELD_COUNT; i++) {
+      appendFormats[i] = table.getOrDefault(APPEND_KEY + i, "{0} ├{2}: {1}┤");
+      names[i] = table.getOrDefault(NAME_KEY + i, "F" + i);
+    }
+    Map<Skeleton, Entry> byFields = new HashMap<>();
+    for (Map.Entry<String, String> entry : table.entrySet()) {
+      if (!entry.getKey().startsWith("@")) {
+        Skeleton fields = Skeleton.parse(entry.getKey());
+        byFields.put(fields, new Entry(fields, entry.getValue()));
+      }
+    }
+    for (int i = 0; i < CANONICAL_ITEMS.length(); i++) {
+      String item = CANONICAL_ITEMS.substring(i, i + 1);
+      Skeleton fields = Skeleton.parse(item);
+      byFields.putIfAbsent(fields, new Entry(fields, item));
+    }
+    List<Entry> list = new ArrayList<>(byFields.values());
+    list.sort((a, b) -> b.fields.compareTo(a.fields));
+    entries = list.toArray(new Entry[0]);
+  }
+
+  /**
+   * Loads the table of a locale.
+   *
+   * @param localeName the name of the locale, e.g. {@code "de_CH"} or {@code "default"}
+   * @return the table, or null if no tables are on the class path
+   * @throws IOException if a table cannot be read
+   */
+  static SkeletonTable load(String localeName) throws IOException {
+    Map<String, String> table = new HashMap<>();
+    for (String name = getTableName(localeName); !read(name, table); ) {
+      if (name.equals(ROOT)) {
+        return null;
+      }
+      int end = name.lastIndexOf('_');
+      name = end < 0 ? ROOT : name.substring(0, end);
+    }
+    return new SkeletonTable(table);
+  }
+
+  /** Returns the name of the table of a locale before falling back to its parents. */
+  static String getTableName(String localeName) {
+    String name = localeName.replace('-', '_');
+    return name.isEmpty() || name.equals("default") ? DEFAULT_LOCALE : name;
+  }
+
+  /**
+   * Returns the version of the CLDR data of the tables on the class path.
+   *
+   * @return the version, or null if no tables are on the class path
+   * @throws IOException if the index cannot be read
+   */
+  static String getVersion() throws IOException {
+    Map<String, String> index = new HashMap<>();
+    return read(INDEX, index) ? index.get(VERSION_KEY) : null;
+  }
+
+  private static boolean read(String name, Map<String, String> table) throws IOException {
+    InputStream in =
+        SkeletonTable.class.getResourceAsStream(RESOURCE_DIRECTORY + name + ".properties");
+    if (in == null) {
+      return false;
+    }
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      Properties properties = new Properties();
+      properties.load(reader);
+      for (String key : properties.stringPropertyNames()) {
+        table.put(key, properties.getProperty(key));
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the best pattern for a skeleton: the pattern of the entry closest to it, with its field
+   * widths adjusted, or else the patterns for its date and time parts, each built by appending the
+   * fields missing from the closest entry, combined with {@value #DATE_TIME_KEY}.
+   *
+   * @param skeleton a skeleton pattern, spaces and punctuation are ignored
+   * @return the localized pattern, empty if the skeleton has no fields, or null if it has an
+   *     unknown or repeated field
+   */
+  String getBestPattern(String skeleton) {
+    boolean[] usesCapJ = new boolean[1];
+    Skeleton requested;
+    try {
+      requested = Skeleton.parse(mapMetacharacters(skeleton, usesCapJ));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    Match best = getBestRaw(requested, -1);
+    if (best.missing == 0 && best.extra == 0) {
+      return adjust(best.pattern, best.fields, requested, usesCapJ[0], false);
+    }
+    int fieldMask = requested.getFieldMask();
+    String datePattern = getBestAppending(requested, fieldMask & DATE_MASK, usesCapJ[0]);
+    String timePattern = getBestAppending(requested, fieldMask & TIME_MASK, usesCapJ[0]);
+    if (datePattern == null) {
+      return timePattern == null ? "" : timePattern;
+    }
+    if (timePattern == null) {
+      return datePattern;
+    }
+    return format(dateTimeFormat, timePattern, datePattern);
+  }
+
+  /**
+   * Replaces {@code j}, {@code C} and {@code J} with the hour and day period fields they stand for,
+   * and drops quoted text.
+   */
+  private String mapMetacharacters(String skeleton, boolean[] usesCapJ) {
+    StringBuilder mapped = new StringBuilder(skeleton.length() + 2);
+    boolean inQuote = false;
+    for (int i = 0; i < skeleton.length(); i++) {
+      char ch = skeleton.charAt(i);
+      if (ch == '\'') {
+        inQuote = !inQuote;
+      } else if (inQuote) {
+        continue;
+      } else if (ch == 'j' || ch == 'C') {
+        int extra = 0;
+        while (i + 1 < skeleton.length() && skeleton.charAt(i + 1) == ch) {
+          extra++;
+          i++;
+        }
+        int hourWidth = 1 + (extra & 1);
+        int dayPeriodWidth = extra < 2 ? 1 : 3 + (extra >> 1);
+        char hour = hourField;
+        char dayPeriod = 'a';
+        if (ch == 'C') {
+          hour = allowedHourFormat.charAt(0);
+          char last = allowedHourFormat.charAt(allowedHourFormat.length() - 1);
+          if (last == 'b' || last == 'B') {
+            dayPeriod = last;
+          }
+        }
+        if (hour == 'H' || hour == 'k') {
+          dayPeriodWidth = 0;
+        }
+        repeat(mapped, dayPeriod, dayPeriodWidth);
+        repeat(mapped, hour, hourWidth);
+      } else if (ch == 'J') {
+        mapped.append('H');
+        usesCapJ[0] = true;
+      } else {
+        mapped.append(ch);
+      }
+    }
+    return mapped.toString();
+  }
+
+  /** Returns the first of the closest entries to the included fields of a skeleton. */
+  private Match getBestRaw(Skeleton requested, int includeMask) {
+    Match best = new Match();
+    int bestDistance = Integer.MAX_VALUE;
+    for (Entry entry : entries) {
+      int missing = 0;
+      int extra = 0;
+      int distance = 0;
+      for (int i = 0; i < FIELD_COUNT; i++) {
+        int type = (includeMask & 1 << i) == 0 ? 0 : requested.types[i];
+        int entryType = entry.fields.types[i];
+        if (type == entryType) {
+          continue;
+        }
+        if (type == 0) {
+          distance += EXTRA_FIELD;
+          extra |= 1 << i;
+        } else if (entryType == 0) {
+          distance += MISSING_FIELD;
+          missing |= 1 << i;
+        } else {
+          distance += Math.abs(type - entryType);
+        }
+      }
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        best.pattern = entry.pattern;
+        best.fields = entry.fields;
+        best.missing = missing;
+        best.extra = extra;
+        if (distance == 0) {
+          break;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Returns the pattern for some fields of a skeleton, appending the fields the closest entry lacks
+   * one by one, or null if no fields are asked for.
+   */
+  private String getBestAppending(Skeleton requested, int fieldMask, boolean usesCapJ) {
+    if (fieldMask == 0) {
+      return null;
+    }
+    Match match = getBestRaw(requested, fieldMask);
+    boolean fixFractional = false;
+    String pattern = adjust(match.pattern, match.fields, requested, usesCapJ, fixFractional);
+    int missing = match.missing;
+    while (missing != 0) {
+      if ((missing & SECOND_AND_FRACTIONAL_MASK) == 1 << FRACTIONAL_SECOND
+          && (fieldMask & SECOND_AND_FRACTIONAL_MASK) == SECOND_AND_FRACTIONAL_MASK) {
+        // put the fractional seconds right after the seconds
+        fixFractional = true;
+        pattern = adjust(pattern, match.fields, requested, usesCapJ, fixFractional);
+        missing &= ~(1 << FRACTIONAL_SECOND);
+        continue;
+      }
+      Match next = getBestRaw(requested, missing);
+      String appended = adjust(next.pattern, next.fields, requested, usesCapJ, fixFractional);
+      int field = 31 - Integer.numberOfLeadingZeros(missing & ~next.missing);
+      missing = next.missing;
+      pattern = format(appendFormats[field], pattern, appended, "'" + names[field] + "'");
+    }
+    return pattern;
+  }
+
+  /**
+   * Returns a pattern with the letters and widths of its fields adjusted to those requested. The
+   * hour, minute and second fields keep the widths of the pattern.
+   *
+   * @param pattern the pattern of an entry
+   * @param fields the fields of the skeleton of the entry
+   * @param requested the requested fields
+   * @param usesCapJ true to use the preferred hour field of the locale
+   * @param fixFractional true to put the requested fractional seconds after the seconds
+   */
+  private String adjust(
+      String pattern,
+      Skeleton fields,
+      Skeleton requested,
+      boolean usesCapJ,
+      boolean fixFractional) {
+    StringBuilder adjusted = new StringBuilder(pattern.length() + 4);
+    for (String item : split(pattern)) {
+      if (!isLetter(item.charAt(0))) {
+        adjusted.append(item);
+        continue;
+      }
+      int[] row = TYPES[getTypeIndex(item)];
+      int field = row[1];
+      if (fixFractional && field == SECOND) {
+        adjusted.append(item).append(decimal);
+        repeat(adjusted, requested.chars[FRACTIONAL_SECOND], requested.widths[FRACTIONAL_SECOND]);
+      } else if (requested.types[field] != 0) {
+        char requestedChar = requested.chars[field];
+        int width = requested.widths[field];
+        if (requestedChar == 'E' && width < 3) {
+          width = 3;
+        }
+        if (field == HOUR || field == MINUTE || field == SECOND) {
+          width = item.length();
+        } else if (fields.widths[field] == width || (row[2] > 0) != (fields.types[field] > 0)) {
+          width = item.length();
+        }
+        char ch =
+            field != HOUR && field != 3 && field != 6 && (field != 1 || requestedChar == 'Y')
+                ? requestedChar
+                : item.charAt(0);
+        if (field == HOUR && usesCapJ) {
+          ch = hourField;
+        }
+        repeat(adjusted, ch, width);
+      } else {
+        adjusted.append(item);
+      }
+    }
+    return adjusted.toString();
+  }
+
+  /**
+   * Formats a pattern with {@code {0}}, {@code {1}} and {@code {2}} placeholders. Two apostrophes
+   * stand for one; a single one quotes braces up to the next one, and is otherwise kept.
+   */
+  static String format(String format, String... arguments) {
+    StringBuilder formatted = new StringBuilder(format.length() + 16);
+    boolean inQuote = false;
+    for (int i = 0; i < format.length(); i++) {
+      char ch = format.charAt(i);
+      if (ch == '\'') {
+        if (i + 1 < format.length() && format.charAt(i + 1) == '\'') {
+          i++;
+        } else if (inQuote) {
+          inQuote = false;
+          continue;
+        } else if (i + 1 < format.length()
+            && (format.charAt(i + 1) == '{' || format.charAt(i + 1) == '}')) {
+          ch = format.charAt(++i);
+          inQuote = true;
+        }
+      } else if (!inQuote && ch == '{') {
+        int end = format.indexOf('}', i);
+        int index = end == i + 2 ? format.charAt(i + 1) - '0' : -1;
+        if (index < 0 || index >= arguments.length) {
+          throw new IllegalArgumentException("Bad argument in \"" + format + "\" at " + i);
+        }
+        formatted.append(arguments[index]);
+        i = end;
+        continue;
+      }
+      formatted.append(ch);
+    }
+    return formatted.toString();
+  }
+
+  /**
+   * Splits a pattern into its fields, runs of a letter outside of quotes, and the text between
+   * them, kept as is.
+   */
+  private static List<String> split(String pattern) {
+    List<String> items = new ArrayList<>();
+    boolean inQuote = false;
+    int start = 0;
+    for (int i = 0; i < pattern.length(); ) {
+      char ch = pattern.charAt(i);
+      if (ch == '\'') {
+        inQuote = !inQuote;
+      } else if (!inQuote && isLetter(ch)) {
+        if (start < i) {
+          items.add(pattern.substring(start, i));
+        }
+        int end = i + 1;
+        while (end < pattern.length() && pattern.charAt(end) == ch) {
+          end++;
+        }
+        items.add(pattern.substring(i, end));
+        start = i = end;
+        continue;
+      }
+      i++;
+    }
+    if (start < pattern.length()) {
+      items.add(pattern.substring(start));
+    }
+    return items;
+  }
+
+  /**
+   * Returns the index in {@link #TYPES} of a field: the row of its letter for its width, or the
+   * last row of its letter.
+   *
+   * @throws IllegalArgumentException if the letter is no pattern letter
+   */
+  private static int getTypeIndex(String field) {
+    char ch = field.charAt(0);
+    int width = field.length();
+    int best = -1;
+    for (int i = 0; i < TYPES.length; i++) {
+      int[] row = TYPES[i];
+      if (row[0] == ch) {
+        best = i;
+        if (row[3] <= width && width <= row[row.length - 1]) {
+          return i;
+        }
+      }
+    }
+    if (best < 0) {
+      throw new IllegalArgumentException("Illegal date/time field: " + field);
+    }
+    return best;
+  }
+
+  private static void repeat(StringBuilder builder, char ch, int count) {
+    for (int i = 0; i < count; i++) {
+      builder.append(ch);
+    }
+  }
+
+  private static boolean isLetter(char ch) {
+    return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+  }
+
+  /** The fields of a skeleton: the letter, width and kind of each. */
+  private static final class Skeleton implements Comparable<Skeleton> {
+    final char[] chars = new char[FIELD_COUNT];
+    final int[] widths = new int[FIELD_COUNT];
+    final int[] types = new int[FIELD_COUNT];
+
+    /**
+     * Parses the fields of a skeleton, ignoring anything but pattern letters. A day period is added
+     * to a 12 hour field without one, and dropped from a 24 hour field.
+     *
+     * @throws IllegalArgumentException if a field is unknown or given twice
+     */
+    static Skeleton parse(String skeleton) {
+      Skeleton fields = new Skeleton();
+      for (String item : split(skeleton)) {
+        if (!isLetter(item.charAt(0))) {
+          continue;
+        }
+        int[] row = TYPES[getTypeIndex(item)];
+        int field = row[1];
+        char ch = item.charAt(0);
+        if (fields.widths[field] != 0) {
+          char other = fields.chars[field];
+          if ((other == 'r' && ch == 'U') || (other == 'U' && ch == 'r')) {
+            continue;
+          }
+          throw new IllegalArgumentException(
+              "Conflicting fields " + other + " and " + item + " in " + skeleton);
+        }
+        fields.chars[field] = ch;
+        fields.widths[field] = item.length();
+        fields.types[field] = row[2] > 0 ? row[2] + item.length() : row[2];
+      }
+      if (fields.widths[HOUR] != 0) {
+        char hour = fields.chars[HOUR];
+        if (hour == 'h' || hour == 'K') {
+          if (fields.widths[DAY_PERIOD] == 0) {
+            fields.chars[DAY_PERIOD] = 'a';
+            fields.widths[DAY_PERIOD] = 1;
+            fields.types[DAY_PERIOD] = SHORT;
+          }
+        } else {
+          fields.chars[DAY_PERIOD] = 0;
+          fields.widths[DAY_PERIOD] = 0;
+          fields.types[DAY_PERIOD] = 0;
+        }
+      }
+      return fields;
+    }
+
+    int getFieldMask() {
+      int mask = 0;
+      for (int i = 0; i < FIELD_COUNT; i++) {
+        if (types[i] != 0) {
+          mask |= 1 << i;
+        }
+      }
+      return mask;
+    }
+
+    @Override
+    public int compareTo(Skeleton other) {
+      for (int i = 0; i < FIELD_COUNT; i++) {
+        if (chars[i] != other.chars[i]) {
+          return chars[i] - other.chars[i];
+        }
+        if (widths[i] != other.widths[i]) {
+          return widths[i] - other.widths[i];
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Skeleton
+          && Arrays.equals(chars, ((Skeleton) other).chars)
+          && Arrays.equals(widths, ((Skeleton) other).widths);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(chars) * 31 + Arrays.hashCode(widths);
+    }
+  }
+
+  /** A skeleton of the table, parsed, and its pattern. */
+  private static final class Entry {
+    final Skeleton fields;
+    final String pattern;
+
+    Entry(Skeleton fields, String pattern) {
+      this.fields = fields;
+      this.pattern = pattern;
+    }
+  }
+
+  /** The closest entry to a skeleton, and the fields it lacks or has in addition. */
+  private static final class Match {
+    String pattern;
+    Skeleton fields;
+    int missing;
+    int extra;
+  }
+}
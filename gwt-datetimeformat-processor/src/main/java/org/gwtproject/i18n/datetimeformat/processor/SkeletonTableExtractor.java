@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import com.ibm.icu.impl.ICUData;
+import com.ibm.icu.impl.ICUResourceBundle;
+import com.ibm.icu.text.DateTimePatternGenerator;
+import com.ibm.icu.util.ULocale;
+import com.ibm.icu.util.UResourceBundle;
+import com.ibm.icu.util.VersionInfo;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Extracts the {@link SkeletonTable skeleton tables} of all locales known to ICU4J, including its
+ * aliases such as {@code iw} or {@code zh_TW}. Run at build time, so that the processor does not
+ * need ICU4J.
+ *
+ * <p>Usage: {@code SkeletonTableExtractor <output directory>}, the root of the class path the
+ * tables are written to.
+ */
+public class SkeletonTableExtractor {
+
+  // the full table of each locale extracted so far, to skip those equal to their parent's
+  private final Map<String, Map<String, String>> tables = new HashMap<>();
+
+  private final Path directory;
+
+  // the allowed hour formats by region, which DateTimePatternGenerator keeps to itself, so that
+  // they are read from ICU4J's internal data like it does
+  private final UResourceBundle timeData =
+      UResourceBundle.getBundleInstance(
+              ICUData.ICU_BASE_NAME, "supplementalData", ICUResourceBundle.ICU_DATA_CLASS_LOADER)
+          .get("timeData");
+
+  private SkeletonTableExtractor(Path directory) {
+    this.directory = directory;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: SkeletonTableExtractor <output directory>");
+      System.exit(1);
+    }
+    Path directory =
+        Paths.get(args[0])
+            .resolve(SkeletonTableExtractor.class.getPackage().getName().replace('.', '/'))
+            .resolve(SkeletonTable.RESOURCE_DIRECTORY);
+    Files.createDirectories(directory);
+    SkeletonTableExtractor extractor = new SkeletonTableExtractor(directory);
+    extractor.extract(SkeletonTable.ROOT);
+    for (String name : getLocaleNames()) {
+      extractor.extract(name.isEmpty() ? SkeletonTable.ROOT : name);
+    }
+    Map<String, String> index = new TreeMap<>();
+    index.put(SkeletonTable.VERSION_KEY, VersionInfo.ICU_VERSION.toString());
+    extractor.write(SkeletonTable.INDEX, index);
+  }
+
+  /**
+   * Returns the names of all locales ICU4J has data for, including aliases such as {@code iw} that
+   * {@link ULocale#getAvailableLocales()} leaves out; only ICU4J's internal API lists those.
+   */
+  private static Set<String> getLocaleNames() {
+    return ICUResourceBundle.getFullLocaleNameSet(
+        ICUData.ICU_BASE_NAME, ICUResourceBundle.ICU_DATA_CLASS_LOADER);
+  }
+
+  /**
+   * Extracts the table of a locale and its parents, writing it unless it equals its parent's, and
+   * returns it.
+   */
+  // ICU4J 63 has no public API for the default hour field or for quoting a pattern like it does
+  @SuppressWarnings("deprecation")
+  private Map<String, String> extract(String name) throws IOException {
+    Map<String, String> table = tables.get(name);
+    if (table != null) {
+      return table;
+    }
+    Map<String, String> parent = null;
+    if (!name.equals(SkeletonTable.ROOT)) {
+      int end = name.lastIndexOf('_');
+      parent = extract(end < 0 ? SkeletonTable.ROOT : name.substring(0, end));
+    }
+
+    ULocale locale = name.equals(SkeletonTable.ROOT) ? ULocale.ROOT : new ULocale(name);
+    DateTimePatternGenerator dtpg = DateTimePatternGenerator.getInstance(locale);
+    table = new TreeMap<>();
+    table.put(SkeletonTable.HOUR_KEY, String.valueOf(dtpg.getDefaultHourFormatChar()));
+    table.put(SkeletonTable.ALLOWED_HOUR_KEY, getAllowedHourFormat(locale));
+    table.put(SkeletonTable.DATE_TIME_KEY, dtpg.getDateTimeFormat());
+    table.put(SkeletonTable.DECIMAL_KEY, dtpg.getDecimal());
+    for (int i = 0; i < SkeletonTable.FIELD_COUNT; i++) {
+      table.put(SkeletonTable.APPEND_KEY + i, dtpg.getAppendItemFormat(i));
+      table.put(SkeletonTable.NAME_KEY + i, dtpg.getAppendItemName(i));
+    }
+    DateTimePatternGenerator.FormatParser parser = new DateTimePatternGenerator.FormatParser();
+    for (Map.Entry<String, String> entry : dtpg.getSkeletons(null).entrySet()) {
+      try {
+        // quote the literal text like ICU4J does when adjusting a pattern
+        table.put(entry.getKey(), parser.set(entry.getValue()).toString());
+      } catch (IllegalArgumentException e) {
+        // not a pattern but e.g. a table of patterns by plural form, which ICU4J cannot use either
+      }
+    }
+    tables.put(name, table);
+
+    if (!table.equals(parent)) {
+      write(name, table);
+    }
+    return table;
+  }
+
+  /**
+   * Returns the preferred hour format of the region of a locale, or of its likely region, like
+   * ICU4J does for {@code C}.
+   */
+  private String getAllowedHourFormat(ULocale locale) {
+    ULocale maximized = ULocale.addLikelySubtags(locale);
+    String region = maximized.getCountry().isEmpty() ? "001" : maximized.getCountry();
+    for (String key : new String[] {maximized.getLanguage() + "_" + region, region}) {
+      UResourceBundle allowed;
+      try {
+        allowed = timeData.get(key).get("allowed");
+      } catch (MissingResourceException e) {
+        continue;
+      }
+      return allowed.getType() == UResourceBundle.STRING
+          ? allowed.getString()
+          : allowed.getString(0);
+    }
+    return "H";
+  }
+
+  /** Writes a table sorted and without a time stamp, so that unchanged data gives equal files. */
+  private void write(String name, Map<String, String> table) throws IOException {
+    try (Writer out =
+        Files.newBufferedWriter(directory.resolve(name + ".properties"), StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, String> entry : table.entrySet()) {
+        out.write(escape(entry.getKey()));
+        out.write('=');
+        out.write(escape(entry.getValue()));
+        out.write('\n');
+      }
+    }
+  }
+
+  /** Escapes a key or value of a properties file read as UTF-8. */
+  private static String escape(String text) {
+    StringBuilder escaped = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
+      switch (ch) {
+        case '\\':
+        case ' ':
+        case ':':
+        case '=':
+        case '#':
+        case '!':
+          escaped.append('\\').append(ch);
+          break;
+        case '\t':
+          escaped.append("\\t");
+          break;
+        case '\n':
+          escaped.append("\\n");
+          break;
+        case '\r':
+          escaped.append("\\r");
+          break;
+        case '\f':
+          escaped.append("\\f");
+          break;
+        default:
+          escaped.append(ch);
+      }
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.time.DateTimeException;
+import java.util.*;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.tools.Diagnostic;
+import org.gwtproject.i18n.client.TimeZone;
+import org.gwtproject.i18n.processor.*;
+import org.gwtproject.i18n.shared.annotations.SupportedTimeZones;
+
+/**
+ * Generates a {@code <Type>_TimeZones} class for every type annotated with {@link
+ * SupportedTimeZones}, holding one precompiled {@link TimeZone} per listed zone.
+ */
+public class SupportedTimeZonesProcessingStep extends AbstractProcessingStep {
+
+  private static final int VALUES_PER_LINE = 12;
+
+  public SupportedTimeZonesProcessingStep(ProcessingEnvironment processingEnv) {
+    super(processingEnv);
+  }
+
+  public static class Builder extends StepBuilder<SupportedTimeZonesProcessingStep> {
+
+    public SupportedTimeZonesProcessingStep build() {
+      return new SupportedTimeZonesProcessingStep(processingEnv);
+    }
+  }
+
+  @Override
+  public Set<? extends Class<? extends Annotation>> annotations() {
+    return Collections.singleton(SupportedTimeZones.class);
+  }
+
+  @Override
+  public Set<Element> process(
+      SetMultimap<Class<? extends Annotation>, Element> elementsByAnnotation) {
+
+    for (Element element : elementsByAnnotation.get(SupportedTimeZones.class)) {
+      try {
+        generateTimeZones((TypeElement) element);
+      } catch (IOException e) {
+        ExceptionUtil.messageStackTrace(messager, e);
+      }
+    }
+
+    return ImmutableSet.of();
+  }
+
+  private void generateTimeZones(TypeElement element) throws IOException {
+    Set<String> ids =
+        new LinkedHashSet<>(Arrays.asList(element.getAnnotation(SupportedTimeZones.class).value()));
+    String className = element.getSimpleName().toString() + "_TimeZones";
+
+    TypeSpec.Builder typeBuilder =
+        TypeSpec.classBuilder(className)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addOriginatingElement(element)
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+
+    MethodSpec.Builder getTimeZone =
+        MethodSpec.methodBuilder("getTimeZone")
+            .addJavadoc(
+                "Returns the time zone with the given id, or {@code null} if not supported.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(TimeZone.class)
+            .addParameter(String.class, "id")
+            .beginControlFlow("switch (id)");
+
+    for (String id : ids) {
+      TimeZoneData data;
+      try {
+        data = TimeZoneData.forId(id);
+      } catch (DateTimeException e) {
+        messager.printMessage(
+            Diagnostic.Kind.ERROR, "Unknown time zone \"" + id + "\": " + e.getMessage(), element);
+        continue;
+      }
+
+      String fieldName = toConstantName(id);
+      String transitionsField = fieldName + "_TRANSITIONS";
+      String adjustmentsField = fieldName + "_ADJUSTMENTS";
+      typeBuilder.addField(intArrayField(transitionsField, data.getTransitionPoints()));
+      typeBuilder.addField(intArrayField(adjustmentsField, data.getAdjustments()));
+
+      String[] names = data.getNames();
+      typeBuilder.addField(
+          FieldSpec.builder(TimeZone.class, fieldName)
+              .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+              .initializer(
+                  "$T.createTimeZone($S, $L, new String[] {$S, $S, $S, $S}, $L, $L, $S)",
+                  TimeZone.class,
+                  id,
+                  data.getStandardOffset(),
+                  names[0],
+                  names[1],
+                  names[2],
+                  names[3],
+                  transitionsField,
+                  adjustmentsField,
+                  data.getRule())
+              .build());
+
+      getTimeZone.addCode("case $S:\n", id).addStatement("$>return $L$<", fieldName);
+    }
+
+    getTimeZone.addCode("default:\n").addStatement("$>return null$<").endControlFlow();
+    typeBuilder.addMethod(getTimeZone.build());
+
+    JavaFile.builder(
+            elements.getPackageOf(element).getQualifiedName().toString(), typeBuilder.build())
+        .build()
+        .writeTo(filer);
+  }
+
+  private static FieldSpec intArrayField(String name, int[] values) {
+    StringBuilder literal = new StringBuilder("{");
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        literal.append(i % VALUES_PER_LINE == 0 ? ",\n" : ", ");
+      }
+      literal.append(values[i]);
+    }
+    literal.append('}');
+    return FieldSpec.builder(TypeName.get(int[].class), name)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .initializer("$L", literal)
+        .build();
+  }
+
+  /**
+   * Turns a time zone id like {@code "Etc/GMT+5"} into a constant name like {@code ETC_GMT_PLUS5}.
+   */
+  static String toConstantName(String id) {
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < id.length(); i++) {
+      char c = id.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        name.append(Character.toUpperCase(c));
+      } else if (c == '+') {
+        name.append("_PLUS");
+      } else if (c == '-' && i + 1 < id.length() && Character.isDigit(id.charAt(i + 1))) {
+        name.append("_MINUS");
+      } else {
+        name.append('_');
+      }
+    }
+    return name.toString();
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneOffsetTransitionRule;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The data of one time zone in the shape expected by {@link
+ * org.gwtproject.i18n.client.TimeZone#createTimeZone(String, int, String[], int[], int[],
+ * String)}, extracted from the tz database of the JDK running the processor.
+ *
+ * <p>Transitions are kept from the one in effect on 1970-01-01 on. Where the recurring rules of a
+ * zone can be written as a POSIX TZ string, later transitions are left to that rule; otherwise
+ * explicit transitions are generated up to {@link #LAST_TRANSITION_YEAR}. Like all GWT time zone
+ * data, transition points have a resolution of one hour.
+ */
+public class TimeZoneData {
+  static final int LAST_TRANSITION_YEAR = 2100;
+
+  private static final Instant FIRST_TRANSITION = Instant.EPOCH;
+  private static final int[] MONTH_START_DAYS = {
+    0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334
+  };
+
+  /**
+   * Extracts the data of a time zone.
+   *
+   * @param id time zone id, e.g. {@code "America/New_York"}
+   * @return the time zone data
+   * @throws java.time.DateTimeException if the id is unknown
+   */
+  public static TimeZoneData forId(String id) {
+    ZoneRules rules = ZoneId.of(id).getRules();
+    List<ZoneOffsetTransitionRule> lastRules = rules.getTransitionRules();
+    List<ZoneOffsetTransition> historic = rules.getTransitions();
+
+    ZoneOffset standardOffset;
+    if (!lastRules.isEmpty()) {
+      standardOffset = lastRules.get(0).getStandardOffset();
+    } else if (!historic.isEmpty()) {
+      standardOffset = rules.getStandardOffset(historic.get(historic.size() - 1).getInstant());
+    } else {
+      standardOffset = rules.getStandardOffset(FIRST_TRANSITION);
+    }
+
+    TimeZone javaTimeZone = TimeZone.getTimeZone(id);
+    String[] names = {
+      javaTimeZone.getDisplayName(false, TimeZone.SHORT, Locale.ENGLISH),
+      javaTimeZone.getDisplayName(false, TimeZone.LONG, Locale.ENGLISH),
+      javaTimeZone.getDisplayName(true, TimeZone.SHORT, Locale.ENGLISH),
+      javaTimeZone.getDisplayName(true, TimeZone.LONG, Locale.ENGLISH)
+    };
+
+    String rule = toPosixRule(lastRules, standardOffset, names);
+    // keep the last transition before 1970 as well, it defines the offset in effect at the start
+    List<ZoneOffsetTransition> transitions = new ArrayList<>();
+    for (ZoneOffsetTransition transition : historic) {
+      if (transition.getInstant().isBefore(FIRST_TRANSITION)) {
+        transitions.clear();
+      }
+      transitions.add(transition);
+    }
+    if (rule == null && !lastRules.isEmpty()) {
+      Instant end =
+          LocalDateTime.of(LAST_TRANSITION_YEAR + 1, Month.JANUARY, 1, 0, 0)
+              .toInstant(ZoneOffset.UTC);
+      Instant last =
+          transitions.isEmpty()
+              ? FIRST_TRANSITION
+              : transitions.get(transitions.size() - 1).getInstant();
+      for (ZoneOffsetTransition next = rules.nextTransition(last);
+          next != null && next.getInstant().isBefore(end);
+          next = rules.nextTransition(next.getInstant())) {
+        transitions.add(next);
+      }
+    }
+
+    // a zone whose first transition is after 1970 needs an entry for the offset before it
+    int first = 0;
+    if (!transitions.isEmpty()
+        && !transitions.get(0).getInstant().isBefore(FIRST_TRANSITION)
+        && !transitions.get(0).getOffsetBefore().equals(standardOffset)) {
+      first = 1;
+    }
+    int[] transitionPoints = new int[transitions.size() + first];
+    int[] adjustments = new int[transitions.size() + first];
+    if (first == 1) {
+      transitionPoints[0] = Integer.MIN_VALUE;
+      adjustments[0] = getAdjustment(transitions.get(0).getOffsetBefore(), standardOffset);
+    }
+    for (int i = 0; i < transitions.size(); i++) {
+      ZoneOffsetTransition transition = transitions.get(i);
+      transitionPoints[i + first] = (int) Math.floorDiv(transition.toEpochSecond(), 3600);
+      adjustments[i + first] = getAdjustment(transition.getOffsetAfter(), standardOffset);
+    }
+
+    return new TimeZoneData(
+        id, -standardOffset.getTotalSeconds() / 60, names, transitionPoints, adjustments, rule);
+  }
+
+  private static int getAdjustment(ZoneOffset offset, ZoneOffset standardOffset) {
+    return (offset.getTotalSeconds() - standardOffset.getTotalSeconds()) / 60;
+  }
+
+  /**
+   * Writes the recurring rules of a zone as a POSIX TZ string, or returns {@code null} if there
+   * are none or they cannot be expressed that way.
+   */
+  static String toPosixRule(
+      List<ZoneOffsetTransitionRule> lastRules, ZoneOffset standardOffset, String[] names) {
+    if (lastRules.size() != 2) {
+      return null;
+    }
+    ZoneOffsetTransitionRule start = lastRules.get(0);
+    ZoneOffsetTransitionRule end = lastRules.get(1);
+    if (start.getOffsetAfter().equals(standardOffset)) {
+      start = lastRules.get(1);
+      end = lastRules.get(0);
+    }
+    ZoneOffset daylightOffset = start.getOffsetAfter();
+    if (daylightOffset.getTotalSeconds() <= standardOffset.getTotalSeconds()
+        || !end.getOffsetAfter().equals(standardOffset)) {
+      return null;
+    }
+    String startDate = toPosixDate(start);
+    String endDate = toPosixDate(end);
+    if (startDate == null || endDate == null) {
+      return null;
+    }
+    return "<"
+        + names[0]
+        + ">"
+        + toPosixTime(-standardOffset.getTotalSeconds())
+        + "<"
+        + names[2]
+        + ">"
+        + toPosixTime(-daylightOffset.getTotalSeconds())
+        + ","
+        + startDate
+        + ","
+        + endDate;
+  }
+
+  private static String toPosixDate(ZoneOffsetTransitionRule rule) {
+    String date;
+    int dayOfMonth = rule.getDayOfMonthIndicator();
+    int month = rule.getMonth().getValue();
+    if (rule.getDayOfWeek() == null) {
+      if (dayOfMonth < 0 || (month == 2 && dayOfMonth == 29)) {
+        return null;
+      }
+      date = "J" + (MONTH_START_DAYS[month - 1] + dayOfMonth);
+    } else {
+      // the tz database compiler turns "last day of week" into "day of week on or after the 7th
+      // day before the end of the month" for all months of fixed length
+      int week;
+      if (dayOfMonth == -1 || (month != 2 && dayOfMonth == rule.getMonth().length(false) - 6)) {
+        week = 5;
+      } else if (dayOfMonth > 0 && dayOfMonth % 7 == 1 && dayOfMonth <= 22) {
+        week = dayOfMonth / 7 + 1;
+      } else {
+        return null;
+      }
+      date = "M" + month + "." + week + "." + rule.getDayOfWeek().getValue() % 7;
+    }
+
+    // POSIX transition times are given in the wall time in effect before the transition
+    int time = rule.isMidnightEndOfDay() ? 24 * 3600 : rule.getLocalTime().toSecondOfDay();
+    switch (rule.getTimeDefinition()) {
+      case UTC:
+        time += rule.getOffsetBefore().getTotalSeconds();
+        break;
+      case STANDARD:
+        time +=
+            rule.getOffsetBefore().getTotalSeconds() - rule.getStandardOffset().getTotalSeconds();
+        break;
+      default:
+        break;
+    }
+    return time == 2 * 3600 ? date : date + "/" + toPosixTime(time);
+  }
+
+  private static String toPosixTime(int seconds) {
+    StringBuilder buf = new StringBuilder();
+    if (seconds < 0) {
+      buf.append('-');
+      seconds = -seconds;
+    }
+    buf.append(seconds / 3600);
+    int minutes = seconds / 60 % 60;
+    int secs = seconds % 60;
+    if (minutes != 0 || secs != 0) {
+      buf.append(minutes < 10 ? ":0" : ":").append(minutes);
+      if (secs != 0) {
+        buf.append(secs < 10 ? ":0" : ":").append(secs);
+      }
+    }
+    return buf.toString();
+  }
+
+  private final String id;
+  private final int standardOffset;
+  private final String[] names;
+  private final int[] transitionPoints;
+  private final int[] adjustments;
+  private final String rule;
+
+  private TimeZoneData(
+      String id,
+      int standardOffset,
+      String[] names,
+      int[] transitionPoints,
+      int[] adjustments,
+      String rule) {
+    this.id = id;
+    this.standardOffset = standardOffset;
+    this.names = names;
+    this.transitionPoints = transitionPoints;
+    this.adjustments = adjustments;
+    this.rule = rule;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /** Returns the standard offset in minutes, positive west of Greenwich. */
+  public int getStandardOffset() {
+    return standardOffset;
+  }
+
+  public String[] getNames() {
+    return names;
+  }
+
+  /** Returns the transition times in hours since the epoch. */
+  public int[] getTransitionPoints() {
+    return transitionPoints;
+  }
+
+  /** Returns the difference to the standard offset in minutes from each transition on. */
+  public int[] getAdjustments() {
+    return adjustments;
+  }
+
+  /** Returns the recurring rule as a POSIX TZ string, or {@code null}. */
+  public String getRule() {
+    return rule;
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.gwtproject.i18n.datetimeformat.processor.DateTimePatternGenerator;
+import org.junit.Test;
+
+/** Tests the sharing of {@link DateTimePatternGenerator} instances. */
+public class DateTimePatternGenerator_Test {
+
+  @Test
+  public void testForLocale() {
+    DateTimePatternGenerator de = DateTimePatternGenerator.forLocale("de");
+    assertThat(DateTimePatternGenerator.forLocale("de")).isSameAs(de);
+    assertThat(DateTimePatternGenerator.forLocale("en")).isNotSameAs(de);
+    assertThat(de.getBestPattern("yMMMd"))
+        .isEqualTo(new DateTimePatternGenerator("de").getBestPattern("yMMMd"))
+        .isEqualTo("d. MMM y");
+    assertThat(de.getBestPattern("yMMMd")).isSameAs(de.getBestPattern("yMMMd"));
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import org.gwtproject.i18n.client.TimeZone;
+import org.junit.Test;
+
+/** Tests the time zones generated for {@link MyTimeZones}. */
+public class SupportedTimeZones_Test {
+
+  private static final long HOUR = 3600 * 1000L;
+
+  @Test
+  public void testLookup() {
+    assertThat(MyTimeZones_TimeZones.getTimeZone("Europe/Paris"))
+        .isSameAs(MyTimeZones_TimeZones.EUROPE_PARIS);
+    assertThat(MyTimeZones_TimeZones.getTimeZone("Europe/Berlin")).isNull();
+    assertThat(MyTimeZones_TimeZones.AMERICA_NEW_YORK.getID()).isEqualTo("America/New_York");
+    assertThat(MyTimeZones_TimeZones.AMERICA_NEW_YORK.getStandardOffset()).isEqualTo(300);
+  }
+
+  @Test
+  public void testOffsetsMatchJavaTime() {
+    assertMatchesJavaTime(MyTimeZones_TimeZones.AMERICA_NEW_YORK);
+    assertMatchesJavaTime(MyTimeZones_TimeZones.EUROPE_PARIS);
+    assertMatchesJavaTime(MyTimeZones_TimeZones.AUSTRALIA_SYDNEY);
+    assertMatchesJavaTime(MyTimeZones_TimeZones.ASIA_TOKYO);
+  }
+
+  private static void assertMatchesJavaTime(TimeZone timeZone) {
+    ZoneId zone = ZoneId.of(timeZone.getID());
+    // from 1970 until 2200, well past the end of the explicit transitions
+    for (long time = 0; time < 7258118400000L; time += 13 * HOUR) {
+      int expected = -zone.getRules().getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() / 60;
+      assertThat(timeZone.getOffset(new Date(time)))
+          .as("offset of %s at %s", zone, Instant.ofEpochMilli(time))
+          .isEqualTo(expected);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.FileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests persisting patterns with a {@link DateTimePatternCache}. */
+public class DateTimePatternCache_Test {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<String> warnings = new ArrayList<>();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    ProcessingEnvironment env = environment(folder.getRoot());
+    DateTimePatternCache cache = DateTimePatternCache.load(env);
+    assertThat(cache.get("de", "yMMMd")).isNull();
+    cache.put("de", "yMMMd", "d. MMM y");
+    cache.put("en", "yMMMd", "MMM d, y");
+    cache.save(messager());
+
+    DateTimePatternCache loaded = DateTimePatternCache.load(env);
+    assertThat(loaded.get("de", "yMMMd")).isEqualTo("d. MMM y");
+    assertThat(loaded.get("en", "yMMMd")).isEqualTo("MMM d, y");
+    assertThat(loaded.get("fr", "yMMMd")).isNull();
+    assertThat(folder.getRoot().list()).containsExactly(DateTimePatternCache.FILE_NAME);
+    assertThat(warnings).isEmpty();
+  }
+
+  @Test
+  public void testSaveReplacesFile() {
+    ProcessingEnvironment env = environment(folder.getRoot());
+    DateTimePatternCache cache = DateTimePatternCache.load(env);
+    cache.put("de", "yMMMd", "d. MMM y");
+    cache.save(messager());
+    cache = DateTimePatternCache.load(env);
+    cache.put("de", "Hm", "HH:mm");
+    cache.save(messager());
+
+    DateTimePatternCache loaded = DateTimePatternCache.load(env);
+    assertThat(loaded.get("de", "yMMMd")).isEqualTo("d. MMM y");
+    assertThat(loaded.get("de", "Hm")).isEqualTo("HH:mm");
+    assertThat(folder.getRoot().list()).containsExactly(DateTimePatternCache.FILE_NAME);
+  }
+
+  @Test
+  public void testOtherDataVersion() throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("data.version", "cldr 0");
+    properties.setProperty("de\tyMMMd", "y-MM-dd");
+    try (OutputStream out =
+        new FileOutputStream(new File(folder.getRoot(), DateTimePatternCache.FILE_NAME))) {
+      properties.store(out, null);
+    }
+
+    DateTimePatternCache cache = DateTimePatternCache.load(environment(folder.getRoot()));
+    assertThat(cache.get("de", "yMMMd")).isNull();
+  }
+
+  @Test
+  public void testCorruptFile() throws IOException {
+    try (OutputStream out =
+        new FileOutputStream(new File(folder.getRoot(), DateTimePatternCache.FILE_NAME))) {
+      out.write("de\\u00".getBytes("ISO-8859-1"));
+    }
+
+    DateTimePatternCache cache = DateTimePatternCache.load(environment(folder.getRoot()));
+    assertThat(cache.get("de", "yMMMd")).isNull();
+  }
+
+  @Test
+  public void testNotOnFileSystem() {
+    ProcessingEnvironment env =
+        environment(Collections.<String, String>emptyMap(), URI.create("mem:/classes/probe"));
+    DateTimePatternCache cache = DateTimePatternCache.load(env);
+    cache.put("de", "yMMMd", "d. MMM y");
+    cache.save(messager());
+
+    // patterns are kept for the compilation, but nothing is written
+    assertThat(cache.get("de", "yMMMd")).isEqualTo("d. MMM y");
+    assertThat(DateTimePatternCache.load(env).get("de", "yMMMd")).isNull();
+    assertThat(warnings).isEmpty();
+  }
+
+  @Test
+  public void testNextToClassOutput() throws IOException {
+    File classes = folder.newFolder("target", "classes");
+    ProcessingEnvironment env =
+        environment(
+            Collections.<String, String>emptyMap(),
+            new File(classes, DateTimePatternCache.FILE_NAME).toURI());
+    DateTimePatternCache cache = DateTimePatternCache.load(env);
+    cache.put("de", "yMMMd", "d. MMM y");
+    cache.save(messager());
+
+    File file = new File(classes.getParentFile(), "gwt-i18n/" + DateTimePatternCache.FILE_NAME);
+    assertThat(file).isFile();
+    assertThat(DateTimePatternCache.load(env).get("de", "yMMMd")).isEqualTo("d. MMM y");
+  }
+
+  @Test
+  public void testUnwritableDirectory() throws IOException {
+    File notADirectory = folder.newFile("cache");
+    DateTimePatternCache cache = DateTimePatternCache.load(environment(notADirectory));
+    cache.put("de", "yMMMd", "d. MMM y");
+    cache.save(messager());
+
+    assertThat(warnings).hasSize(1);
+    assertThat(warnings.get(0)).contains("date/time pattern cache");
+  }
+
+  private ProcessingEnvironment environment(File cacheDirectory) {
+    return environment(
+        Collections.singletonMap(DateTimePatternCache.CACHE_DIR_OPTION, cacheDirectory.getPath()),
+        null);
+  }
+
+  /** Returns an environment with options whose filer finds resources at a URI. */
+  private static ProcessingEnvironment environment(Map<String, String> options, URI resource) {
+    FileObject probe =
+        proxy(
+            FileObject.class,
+            (method, args) -> "toUri".equals(method) ? resource : unsupported(method));
+    Filer filer =
+        proxy(
+            Filer.class,
+            (method, args) -> "getResource".equals(method) ? probe : unsupported(method));
+    return proxy(
+        ProcessingEnvironment.class,
+        (method, args) -> {
+          switch (method) {
+            case "getOptions":
+              return options;
+            case "getFiler":
+              return filer;
+            default:
+              return unsupported(method);
+          }
+        });
+  }
+
+  private Messager messager() {
+    return proxy(
+        Messager.class,
+        (method, args) -> {
+          warnings.add(String.valueOf(args[1]));
+          return null;
+        });
+  }
+
+  private interface Handler {
+    Object invoke(String method, Object[] args);
+  }
+
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return type.cast(
+        Proxy.newProxyInstance(
+            type.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> handler.invoke(method.getName(), args)));
+  }
+
+  private static Object unsupported(String method) {
+    throw new UnsupportedOperationException(method);
+  }
+}
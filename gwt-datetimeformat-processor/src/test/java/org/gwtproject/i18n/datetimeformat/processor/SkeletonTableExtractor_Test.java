@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests extracting the tables of all ICU4J locales with a {@link SkeletonTableExtractor}. */
+public class SkeletonTableExtractor_Test {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testExtractsAllLocales() throws IOException {
+    SkeletonTableExtractor.main(new String[] {folder.getRoot().getPath()});
+
+    File directory =
+        new File(
+            folder.getRoot(),
+            SkeletonTable.class.getPackage().getName().replace('.', '/')
+                + "/"
+                + SkeletonTable.RESOURCE_DIRECTORY);
+    assertThat(read(new File(directory, SkeletonTable.INDEX + ".properties")))
+        .containsKey(SkeletonTable.VERSION_KEY);
+    // aliases get tables of their own when they differ from their parent's
+    assertThat(directory.list())
+        .contains("root.properties", "en.properties", "iw.properties", "zh_HK.properties");
+
+    File[] files = directory.listFiles((dir, name) -> !name.startsWith(SkeletonTable.INDEX + "."));
+    for (File file : files) {
+      Map<String, String> table = read(file);
+      assertThat(table).containsKeys(SkeletonTable.HOUR_KEY, SkeletonTable.DATE_TIME_KEY);
+      // plural tables like the root's week of year patterns are left out
+      assertThat(table).doesNotContainValue("(table)");
+      assertThat(new SkeletonTable(table).getBestPattern("yMMMd")).isNotEmpty();
+    }
+    assertThat(read(new File(directory, "zh_HK.properties")))
+        .containsEntry("yMd", "d/M/y")
+        .doesNotContainKey("yw");
+  }
+
+  private static Map<String, String> read(File file) throws IOException {
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    }
+    Map<String, String> table = new HashMap<>();
+    for (String key : properties.stringPropertyNames()) {
+      table.put(key, properties.getProperty(key));
+    }
+    return table;
+  }
+}
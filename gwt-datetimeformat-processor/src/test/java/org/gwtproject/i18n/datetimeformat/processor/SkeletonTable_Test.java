@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.datetimeformat.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ibm.icu.impl.ICUData;
+import com.ibm.icu.impl.ICUResourceBundle;
+import com.ibm.icu.text.DateTimePatternGenerator;
+import com.ibm.icu.util.ULocale;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/** Tests matching skeletons against a {@link SkeletonTable}. */
+public class SkeletonTable_Test {
+
+  private static SkeletonTable german() {
+    Map<String, String> table = new HashMap<>();
+    table.put(SkeletonTable.HOUR_KEY, "H");
+    table.put(SkeletonTable.DATE_TIME_KEY, "{1}, {0}");
+    table.put(SkeletonTable.APPEND_KEY + 0, "{0} {1}");
+    table.put(SkeletonTable.APPEND_KEY + 15, "{0} {1}");
+    table.put("yMd", "d.M.y");
+    table.put("yMMMd", "d. MMM y");
+    table.put("yMMMMd", "d. MMMM y");
+    table.put("yMMMEd", "E, d. MMM y");
+    table.put("Hm", "HH:mm");
+    table.put("hm", "h:mm a");
+    table.put("Hms", "HH:mm:ss");
+    table.put("Yw", "'Woche' w 'des' 'Jahres' Y");
+    return new SkeletonTable(table);
+  }
+
+  @Test
+  public void testExactMatch() {
+    SkeletonTable table = german();
+    assertThat(table.getBestPattern("yMMMd")).isEqualTo("d. MMM y");
+    assertThat(table.getBestPattern("d MMM y")).isEqualTo("d. MMM y");
+    assertThat(table.getBestPattern("ccc d LLL y")).isEqualTo("EEE, d. MMM y");
+    assertThat(table.getBestPattern("ahm")).isEqualTo("h:mm a");
+  }
+
+  @Test
+  public void testAdjustedWidths() {
+    SkeletonTable table = german();
+    assertThat(table.getBestPattern("yyyyMMMMd")).isEqualTo("d. MMMM yyyy");
+    assertThat(table.getBestPattern("MMMM d, yyyy")).isEqualTo("d. MMMM yyyy");
+    // a numeric month is not matched with a textual one
+    assertThat(table.getBestPattern("yyMMdd")).isEqualTo("dd.MM.yy");
+    // the hour, minute and second keep the widths of the pattern
+    assertThat(table.getBestPattern("HHmmss")).isEqualTo("HH:mm:ss");
+    assertThat(table.getBestPattern("Hms")).isEqualTo("HH:mm:ss");
+    assertThat(table.getBestPattern("hhmm")).isEqualTo("h:mm a");
+    // quoted text is left alone
+    assertThat(table.getBestPattern("Yww")).isEqualTo("'Woche' ww 'des' 'Jahres' Y");
+  }
+
+  @Test
+  public void testPreferredHour() {
+    assertThat(german().getBestPattern("jm")).isEqualTo("HH:mm");
+  }
+
+  @Test
+  public void testDateAndTime() {
+    SkeletonTable table = german();
+    assertThat(table.getBestPattern("yMMMdHm")).isEqualTo("d. MMM y, HH:mm");
+    assertThat(table.getBestPattern("yMMMMdjms")).isEqualTo("d. MMMM y, HH:mm:ss");
+  }
+
+  @Test
+  public void testAppendedFields() {
+    SkeletonTable table = german();
+    assertThat(table.getBestPattern("GyMMMd")).isEqualTo("d. MMM y G");
+    assertThat(table.getBestPattern("yMMMdHmv")).isEqualTo("d. MMM y, HH:mm v");
+    assertThat(table.getBestPattern("d")).isEqualTo("d");
+    assertThat(table.getBestPattern("")).isEmpty();
+  }
+
+  @Test
+  public void testIllegalSkeleton() {
+    SkeletonTable table = german();
+    assertThat(table.getBestPattern("yMMMdt")).isNull();
+    assertThat(table.getBestPattern("yMLd")).isNull();
+  }
+
+  @Test
+  public void testResolvesLocales() throws IOException {
+    assertThat(SkeletonTable.load("default").getBestPattern("yMMMd")).isEqualTo("MMM d, y");
+    assertThat(SkeletonTable.load("en").getBestPattern("yyMMdd")).isEqualTo("MM/dd/yy");
+    assertThat(SkeletonTable.load("en").getBestPattern("hh:mm")).isEqualTo("h:mm a");
+    assertThat(SkeletonTable.load("root").getBestPattern("Hm")).isEqualTo("HH:mm");
+    assertThat(SkeletonTable.load("zh_Hant_TW").getBestPattern("yyyyMMMMd")).isEqualTo("yyyy年M月d日");
+    assertThat(SkeletonTable.load("zh_TW").getBestPattern("yMd")).isEqualTo("y/M/d");
+    assertThat(SkeletonTable.load("zh-HK").getBestPattern("yMd")).isEqualTo("d/M/y");
+    assertThat(SkeletonTable.load("iw").getBestPattern("yMd")).isEqualTo("d.M.y");
+    assertThat(SkeletonTable.load("no").getBestPattern("yMMMd"))
+        .isEqualTo(SkeletonTable.load("nb").getBestPattern("yMMMd"));
+    assertThat(SkeletonTable.load("de_XX").getBestPattern("yMMMd")).isEqualTo("d. MMM y");
+  }
+
+  @Test
+  public void testMatchesIcu() throws IOException {
+    String[] skeletons = {
+      "d",
+      "y",
+      "E",
+      "EEEE",
+      "MMMMd",
+      "yMd",
+      "yMMMd",
+      "yyMMdd",
+      "yyyyMMMMd",
+      "yMMMEd",
+      "GyMMMd",
+      "yQQQ",
+      "Yw",
+      "MMMMW",
+      "Hm",
+      "hm",
+      "hh:mm",
+      "jm",
+      "jmmz",
+      "Jms",
+      "Cm",
+      "Hms",
+      "HmsSSS",
+      "hmv",
+      "yMMMdjms",
+      "yMdEjmsSzzzz",
+      "ccc d LLL y"
+    };
+    List<String> mismatches = new ArrayList<>();
+    for (String name :
+        ICUResourceBundle.getFullLocaleNameSet(
+            ICUData.ICU_BASE_NAME, ICUResourceBundle.ICU_DATA_CLASS_LOADER)) {
+      SkeletonTable table = SkeletonTable.load(name.isEmpty() ? SkeletonTable.ROOT : name);
+      DateTimePatternGenerator icu = DateTimePatternGenerator.getInstance(new ULocale(name));
+      for (String skeleton : skeletons) {
+        String expected;
+        try {
+          expected = icu.getBestPattern(skeleton);
+        } catch (IllegalArgumentException e) {
+          // e.g. a skeleton matching a table of patterns by plural form
+          continue;
+        }
+        String actual = table.getBestPattern(skeleton);
+        if (!expected.equals(actual)) {
+          mismatches.add(name + " " + skeleton + ": " + actual + " instead of " + expected);
+        }
+      }
+    }
+    assertThat(mismatches).isEmpty();
+  }
+}
@@ -28,6 +28,11 @@ import java.util.Date;
  * locale specific data. If the application only uses a short representation, the English data will
  * usually satisfy the user's need. In the case that only the time zone offset is known, there is a
  * decent fallback that only uses the time zone offset to create a TimeZone object.
+ *
+ * <p>Besides its table of historic transitions, a time zone may carry a recurring daylight savings
+ * time rule in POSIX TZ string format (e.g. {@code "EST5EDT,M3.2.0,M11.1.0"}). Dates after the last
+ * transition of the table are then computed from the rule, so the table does not need to list
+ * future transitions.
  */
 public class TimeZone implements org.gwtproject.i18n.shared.TimeZone {
   // constants to reference time zone names in the time zone names array
@@ -101,6 +106,51 @@ public class TimeZone implements org.gwtproject.i18n.shared.TimeZone {
         tz.adjustments[i] = transitions.getAt(i * 2 + 1);
       }
     }
+
+    String rule = timezoneData.getRule();
+    if (rule != null) {
+      tz.rule = TimeZoneRule.parse(rule);
+    }
+    return tz;
+  }
+
+  /**
+   * This factory method creates a time zone instance from already decoded time zone data, without
+   * going through JSON.
+   *
+   * @param timezoneID time zone id
+   * @param standardOffset standard time zone offset in minutes, positive west of Greenwich
+   * @param names standard short, standard long, daylight short and daylight long names
+   * @param transitionPoints transition times in hours since the epoch, in ascending order, or
+   *     {@code null} if the time zone has no transitions
+   * @param adjustments daylight adjustment in minutes in effect from the corresponding transition
+   *     point on
+   * @param rule recurring daylight savings time rule applied after the last transition point, in
+   *     POSIX TZ string format, or {@code null}
+   * @return a new time zone object
+   */
+  public static TimeZone createTimeZone(
+      String timezoneID,
+      int standardOffset,
+      String[] names,
+      int[] transitionPoints,
+      int[] adjustments,
+      String rule) {
+    if (transitionPoints != null && adjustments.length != transitionPoints.length) {
+      throw new IllegalArgumentException(
+          "Time zone " + timezoneID + " has a different number of transitions and adjustments");
+    }
+    TimeZone tz = new TimeZone();
+    tz.timezoneID = timezoneID;
+    tz.standardOffset = standardOffset;
+    tz.tzNames = names;
+    if (transitionPoints != null && transitionPoints.length > 0) {
+      tz.transitionPoints = transitionPoints;
+      tz.adjustments = adjustments;
+    }
+    if (rule != null) {
+      tz.rule = TimeZoneRule.parse(rule);
+    }
     return tz;
   }
 
@@ -164,6 +214,7 @@ public class TimeZone implements org.gwtproject.i18n.shared.TimeZone {
   private String[] tzNames;
   private int[] transitionPoints;
   private int[] adjustments;
+  private TimeZoneRule rule;
 
   private TimeZone() {}
 
@@ -172,15 +223,28 @@ public class TimeZone implements org.gwtproject.i18n.shared.TimeZone {
    */
   @Override
   public int getDaylightAdjustment(Date date) {
+    long time = date.getTime();
     if (transitionPoints == null) {
-      return 0;
+      return rule == null ? 0 : rule.getDaylightAdjustment(time);
+    }
+    long timeInHours = time / 1000 / 3600;
+    int last = transitionPoints.length - 1;
+    if (timeInHours >= transitionPoints[last]) {
+      return rule == null ? adjustments[last] : rule.getDaylightAdjustment(time);
     }
-    long timeInHours = date.getTime() / 1000 / 3600;
-    int index = 0;
-    while (index < transitionPoints.length && timeInHours >= transitionPoints[index]) {
-      ++index;
+
+    // binary search for the number of transitions at or before the given time
+    int low = 0;
+    int high = last;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timeInHours >= transitionPoints[mid]) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
     }
-    return (index == 0) ? 0 : adjustments[index - 1];
+    return (low == 0) ? 0 : adjustments[low - 1];
   }
 
   /* (non-Javadoc)
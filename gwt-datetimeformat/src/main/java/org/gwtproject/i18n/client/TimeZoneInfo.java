@@ -32,6 +32,7 @@ public class TimeZoneInfo {
   private JsArray<String> names = new JsArray<>();
   private int std_offset;
   private JsArray<Integer> transitions = new JsArray<>();
+  private String rule;
 
   public static TimeZoneInfo buildTimeZoneData(String json) {
     TimeZoneInfo timeZoneInfo = new TimeZoneInfo();
@@ -43,6 +44,9 @@ public class TimeZoneInfo {
     for (int i = 0; i < jsTransitions.length; i++) {
       timeZoneInfo.transitions.push(jsTransitions.getAt(i).asInt());
     }
+    if (parsed.has("rule")) {
+      timeZoneInfo.rule = Js.cast(parsed.get("rule"));
+    }
 
     return timeZoneInfo;
   }
@@ -64,4 +68,12 @@ public class TimeZoneInfo {
   public final JsArray<Integer> getTransitions() {
     return this.transitions;
   }
+
+  /**
+   * Returns the recurring daylight savings time rule in POSIX TZ string format that applies after
+   * the last transition, or {@code null} if the data has none.
+   */
+  public final String getRule() {
+    return this.rule;
+  }
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+/**
+ * A recurring daylight savings time rule in the format of a POSIX TZ string, for example {@code
+ * "EST5EDT,M3.2.0,M11.1.0"} or {@code "<-03>3<-02>,M3.5.0/-2,M10.5.0/-1"}. A {@link TimeZone} uses
+ * it to compute the daylight adjustment for dates after the end of its transition table, so that
+ * the table only has to carry historic transitions.
+ *
+ * <p>Offsets follow the POSIX convention, which is also the one used by {@link
+ * TimeZone#getStandardOffset()}: positive values are west of Greenwich.
+ */
+final class TimeZoneRule {
+  private static final int SECONDS_PER_HOUR = 60 * 60;
+  private static final long MILLIS_PER_MINUTE = 60 * 1000;
+  private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+  // default local time of a transition, 02:00:00
+  private static final int DEFAULT_TRANSITION_TIME = 2 * SECONDS_PER_HOUR;
+
+  // kinds of transition dates
+  private static final int JULIAN_DAY = 0; // Jn, 1 <= n <= 365, February 29 is never counted
+  private static final int ZERO_BASED_DAY = 1; // n, 0 <= n <= 365, February 29 is counted
+  private static final int MONTH_WEEK_DAY = 2; // Mm.w.d, w == 5 means the last d of the month
+
+  /**
+   * Parses a POSIX TZ string.
+   *
+   * @param posixString the TZ string, e.g. {@code "CET-1CEST,M3.5.0,M10.5.0/3"}
+   * @return the parsed rule, or {@code null} if the string does not define daylight savings time
+   * @throws IllegalArgumentException if the string is malformed
+   */
+  static TimeZoneRule parse(String posixString) {
+    return new Parser(posixString).parse();
+  }
+
+  /** Returns the number of days since 1970-01-01 of the given date in the proleptic calendar. */
+  static long daysFromCivil(int year, int month, int day) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /** Returns the year of the given number of days since 1970-01-01. */
+  static int yearFromDays(long days) {
+    days += 719468;
+    long era = (days >= 0 ? days : days - 146096) / 146097;
+    long dayOfEra = days - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long shiftedMonth = (5 * dayOfYear + 2) / 153;
+    long year = yearOfEra + era * 400;
+    return (int) (shiftedMonth >= 10 ? year + 1 : year);
+  }
+
+  private static boolean isLeapYear(int year) {
+    return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+  }
+
+  private static long floorDiv(long x, long y) {
+    long q = x / y;
+    return (x % y != 0 && ((x < 0) != (y < 0))) ? q - 1 : q;
+  }
+
+  private final int standardOffset;
+  private final int daylightAdjustment;
+  private final TransitionDate start;
+  private final TransitionDate end;
+
+  private TimeZoneRule(
+      int standardOffset, int daylightAdjustment, TransitionDate start, TransitionDate end) {
+    this.standardOffset = standardOffset;
+    this.daylightAdjustment = daylightAdjustment;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Returns the daylight savings time adjustment in minutes for the given instant, or 0 if
+   * daylight savings time is not in effect.
+   *
+   * @param time milliseconds since the epoch
+   * @return offset amount
+   */
+  int getDaylightAdjustment(long time) {
+    long standardOffsetMillis = standardOffset * MILLIS_PER_MINUTE;
+    int year = yearFromDays(floorDiv(time - standardOffsetMillis, MILLIS_PER_DAY));
+
+    // the start is given in local standard time, the end in local daylight time
+    long startTime = start.getLocalTime(year) + standardOffsetMillis;
+    long endTime =
+        end.getLocalTime(year) + standardOffsetMillis - daylightAdjustment * MILLIS_PER_MINUTE;
+
+    boolean inDaylightTime;
+    if (startTime < endTime) {
+      inDaylightTime = time >= startTime && time < endTime;
+    } else {
+      // southern hemisphere, daylight savings time spans the turn of the year
+      inDaylightTime = time >= startTime || time < endTime;
+    }
+    return inDaylightTime ? daylightAdjustment : 0;
+  }
+
+  /** One of the two yearly transitions of a rule. */
+  private static final class TransitionDate {
+    private final int kind;
+    private final int month;
+    private final int week;
+    private final int day;
+    private final int time;
+
+    TransitionDate(int kind, int month, int week, int day, int time) {
+      this.kind = kind;
+      this.month = month;
+      this.week = week;
+      this.day = day;
+      this.time = time;
+    }
+
+    /** Returns the local wall time of this transition in the given year, in epoch milliseconds. */
+    long getLocalTime(int year) {
+      long days;
+      switch (kind) {
+        case JULIAN_DAY:
+          days = daysFromCivil(year, 1, 1) + day - 1;
+          if (day >= 60 && isLeapYear(year)) {
+            days++;
+          }
+          break;
+        case ZERO_BASED_DAY:
+          days = daysFromCivil(year, 1, 1) + day;
+          break;
+        default:
+          long firstOfMonth = daysFromCivil(year, month, 1);
+          long nextMonth =
+              month == 12 ? daysFromCivil(year + 1, 1, 1) : daysFromCivil(year, month + 1, 1);
+          // 1970-01-01 was a Thursday
+          int firstDayOfWeek = (int) ((firstOfMonth % 7 + 11) % 7);
+          days = firstOfMonth + (day - firstDayOfWeek + 7) % 7 + (week - 1) * 7;
+          while (days >= nextMonth) {
+            days -= 7;
+          }
+          break;
+      }
+      return days * MILLIS_PER_DAY + time * 1000L;
+    }
+  }
+
+  /** A minimal cursor-based parser for POSIX TZ strings. */
+  private static final class Parser {
+    private final String text;
+    private int pos;
+
+    Parser(String text) {
+      this.text = text;
+    }
+
+    TimeZoneRule parse() {
+      skipName();
+      int standardOffset = parseTime(true);
+      if (pos == text.length()) {
+        return null;
+      }
+      skipName();
+      int daylightOffset = standardOffset - SECONDS_PER_HOUR;
+      if (pos < text.length() && text.charAt(pos) != ',') {
+        daylightOffset = parseTime(true);
+      }
+      expect(',');
+      TransitionDate start = parseDate();
+      expect(',');
+      TransitionDate end = parseDate();
+      if (pos != text.length()) {
+        throw error();
+      }
+      return new TimeZoneRule(
+          standardOffset / 60, (standardOffset - daylightOffset) / 60, start, end);
+    }
+
+    private void skipName() {
+      if (pos < text.length() && text.charAt(pos) == '<') {
+        int close = text.indexOf('>', pos);
+        if (close < 0) {
+          throw error();
+        }
+        pos = close + 1;
+        return;
+      }
+      int nameStart = pos;
+      while (pos < text.length() && Character.isLetter(text.charAt(pos))) {
+        pos++;
+      }
+      if (pos - nameStart < 3) {
+        throw error();
+      }
+    }
+
+    private TransitionDate parseDate() {
+      TransitionDate date;
+      if (peek() == 'M') {
+        pos++;
+        int month = parseNumber(1, 12);
+        expect('.');
+        int week = parseNumber(1, 5);
+        expect('.');
+        int day = parseNumber(0, 6);
+        date = new TransitionDate(MONTH_WEEK_DAY, month, week, day, parseTransitionTime());
+      } else if (peek() == 'J') {
+        pos++;
+        int day = parseNumber(1, 365);
+        date = new TransitionDate(JULIAN_DAY, 0, 0, day, parseTransitionTime());
+      } else {
+        int day = parseNumber(0, 365);
+        date = new TransitionDate(ZERO_BASED_DAY, 0, 0, day, parseTransitionTime());
+      }
+      return date;
+    }
+
+    private int parseTransitionTime() {
+      if (peek() == '/') {
+        pos++;
+        return parseTime(false);
+      }
+      return DEFAULT_TRANSITION_TIME;
+    }
+
+    /** Parses {@code [+|-]hh[:mm[:ss]]} and returns the value in seconds. */
+    private int parseTime(boolean isOffset) {
+      int sign = 1;
+      if (peek() == '+' || peek() == '-') {
+        sign = text.charAt(pos++) == '-' ? -1 : 1;
+      }
+      int seconds = parseNumber(0, isOffset ? 24 : 167) * SECONDS_PER_HOUR;
+      if (peek() == ':') {
+        pos++;
+        seconds += parseNumber(0, 59) * 60;
+        if (peek() == ':') {
+          pos++;
+          seconds += parseNumber(0, 59);
+        }
+      }
+      return sign * seconds;
+    }
+
+    private int parseNumber(int min, int max) {
+      int value = 0;
+      int digitsStart = pos;
+      while (pos < text.length() && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+        value = value * 10 + (text.charAt(pos++) - '0');
+        if (value > max) {
+          throw error();
+        }
+      }
+      if (pos == digitsStart || value < min) {
+        throw error();
+      }
+      return value;
+    }
+
+    private char peek() {
+      return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    private void expect(char c) {
+      if (peek() != c) {
+        throw error();
+      }
+      pos++;
+    }
+
+    private IllegalArgumentException error() {
+      return new IllegalArgumentException(
+          "Illegal time zone rule \"" + text + "\" at position " + pos);
+    }
+  }
+}
@@ -420,6 +420,61 @@ public class DateTimeFormat {
     YEAR_QUARTER_ABBR,
   }
 
+  /**
+   * The date/time fields of a date in a time zone, computed once for all the patterns the date is
+   * formatted with.
+   */
+  private static final class CalendarFields {
+    final Date date;
+    final Date adjustedDate;
+    final Date adjustedTime;
+    final TimeZone timeZone;
+
+    @SuppressWarnings("deprecation")
+    CalendarFields(Date date, TimeZone timeZone) {
+      // We use the Date class to calculate each date/time field in order
+      // to maximize performance and minimize code size.
+      // JavaScript only provides an API for rendering local time (in the os time
+      // zone). Here we want to render time in any timezone. So suppose we try to
+      // render the date (20:00 GMT0000, or 16:00 GMT-0400, or 12:00 GMT-0800) for
+      // time zone GMT-0400, and OS has time zone GMT-0800. By adding the
+      // difference between OS time zone (GMT-0800) and target time zone
+      // (GMT-0400) to "date", we end up with 16:00 GMT-0800. This date object
+      // has the same date/time fields (year, month, date, hour, minutes, etc)
+      // in GMT-0800 as original date in our target time zone (GMT-0400). We
+      // just need to take care of time zone display, but that's needed anyway.
+
+      // Things get a little bit more tricky when a daylight time transition
+      // happens. For example, if the OS timezone is America/Los_Angeles,
+      // it is just impossible to have a Date represent 2006/4/2 02:30, because
+      // 2:00 to 3:00 on that day does not exist in US Pacific time zone because
+      // of the daylight time switch.
+
+      // But we can use 2 separate date objects, one to represent 2006/4/2, one
+      // to represent 02:30. Of course, for the 2nd date object its date can be
+      // any other day in that year, except 2006/4/2. So we end up have 3 Date
+      // objects: one for resolving "Year, month, day", one for time within that
+      // day, and the original date object, which is needed for figuring out
+      // actual time zone offset.
+
+      int diff = (date.getTimezoneOffset() - timeZone.getOffset(date)) * 60000;
+      Date keepDate = new Date(date.getTime() + diff);
+      Date keepTime = keepDate;
+      if (keepDate.getTimezoneOffset() != date.getTimezoneOffset()) {
+        if (diff > 0) {
+          diff -= NUM_MILLISECONDS_IN_DAY;
+        } else {
+          diff += NUM_MILLISECONDS_IN_DAY;
+        }
+        keepTime = new Date(date.getTime() + diff);
+      }
+      this.date = date;
+      this.adjustedDate = keepDate;
+      this.adjustedTime = keepTime;
+      this.timeZone = timeZone;
+    }
+  }
+
   /** Class PatternPart holds a "compiled" pattern part. */
   private static class PatternPart {
     public String text;
@@ -711,49 +766,82 @@ public class DateTimeFormat {
    *     default
    * @return string representation for this date in the format defined by this object
    */
-  @SuppressWarnings("deprecation")
   public String format(Date date, TimeZone timeZone) {
-    // We use the Date class to calculate each date/time field in order
-    // to maximize performance and minimize code size.
-    // JavaScript only provides an API for rendering local time (in the os time
-    // zone). Here we want to render time in any timezone. So suppose we try to
-    // render the date (20:00 GMT0000, or 16:00 GMT-0400, or 12:00 GMT-0800) for
-    // time zone GMT-0400, and OS has time zone GMT-0800. By adding the
-    // difference between OS time zone (GMT-0800) and target time zone
-    // (GMT-0400) to "date", we end up with 16:00 GMT-0800. This date object
-    // has the same date/time fields (year, month, date, hour, minutes, etc)
-    // in GMT-0800 as original date in our target time zone (GMT-0400). We
-    // just need to take care of time zone display, but that's needed anyway.
-
-    // Things get a little bit more tricky when a daylight time transition
-    // happens. For example, if the OS timezone is America/Los_Angeles,
-    // it is just impossible to have a Date represent 2006/4/2 02:30, because
-    // 2:00 to 3:00 on that day does not exist in US Pacific time zone because
-    // of the daylight time switch.
-
-    // But we can use 2 separate date objects, one to represent 2006/4/2, one
-    // to represent 02:30. Of course, for the 2nd date object its date can be
-    // any other day in that year, except 2006/4/2. So we end up have 3 Date
-    // objects: one for resolving "Year, month, day", one for time within that
-    // day, and the original date object, which is needed for figuring out
-    // actual time zone offset.
+    StringBuilder toAppendTo = new StringBuilder(64);
+    format(date, timeZone, toAppendTo);
+    return toAppendTo.toString();
+  }
 
+  /**
+   * Format a date object as UTF-8 into a byte array, such as the backing array of a buffer,
+   * without creating an intermediate string. Characters below U+0080, such as latin digits, are
+   * written as single bytes.
+   *
+   * @param date the date object being formatted
+   * @param timeZone a TimeZone object that holds time zone information, or {@code null} to use the
+   *     default
+   * @param out the array to write to
+   * @param offset the index in {@code out} of the first byte written
+   * @return the index after the last byte written, or -1 if {@code out} has no room for the
+   *     formatted date, in which case nothing is written
+   */
+  public int formatTo(Date date, TimeZone timeZone, byte[] out, int offset) {
+    StringBuilder toAppendTo = new StringBuilder(64);
+    format(date, timeZone, toAppendTo);
+    return encodeUtf8(toAppendTo, out, offset);
+  }
+
+  /**
+   * Format a date object with each of several formats, such as the formats of the locales of the
+   * recipients of a message. The date/time fields of the date in the time zone are computed once
+   * for all formats.
+   *
+   * @param date the date object being formatted
+   * @param timeZone a TimeZone object that holds time zone information, or {@code null} to use the
+   *     default
+   * @param formats the formats to use
+   * @return the date formatted with each format, in the order of {@code formats}
+   */
+  public static String[] formatEach(Date date, TimeZone timeZone, DateTimeFormat... formats) {
+    String[] formatted = new String[formats.length];
+    if (formats.length == 0) {
+      return formatted;
+    }
     if (timeZone == null) {
-      timeZone = createTimeZone(date.getTimezoneOffset());
+      timeZone = formats[0].createTimeZone(date.getTimezoneOffset());
     }
-    int diff = (date.getTimezoneOffset() - timeZone.getOffset(date)) * 60000;
-    Date keepDate = new Date(date.getTime() + diff);
-    Date keepTime = keepDate;
-    if (keepDate.getTimezoneOffset() != date.getTimezoneOffset()) {
-      if (diff > 0) {
-        diff -= NUM_MILLISECONDS_IN_DAY;
-      } else {
-        diff += NUM_MILLISECONDS_IN_DAY;
-      }
-      keepTime = new Date(date.getTime() + diff);
+    CalendarFields fields = new CalendarFields(date, timeZone);
+    StringBuilder toAppendTo = new StringBuilder(64);
+    for (int i = 0; i < formats.length; ++i) {
+      toAppendTo.setLength(0);
+      formats[i].format(fields, toAppendTo);
+      formatted[i] = toAppendTo.toString();
     }
+    return formatted;
+  }
 
-    StringBuilder toAppendTo = new StringBuilder(64);
+  /**
+   * Format a date object using specified time zone, appending the result to a buffer.
+   *
+   * @param date the date object being formatted
+   * @param timeZone a TimeZone object that holds time zone information, or {@code null} to use the
+   *     default
+   * @param toAppendTo the buffer to append to
+   */
+  private void format(Date date, TimeZone timeZone, StringBuilder toAppendTo) {
+    if (timeZone == null) {
+      timeZone = createTimeZone(date.getTimezoneOffset());
+    }
+    format(new CalendarFields(date, timeZone), toAppendTo);
+  }
+
+  /**
+   * Formats the calendar fields of a date, appending the result to a buffer.
+   *
+   * @param fields the date in the time zone to format it in
+   * @param toAppendTo the buffer to append to
+   */
+  private void format(CalendarFields fields, StringBuilder toAppendTo) {
     int j, n = pattern.length();
     for (int i = 0; i < n; ) {
       char ch = pattern.charAt(i);
@@ -761,7 +849,14 @@ public class DateTimeFormat {
         // ch is a date-time pattern character to be interpreted by subFormat().
         // Count the number of times it is repeated.
         for (j = i + 1; j < n && pattern.charAt(j) == ch; ++j) {}
-        subFormat(toAppendTo, ch, j - i, date, keepDate, keepTime, timeZone);
+        subFormat(
+            toAppendTo,
+            ch,
+            j - i,
+            fields.date,
+            fields.adjustedDate,
+            fields.adjustedTime,
+            fields.timeZone);
         i = j;
       } else if (ch == '\'') {
         // Handle an entire quoted string, included embedded
@@ -806,8 +901,6 @@ public class DateTimeFormat {
         ++i;
       }
     }
-
-    return toAppendTo.toString();
   }
 
   /**
@@ -904,6 +997,68 @@ public class DateTimeFormat {
     }
   }
 
+  /**
+   * Encodes text as UTF-8 into a byte array. Unpaired surrogates are replaced by '?', like {@link
+   * String#getBytes(java.nio.charset.Charset)} does.
+   *
+   * @param text the text to encode
+   * @param out the array to write to
+   * @param offset the index of the first byte to write
+   * @return the index after the last byte written, or -1 if {@code out} has no room
+   */
+  private static int encodeUtf8(CharSequence text, byte[] out, int offset) {
+    int n = text.length();
+    // count the bytes first, so that nothing is written if the text does not fit
+    int length = n;
+    for (int i = 0; i < n; ++i) {
+      char ch = text.charAt(i);
+      if (ch < 0x80) {
+        continue;
+      } else if (ch < 0x800) {
+        length += 1;
+      } else if (!Character.isHighSurrogate(ch) && !Character.isLowSurrogate(ch)) {
+        length += 2;
+      } else if (isSurrogatePair(text, i)) {
+        // four bytes for two chars
+        length += 2;
+        ++i;
+      }
+    }
+    if (length > out.length - offset) {
+      return -1;
+    }
+
+    int pos = offset;
+    for (int i = 0; i < n; ++i) {
+      char ch = text.charAt(i);
+      if (ch < 0x80) {
+        out[pos++] = (byte) ch;
+      } else if (ch < 0x800) {
+        out[pos++] = (byte) (0xC0 | (ch >> 6));
+        out[pos++] = (byte) (0x80 | (ch & 0x3F));
+      } else if (!Character.isHighSurrogate(ch) && !Character.isLowSurrogate(ch)) {
+        out[pos++] = (byte) (0xE0 | (ch >> 12));
+        out[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+        out[pos++] = (byte) (0x80 | (ch & 0x3F));
+      } else if (isSurrogatePair(text, i)) {
+        int codePoint = Character.toCodePoint(ch, text.charAt(++i));
+        out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+        out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        out[pos++] = '?';
+      }
+    }
+    return pos;
+  }
+
+  private static boolean isSurrogatePair(CharSequence text, int i) {
+    return Character.isHighSurrogate(text.charAt(i))
+        && i + 1 < text.length()
+        && Character.isLowSurrogate(text.charAt(i + 1));
+  }
+
   /**
    * Formats (0..11) Hours field according to pattern specified.
    *
@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.shared.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Lists the time zones an application uses. For a type {@code Foo} carrying this annotation,
+ * CustomDateTimeFormatProcessor generates a class {@code Foo_TimeZones} holding precompiled {@link
+ * org.gwtproject.i18n.client.TimeZone} instances for exactly these zones, so that neither the data
+ * of other zones nor any JSON parsing ends up in the application.
+ */
+@Documented
+@Target(ElementType.TYPE)
+public @interface SupportedTimeZones {
+
+  /**
+   * The time zone ids, e.g. {@code "America/New_York"}.
+   *
+   * @return the time zone ids
+   */
+  String[] value();
+}
@@ -17,6 +17,7 @@ package org.gwtproject.i18n.jvm;
 
 // import org.gwtproject.i18n.client.constants.TimeZoneConstants;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import org.gwtproject.i18n.client.DateTimeFormat;
 import org.gwtproject.i18n.client.TimeZone;
@@ -539,6 +540,42 @@ public class DateTimeFormat_en_Test extends DateTimeFormatTestBaseJava {
   //    assertEquals("It is Feb 15, 2010", m.getCustomizedDate(d));
   //  }
 
+  public void testFormatToBytes() {
+    Date date = new Date(2006 - 1900, 6, 27, 13, 10, 10);
+    TimeZone utc = TimeZone.createTimeZone(0);
+    DateTimeFormat format =
+        DateTimeFormat.getFormat("EEEE d MMMM yyyy HH:mm '\u00e9t\u00e9 \ud83d\ude00'");
+    String expected = format.format(date, utc);
+    byte[] bytes = expected.getBytes(StandardCharsets.UTF_8);
+    assertEquals(expected.length() + 4, bytes.length);
+
+    byte[] out = new byte[bytes.length + 3];
+    assertEquals(out.length, format.formatTo(date, utc, out, 3));
+    assertEquals(expected, new String(out, 3, bytes.length, StandardCharsets.UTF_8));
+    assertEquals(-1, format.formatTo(date, utc, out, 4));
+    assertEquals(-1, format.formatTo(date, utc, new byte[bytes.length - 1], 0));
+  }
+
+  public void testFormatEach() {
+    Date date = new Date(2006 - 1900, 6, 27, 13, 10, 10);
+    DateTimeFormat[] formats = {
+      DateTimeFormat.getFormat("EEEE d MMMM yyyy"),
+      DateTimeFormat.getFormat("HH:mm:ss Z"),
+      DateTimeFormat.getFormat("MMM d, y h:mm:ss a")
+    };
+    TimeZone[] timeZones = {TimeZone.createTimeZone(0), TimeZone.createTimeZone(-330), null};
+    for (TimeZone timeZone : timeZones) {
+      String[] formatted = DateTimeFormat.formatEach(date, timeZone, formats);
+      assertEquals(formats.length, formatted.length);
+      for (int i = 0; i < formats.length; ++i) {
+        assertEquals(formats[i].format(date, timeZone), formatted[i]);
+      }
+    }
+    String[] formatted = DateTimeFormat.formatEach(date, timeZones[1], formats);
+    assertEquals("Thursday 27 July 2006", formatted[0]);
+    assertEquals(0, DateTimeFormat.formatEach(date, null).length);
+  }
+
   public void testPatternCaching() {
     DateTimeFormat dtf = DateTimeFormat.getFormat("MMMM d");
     Date d = new Date(2010 - 1900, 1, 15, 12, 0, 0);
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.jvm;
+
+import java.util.Date;
+import junit.framework.TestCase;
+import org.gwtproject.i18n.client.TimeZone;
+
+/** Tests daylight savings time computed from a recurring rule in {@link TimeZone}. */
+@SuppressWarnings("deprecation")
+public class TimeZoneRule_Test extends TestCase {
+
+  private static final String[] NEW_YORK_NAMES = {
+    "EST", "Eastern Standard Time", "EDT", "Eastern Daylight Time"
+  };
+
+  private static Date utc(int year, int month, int day, int hour, int minute) {
+    return new Date(Date.UTC(year - 1900, month - 1, day, hour, minute, 0));
+  }
+
+  public void testRuleOnly() {
+    TimeZone tz =
+        TimeZone.createTimeZone(
+            "America/New_York", 300, NEW_YORK_NAMES, null, null, "EST5EDT,M3.2.0,M11.1.0");
+
+    // 2100-03-14 is the second Sunday of March, the switch happens at 02:00 EST
+    assertEquals(0, tz.getDaylightAdjustment(utc(2100, 3, 14, 6, 59)));
+    assertEquals(60, tz.getDaylightAdjustment(utc(2100, 3, 14, 7, 0)));
+    assertEquals("EDT", tz.getShortName(utc(2100, 7, 1, 12, 0)));
+    assertEquals(240, tz.getOffset(utc(2100, 7, 1, 12, 0)));
+
+    // 2100-11-07 is the first Sunday of November, the switch happens at 02:00 EDT
+    assertEquals(60, tz.getDaylightAdjustment(utc(2100, 11, 7, 5, 59)));
+    assertEquals(0, tz.getDaylightAdjustment(utc(2100, 11, 7, 6, 0)));
+    assertEquals("EST", tz.getShortName(utc(2100, 12, 25, 12, 0)));
+  }
+
+  public void testTransitionsThenRule() {
+    // 2007-03-11 07:00 UTC and 2007-11-04 06:00 UTC, in hours since the epoch
+    int[] transitionPoints = {325999, 331710};
+    int[] adjustments = {60, 0};
+    TimeZone tz =
+        TimeZone.createTimeZone(
+            "America/New_York",
+            300,
+            NEW_YORK_NAMES,
+            transitionPoints,
+            adjustments,
+            "EST5EDT,M3.2.0,M11.1.0");
+
+    assertEquals(0, tz.getDaylightAdjustment(utc(2007, 1, 1, 0, 0)));
+    assertEquals(60, tz.getDaylightAdjustment(utc(2007, 7, 1, 0, 0)));
+    assertEquals(0, tz.getDaylightAdjustment(utc(2007, 12, 1, 0, 0)));
+    assertEquals(60, tz.getDaylightAdjustment(utc(2500, 7, 1, 0, 0)));
+    assertEquals(0, tz.getDaylightAdjustment(utc(2500, 12, 1, 0, 0)));
+  }
+
+  public void testSouthernHemisphere() {
+    // Australia/Sydney: daylight time from the first Sunday of October to the first Sunday of
+    // April, switching at 02:00 standard and 03:00 daylight time
+    TimeZone tz =
+        TimeZone.createTimeZone(
+            "Australia/Sydney",
+            -600,
+            new String[] {
+              "AEST",
+              "Australian Eastern Standard Time",
+              "AEDT",
+              "Australian Eastern Daylight Time"
+            },
+            null,
+            null,
+            "AEST-10AEDT,M10.1.0,M4.1.0/3");
+
+    assertEquals(60, tz.getDaylightAdjustment(utc(2090, 1, 15, 0, 0)));
+    assertEquals(0, tz.getDaylightAdjustment(utc(2090, 6, 15, 0, 0)));
+    assertEquals(60, tz.getDaylightAdjustment(utc(2090, 12, 15, 0, 0)));
+    assertEquals("+11:00", tz.getISOTimeZoneString(utc(2090, 12, 15, 0, 0)));
+  }
+
+  public void testNoDaylightTime() {
+    TimeZone tz = TimeZone.createTimeZone("Asia/Tokyo", -540, new String[2], null, null, "JST-9");
+    assertEquals(0, tz.getDaylightAdjustment(utc(2100, 7, 1, 0, 0)));
+  }
+
+  public void testIllegalRule() {
+    try {
+      TimeZone.createTimeZone("Etc/Bad", 0, new String[2], null, null, "EST5EDT,M13.2.0,M11.1.0");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
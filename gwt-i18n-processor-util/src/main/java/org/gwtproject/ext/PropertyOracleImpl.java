@@ -18,7 +18,12 @@ package org.gwtproject.ext;
 import javax.annotation.processing.Messager;
 import javax.tools.Diagnostic;
 
-/** @author Dmitrii Tikhomirov Created by treblereel 12/5/18 */
+/**
+ * @author Dmitrii Tikhomirov Created by treblereel 12/5/18
+ * @deprecated reads GWT properties from system properties of the compiler JVM, which incremental
+ *     builds cannot track; processors read processor options instead
+ */
+@Deprecated
 public class PropertyOracleImpl implements PropertyOracle {
   public final ConfigurationProperties configurationProperties;
 
@@ -18,6 +18,7 @@ package org.gwtproject.i18n.processor;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import javax.annotation.processing.Messager;
+import javax.lang.model.element.Element;
 import javax.tools.Diagnostic;
 
 public class ExceptionUtil {
@@ -32,4 +33,18 @@ public class ExceptionUtil {
     messager.printMessage(
         Diagnostic.Kind.ERROR, "error while creating source file " + out.getBuffer().toString());
   }
+
+  /**
+   * @param messager the messager to print the exception stack trace
+   * @param e exception to be printed
+   * @param element the element the source file was created for
+   */
+  public static void messageStackTrace(Messager messager, Exception e, Element element) {
+    StringWriter out = new StringWriter();
+    e.printStackTrace(new PrintWriter(out));
+    messager.printMessage(
+        Diagnostic.Kind.ERROR,
+        "error while creating source file " + out.getBuffer().toString(),
+        element);
+  }
 }
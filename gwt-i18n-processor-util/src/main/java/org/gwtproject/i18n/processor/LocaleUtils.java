@@ -62,7 +62,10 @@ public class LocaleUtils {
    * @param logger
    * @param propertyOracle
    * @return LocaleUtils instance
+   * @deprecated the locale of a compilation is a processor option, see {@link #getLocaleFactory()}
+   *     to parse it
    */
+  @Deprecated
   public static LocaleUtils getInstance(
       Messager logger, PropertyOracle propertyOracle, ProcessorContext context) {
     try {
@@ -210,7 +213,12 @@ public class LocaleUtils {
     return allLocales;
   }
 
-  /** Returns the static compile-time locale for this permutation. */
+  /**
+   * Returns the static compile-time locale for this permutation.
+   *
+   * @deprecated the locale of a compilation is a processor option
+   */
+  @Deprecated
   public GwtLocale getCompileLocale() {
     return compileLocale;
   }
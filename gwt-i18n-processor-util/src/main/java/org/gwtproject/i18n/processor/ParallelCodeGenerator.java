@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.processor;
+
+import com.squareup.javapoet.JavaFile;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+
+/**
+ * Builds the source files of a processing step on a bounded pool of threads, and writes them
+ * through the {@link Filer} in the order they were submitted so that the output does not depend on
+ * scheduling.
+ *
+ * <p>The {@code javax.lang.model} API may only be used on the javac thread. A step therefore
+ * snapshots what it needs of an element into plain values, such as strings and JavaPoet names,
+ * before it {@link #submit submits} a task building a file from them. Tasks may still pass the
+ * element to {@link com.squareup.javapoet.TypeSpec.Builder#addOriginatingElement}.
+ */
+public final class ParallelCodeGenerator {
+
+  /** Builds one source file from a snapshot of an element. */
+  public interface Task {
+
+    /**
+     * Builds the file, on any thread; must not use the {@code javax.lang.model} API.
+     *
+     * @return the file to write
+     * @throws Exception if the file cannot be built, reported as an error on the element
+     */
+    JavaFile generate() throws Exception;
+  }
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private final Messager messager;
+  private final Filer filer;
+  private final int maximumThreads;
+
+  // the pending tasks and the elements they were submitted for
+  private final List<Task> tasks = new ArrayList<>();
+  private final List<Element> elements = new ArrayList<>();
+
+  /** Creates a generator using up to one thread per available processor. */
+  public ParallelCodeGenerator(ProcessingEnvironment processingEnv) {
+    this(processingEnv, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a generator using up to a number of threads.
+   *
+   * @param processingEnv the environment of the processor
+   * @param maximumThreads the maximum number of threads; 1 builds all files on the calling thread
+   */
+  public ParallelCodeGenerator(ProcessingEnvironment processingEnv, int maximumThreads) {
+    if (maximumThreads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + maximumThreads);
+    }
+    this.messager = processingEnv.getMessager();
+    this.filer = processingEnv.getFiler();
+    this.maximumThreads = maximumThreads;
+  }
+
+  /**
+   * Adds a task to be run by the next {@link #writeAll()}.
+   *
+   * @param element the element the file is generated for, errors are reported on it
+   * @param task the task building the file
+   */
+  public void submit(Element element, Task task) {
+    elements.add(element);
+    tasks.add(task);
+  }
+
+  /**
+   * Runs the submitted tasks and writes their files in the order the tasks were submitted. Must be
+   * called on the javac thread. A task failing is reported as an error and does not stop the
+   * others.
+   */
+  public void writeAll() {
+    int threads = Math.min(maximumThreads, tasks.size());
+    if (threads <= 1) {
+      for (int i = 0; i < tasks.size(); i++) {
+        try {
+          write(i, tasks.get(i).generate());
+        } catch (Exception e) {
+          report(i, e);
+        }
+      }
+      clear();
+      return;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads, DaemonThreadFactory.INSTANCE);
+    try {
+      List<Future<JavaFile>> files = new ArrayList<>(tasks.size());
+      for (Task task : tasks) {
+        files.add(pool.submit(task::generate));
+      }
+      for (int i = 0; i < files.size(); i++) {
+        try {
+          write(i, files.get(i).get());
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          report(i, (Exception) cause);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      messager.printMessage(Diagnostic.Kind.ERROR, "Interrupted while generating source files");
+    } finally {
+      pool.shutdownNow();
+      clear();
+    }
+  }
+
+  private void write(int index, JavaFile file) {
+    try {
+      file.writeTo(filer);
+    } catch (IOException e) {
+      report(index, e);
+    }
+  }
+
+  private void report(int index, Exception e) {
+    ExceptionUtil.messageStackTrace(messager, e, elements.get(index));
+  }
+
+  private void clear() {
+    tasks.clear();
+    elements.clear();
+  }
+
+  /** Creates the daemon threads of the pools, so that they never keep a compiler JVM alive. */
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    static final DaemonThreadFactory INSTANCE = new DaemonThreadFactory();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "gwt-i18n-codegen-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+
+/** Tests building and writing source files with a {@link ParallelCodeGenerator}. */
+public class ParallelCodeGenerator_Test {
+
+  // the names of the files written, in order
+  private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+  // the errors reported, as "element: message"
+  private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+  // names the filer refuses to create
+  private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+  @Test
+  public void testWritesInSubmissionOrder() {
+    // each task waits for the next one, so the tasks finish in reverse order
+    CountDownLatch[] finished = new CountDownLatch[8];
+    for (int i = 0; i < finished.length; i++) {
+      finished[i] = new CountDownLatch(1);
+    }
+    ParallelCodeGenerator generator = new ParallelCodeGenerator(environment(), finished.length);
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    for (int i = 0; i < finished.length; i++) {
+      int index = i;
+      generator.submit(
+          element("Type" + i),
+          () -> {
+            threads.add(Thread.currentThread());
+            if (index + 1 < finished.length) {
+              finished[index + 1].await(10, TimeUnit.SECONDS);
+            }
+            finished[index].countDown();
+            return file("Type" + index);
+          });
+    }
+    generator.writeAll();
+
+    assertThat(written)
+        .containsExactly(
+            "p.Type0", "p.Type1", "p.Type2", "p.Type3", "p.Type4", "p.Type5", "p.Type6",
+            "p.Type7");
+    assertThat(threads).doesNotContain(Thread.currentThread());
+    assertThat(errors).isEmpty();
+  }
+
+  @Test
+  public void testReportsErrorsOnElements() {
+    rejected.add("p.Type2");
+    ParallelCodeGenerator generator = new ParallelCodeGenerator(environment(), 4);
+    generator.submit(element("Type0"), () -> file("Type0"));
+    generator.submit(
+        element("Type1"),
+        () -> {
+          throw new IllegalStateException("broken Type1");
+        });
+    generator.submit(element("Type2"), () -> file("Type2"));
+    generator.submit(element("Type3"), () -> file("Type3"));
+    generator.writeAll();
+
+    assertThat(written).containsExactly("p.Type0", "p.Type3");
+    assertThat(errors).hasSize(2);
+    assertThat(errors.get(0)).startsWith("Type1: ").contains("broken Type1");
+    assertThat(errors.get(1)).startsWith("Type2: ").contains(FilerException.class.getName());
+  }
+
+  @Test
+  public void testSingleThread() {
+    ParallelCodeGenerator generator = new ParallelCodeGenerator(environment(), 1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      int index = i;
+      generator.submit(
+          element("Type" + i),
+          () -> {
+            threads.add(Thread.currentThread());
+            if (index == 1) {
+              throw new IOException("broken Type1");
+            }
+            return file("Type" + index);
+          });
+    }
+    generator.writeAll();
+
+    assertThat(threads).containsOnly(Thread.currentThread());
+    assertThat(written).containsExactly("p.Type0", "p.Type2");
+    assertThat(errors).hasSize(1);
+    assertThat(errors.get(0)).startsWith("Type1: ").contains("broken Type1");
+  }
+
+  @Test
+  public void testRethrowsErrors() {
+    ParallelCodeGenerator generator = new ParallelCodeGenerator(environment(), 4);
+    generator.submit(element("Type0"), () -> file("Type0"));
+    generator.submit(
+        element("Type1"),
+        () -> {
+          throw new OutOfMemoryError("Type1");
+        });
+    generator.submit(element("Type2"), () -> file("Type2"));
+    try {
+      generator.writeAll();
+      fail("Expecting OutOfMemoryError");
+    } catch (OutOfMemoryError e) {
+      assertThat(e).hasMessage("Type1");
+    }
+    assertThat(written).containsExactly("p.Type0");
+    assertThat(errors).isEmpty();
+
+    // the failed tasks are dropped
+    generator.writeAll();
+    assertThat(written).containsExactly("p.Type0");
+  }
+
+  @Test
+  public void testWritesEachTaskOnce() {
+    ParallelCodeGenerator generator = new ParallelCodeGenerator(environment(), 2);
+    generator.submit(element("Type0"), () -> file("Type0"));
+    generator.submit(element("Type1"), () -> file("Type1"));
+    generator.writeAll();
+    generator.submit(element("Type2"), () -> file("Type2"));
+    generator.writeAll();
+    generator.writeAll();
+
+    assertThat(written).containsExactly("p.Type0", "p.Type1", "p.Type2");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoThreads() {
+    new ParallelCodeGenerator(environment(), 0);
+  }
+
+  private static JavaFile file(String name) {
+    return JavaFile.builder("p", TypeSpec.classBuilder(name).build()).build();
+  }
+
+  private static Element element(String name) {
+    return proxy(Element.class, (method, args) -> "toString".equals(method) ? name : null);
+  }
+
+  private ProcessingEnvironment environment() {
+    Messager messager =
+        proxy(
+            Messager.class,
+            (method, args) -> {
+              assertThat(args[0]).isEqualTo(Diagnostic.Kind.ERROR);
+              errors.add((args.length > 2 ? args[2] + ": " : "") + args[1]);
+              return null;
+            });
+    Filer filer =
+        proxy(
+            Filer.class,
+            (method, args) -> {
+              String name = String.valueOf(args[0]);
+              if (!"createSourceFile".equals(method) || rejected.contains(name)) {
+                throw new FilerException("Cannot create " + name);
+              }
+              return sourceFile(name);
+            });
+    return proxy(
+        ProcessingEnvironment.class,
+        (method, args) -> "getMessager".equals(method) ? messager : filer);
+  }
+
+  /** Returns a source file recording its name once it is written. */
+  private JavaFileObject sourceFile(String name) {
+    return proxy(
+        JavaFileObject.class,
+        (method, args) -> {
+          if (!"openWriter".equals(method)) {
+            throw new UnsupportedOperationException(method);
+          }
+          return new StringWriter() {
+            @Override
+            public void close() {
+              written.add(name);
+            }
+          };
+        });
+  }
+
+  private interface Handler {
+    Object invoke(String method, Object[] args) throws Exception;
+  }
+
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return type.cast(
+        Proxy.newProxyInstance(
+            type.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> handler.invoke(method.getName(), args)));
+  }
+}
@@ -19,12 +19,12 @@ import com.google.auto.common.BasicAnnotationProcessor;
 import com.google.auto.common.MoreElements;
 import com.google.common.collect.SetMultimap;
 import com.squareup.javapoet.*;
-import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.*;
 import java.util.stream.Collectors;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
@@ -33,9 +33,11 @@ import org.gwtproject.i18n.shared.Localizable;
 
 public class LocalizableProcessingStep implements BasicAnnotationProcessor.ProcessingStep {
   private final ProcessingEnvironment processingEnv;
+  private final ParallelCodeGenerator generator;
 
   public LocalizableProcessingStep(ProcessingEnvironment processingEnv) {
     this.processingEnv = processingEnv;
+    this.generator = new ParallelCodeGenerator(processingEnv);
   }
 
   @Override
@@ -51,70 +53,53 @@ public class LocalizableProcessingStep implements BasicAnnotationProcessor.Proce
       // build a model
       String packageName =
           processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+      String simpleName = element.getSimpleName().toString();
+      TypeName interfaceName = TypeName.get(element.asType());
 
       // collect the possible locales
       // TODO correctly sort this based on the logic ahmad has worked up
 
       List<String> locales = getLocaleNames(element);
       // TODO remove hack which restricts us to default
-      locales = Collections.singletonList("default");
+      List<String> generatedLocales = Collections.singletonList("default");
 
       // implement the interface into a new type for each locale key
       Map<String, ClassName> keyToNameMapping = new HashMap<>();
 
-      keyToNameMapping.put(
-          "default", ClassName.get(packageName, element.getSimpleName().toString() + "_default"));
+      keyToNameMapping.put("default", ClassName.get(packageName, simpleName + "_default"));
 
-      TypeSpec.Builder defaultImplBuilder =
-          TypeSpec.classBuilder(element.getSimpleName().toString() + "_default")
-              .addModifiers(Modifier.PUBLIC)
-              .addSuperinterface(ClassName.get(element.asType()));
-
-      MoreElements.getLocalAndInheritedMethods(
-              (TypeElement) element, processingEnv.getTypeUtils(), processingEnv.getElementUtils())
-          .stream()
-          //                    .filter(method -> !method.getModifiers().contains(Modifier.STATIC))
-          .filter(method -> !method.getModifiers().contains(Modifier.DEFAULT))
-
-          // skip anything on Object
-          .filter(
-              method ->
-                  !Object.class
-                      .getName()
-                      .equals(ClassName.get(method.getEnclosingElement().asType()).toString()))
-          .forEach(
-              method -> {
-                MethodSpec.Builder impl =
-                    MethodSpec.methodBuilder(method.getSimpleName().toString())
-                        .addModifiers(Modifier.PUBLIC)
-                        .returns(TypeName.get(method.getReturnType()))
-                        .addAnnotation(Override.class);
-                for (VariableElement parameter : method.getParameters()) {
-                  impl.addParameter(
-                      TypeName.get(parameter.asType()), parameter.getSimpleName().toString());
-                }
-                // TODO support other return types, return correct values, etc
-                if (method.getReturnType().getKind().isPrimitive()) {
-                  if (method.getReturnType().getKind() == TypeKind.BOOLEAN) {
-                    impl.addStatement("return false");
-                  } else {
-                    impl.addStatement("return ($T)0", TypeName.get(method.getReturnType()));
-                  }
-                } else {
-
-                  impl.addStatement("return $S", method.getSimpleName().toString());
-                }
-
-                defaultImplBuilder.addMethod(impl.build());
-              });
-
-      try {
-        JavaFile.builder(packageName, defaultImplBuilder.build())
-            .build()
-            .writeTo(processingEnv.getFiler());
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+      // snapshot the methods on this thread, the types are built in parallel
+      List<MethodSnapshot> methods =
+          MoreElements.getLocalAndInheritedMethods(
+                  (TypeElement) element,
+                  processingEnv.getTypeUtils(),
+                  processingEnv.getElementUtils())
+              .stream()
+              // .filter(method -> !method.getModifiers().contains(Modifier.STATIC))
+              .filter(method -> !method.getModifiers().contains(Modifier.DEFAULT))
+
+              // skip anything on Object
+              .filter(
+                  method ->
+                      !Object.class
+                          .getName()
+                          .equals(ClassName.get(method.getEnclosingElement().asType()).toString()))
+              .map(MethodSnapshot::new)
+              .collect(Collectors.toList());
+
+      generator.submit(
+          element,
+          () -> {
+            TypeSpec.Builder defaultImplBuilder =
+                TypeSpec.classBuilder(simpleName + "_default")
+                    .addModifiers(Modifier.PUBLIC)
+                    .addSuperinterface(interfaceName)
+                    .addOriginatingElement(element);
+            for (MethodSnapshot method : methods) {
+              defaultImplBuilder.addMethod(method.implement());
+            }
+            return JavaFile.builder(packageName, defaultImplBuilder.build()).build();
+          });
 
       // for each method that needs overriding, generate a method which
       // either reads from the default annotation or just returns the
@@ -122,28 +107,31 @@ public class LocalizableProcessingStep implements BasicAnnotationProcessor.Proce
 
       // based on the types created and their locale,
       // create a factor
-      TypeSpec factory =
-          TypeSpec.classBuilder(element.getSimpleName() + "_Factory")
-              .addMethod(
-                  MethodSpec.methodBuilder("create")
-                      .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                      .returns(ClassName.get(element.asType()))
-                      .addStatement("return create(System.getProperty(\"locale\", \"default\"))")
-                      .build())
-              .addMethod(
-                  MethodSpec.methodBuilder("create")
-                      .addParameter(String.class, "locale")
-                      .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                      .returns(ClassName.get(element.asType()))
-                      .addCode(makeSwitchCase(locales, keyToNameMapping))
-                      .build())
-              .build();
-      try {
-        JavaFile.builder(packageName, factory).build().writeTo(processingEnv.getFiler());
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+      generator.submit(
+          element,
+          () -> {
+            TypeSpec factory =
+                TypeSpec.classBuilder(simpleName + "_Factory")
+                    .addOriginatingElement(element)
+                    .addMethod(
+                        MethodSpec.methodBuilder("create")
+                            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                            .returns(interfaceName)
+                            .addStatement(
+                                "return create(System.getProperty(\"locale\", \"default\"))")
+                            .build())
+                    .addMethod(
+                        MethodSpec.methodBuilder("create")
+                            .addParameter(String.class, "locale")
+                            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                            .returns(interfaceName)
+                            .addCode(makeSwitchCase(generatedLocales, keyToNameMapping))
+                            .build())
+                    .build();
+            return JavaFile.builder(packageName, factory).build();
+          });
     }
+    generator.writeAll();
 
     return Collections.emptySet();
   }
@@ -180,4 +168,47 @@ public class LocalizableProcessingStep implements BasicAnnotationProcessor.Proce
     }
     return switchCase.endControlFlow().addStatement("return null").build();
   }
+
+  /** The parts of a method needed to implement it, taken on the javac thread. */
+  private static final class MethodSnapshot {
+    final String name;
+    final TypeName returnType;
+    final TypeKind returnKind;
+    final List<ParameterSpec> parameters = new ArrayList<>();
+
+    MethodSnapshot(ExecutableElement method) {
+      name = method.getSimpleName().toString();
+      returnType = TypeName.get(method.getReturnType());
+      returnKind = method.getReturnType().getKind();
+      for (VariableElement parameter : method.getParameters()) {
+        parameters.add(
+            ParameterSpec.builder(
+                    TypeName.get(parameter.asType()), parameter.getSimpleName().toString())
+                .build());
+      }
+    }
+
+    MethodSpec implement() {
+      MethodSpec.Builder impl =
+          MethodSpec.methodBuilder(name)
+              .addModifiers(Modifier.PUBLIC)
+              .returns(returnType)
+              .addAnnotation(Override.class);
+      for (ParameterSpec parameter : parameters) {
+        impl.addParameter(parameter);
+      }
+      // TODO support other return types, return correct values, etc
+      if (returnKind.isPrimitive()) {
+        if (returnKind == TypeKind.BOOLEAN) {
+          impl.addStatement("return false");
+        } else {
+          impl.addStatement("return ($T)0", returnType);
+        }
+      } else {
+
+        impl.addStatement("return $S", name);
+      }
+      return impl.build();
+    }
+  }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import org.gwtproject.i18n.shared.cldr.NumberConstants;
+
+/**
+ * The currency formats created for one set of {@link NumberConstants}, indexed by kind and by the
+ * {@link CurrencyTable} ID of their currency, so that each pattern is parsed once per currency.
+ *
+ * <p>All methods may be called from multiple threads.
+ */
+final class CurrencyFormats {
+
+  /** The kind of the standard currency format, see {@link NumberConstants#currencyPattern()}. */
+  static final int STANDARD = 0;
+
+  /** The kind of the simple currency format. */
+  static final int SIMPLE = 1;
+
+  /** The kind of the global currency format. */
+  static final int GLOBAL = 2;
+
+  private final Object lock = new Object[0];
+
+  private final NumberConstants numberConstants;
+
+  // the formats of each kind, indexed by currency ID
+  private final NumberFormat[][] formats = new NumberFormat[3][0];
+
+  CurrencyFormats(NumberConstants numberConstants) {
+    this.numberConstants = numberConstants;
+  }
+
+  /** Returns the constants the formats are created with. */
+  NumberConstants getNumberConstants() {
+    return numberConstants;
+  }
+
+  /**
+   * Returns the format of a kind for a currency, creating it on first use.
+   *
+   * @param kind {@link #STANDARD}, {@link #SIMPLE} or {@link #GLOBAL}
+   * @param currencyId the ID of the currency in the {@link CurrencyTable}
+   * @return the shared format
+   */
+  NumberFormat get(int kind, int currencyId) {
+    synchronized (lock) {
+      NumberFormat[] ofKind = formats[kind];
+      if (currencyId < ofKind.length && ofKind[currencyId] != null) {
+        return ofKind[currencyId];
+      }
+    }
+    // parse outside of the lock; a concurrent miss for the same currency just parses twice
+    NumberFormat format =
+        new NumberFormat(numberConstants, pattern(kind), CurrencyTable.get(currencyId), false);
+    synchronized (lock) {
+      NumberFormat[] ofKind = formats[kind];
+      if (currencyId >= ofKind.length) {
+        NumberFormat[] grown = new NumberFormat[Math.max(currencyId + 1, 2 * ofKind.length)];
+        System.arraycopy(ofKind, 0, grown, 0, ofKind.length);
+        ofKind = grown;
+        formats[kind] = grown;
+      }
+      if (ofKind[currencyId] == null) {
+        ofKind[currencyId] = format;
+      }
+      return ofKind[currencyId];
+    }
+  }
+
+  private String pattern(int kind) {
+    switch (kind) {
+      case SIMPLE:
+        return numberConstants.simpleCurrencyPattern();
+      case GLOBAL:
+        return numberConstants.globalCurrencyPattern();
+      default:
+        return numberConstants.currencyPattern();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.gwtproject.i18n.shared.cldr.CurrencyData;
+import org.gwtproject.i18n.shared.cldr.CurrencyList;
+import org.gwtproject.i18n.shared.cldr.LocaleInfo;
+
+/**
+ * Interns the {@link CurrencyData} looked up by currency code, giving each currency a small
+ * integer ID in the order it is first used. The IDs index the tables of {@link CurrencyFormats}.
+ *
+ * <p>All methods may be called from multiple threads.
+ */
+final class CurrencyTable {
+
+  private static final Object lock = new Object[0];
+
+  private static final Map<String, Integer> ids = new HashMap<>();
+
+  private static CurrencyData[] currencies = new CurrencyData[16];
+
+  /**
+   * Returns the ID of a currency, looking it up on first use.
+   *
+   * @param currencyCode ISO4217 currency code
+   * @return the ID of the currency
+   * @throws IllegalArgumentException if the currency code is unknown
+   */
+  static int idOf(String currencyCode) {
+    synchronized (lock) {
+      Integer id = ids.get(currencyCode);
+      if (id != null) {
+        return id;
+      }
+      CurrencyData currencyData = CurrencyList.get().lookup(currencyCode);
+      if (currencyData == null) {
+        throw new IllegalArgumentException(
+            "Currency code "
+                + currencyCode
+                + " is unkown in locale "
+                + LocaleInfo.getCurrentLocale().getLocaleName());
+      }
+      int newId = ids.size();
+      if (newId == currencies.length) {
+        CurrencyData[] grown = new CurrencyData[2 * newId];
+        System.arraycopy(currencies, 0, grown, 0, newId);
+        currencies = grown;
+      }
+      currencies[newId] = currencyData;
+      ids.put(currencyCode, newId);
+      return newId;
+    }
+  }
+
+  /**
+   * Returns the currency with an ID returned by {@link #idOf(String)}.
+   *
+   * @param id the ID of the currency
+   * @return the currency data
+   */
+  static CurrencyData get(int id) {
+    synchronized (lock) {
+      return currencies[id];
+    }
+  }
+
+  private CurrencyTable() {}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import java.math.BigInteger;
+
+/**
+ * Converts a decimal {@code w * 10^q} with a mantissa of at most 19 digits to the nearest double,
+ * without going through a string. Two algorithms are used: Clinger's fast path for values that are
+ * exact in double arithmetic, and Daniel Lemire's variant of Michael Eisel's algorithm ("Number
+ * Parsing at a Gigabyte per Second", 2021) for the others.
+ *
+ * <p>Both return {@link Double#NaN} when they cannot decide the result, which happens for
+ * subnormal and overflowing values and for a tiny share of values lying very close to the middle
+ * between two doubles. Callers then fall back to {@link Double#parseDouble(String)}.
+ */
+final class DecimalToDouble {
+
+  /** The maximum number of mantissa digits. */
+  static final int MAX_DIGITS = 19;
+
+  // range of q covered by the table of powers of ten
+  private static final int Q_MIN = -348;
+  private static final int Q_MAX = 347;
+
+  private static final double[] EXACT_POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * Returns {@code w * 10^q} if both {@code w} and {@code 10^|q|} are exact doubles, so that a
+   * single correctly rounded multiplication or division gives the result. Only double arithmetic
+   * is used, so this is fast when compiled to JavaScript as well.
+   *
+   * @param w the mantissa, read as an unsigned long
+   * @param q the decimal exponent
+   * @return the nearest double, or {@link Double#NaN}
+   */
+  static double exactToDouble(long w, int q) {
+    if (w < 0 || w > 1L << 53 || q < -22 || q > 22) {
+      return Double.NaN;
+    }
+    double value = w;
+    return q < 0 ? value / EXACT_POWERS_OF_TEN[-q] : value * EXACT_POWERS_OF_TEN[q];
+  }
+
+  /**
+   * Returns the double nearest to {@code w * 10^q}, with ties going to the even double. Only long
+   * arithmetic is used; the table of powers of ten is computed with {@link BigInteger} on first
+   * use.
+   *
+   * @param w the mantissa, read as an unsigned long
+   * @param q the decimal exponent
+   * @return the nearest double, or {@link Double#NaN}
+   */
+  static double toDouble(long w, int q) {
+    if (w == 0) {
+      return 0;
+    }
+    if (q < Q_MIN || q > Q_MAX) {
+      return Double.NaN;
+    }
+
+    // normalize the mantissa, so that its most significant bit is set
+    int clz = Long.numberOfLeadingZeros(w);
+    w <<= clz;
+    long exponent = ((217706 * q) >> 16) + 64 + 1023 - clz;
+
+    // the high 128 bits of w times the truncated 128 bit power of ten
+    long high = Tables.HIGH[q - Q_MIN];
+    long low = Tables.LOW[q - Q_MIN];
+    long xHigh = unsignedMultiplyHigh(w, high);
+    long xLow = w * high;
+    if ((xHigh & 0x1FF) == 0x1FF && unsignedLess(xLow + w, w)) {
+      // the truncated bits of the power may carry into the result, look at them as well
+      long yHigh = unsignedMultiplyHigh(w, low);
+      long yLow = w * low;
+      long mergedHigh = xHigh;
+      long mergedLow = xLow + yHigh;
+      if (unsignedLess(mergedLow, xLow)) {
+        mergedHigh++;
+      }
+      if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0 && unsignedLess(yLow + w, w)) {
+        return Double.NaN;
+      }
+      xHigh = mergedHigh;
+      xLow = mergedLow;
+    }
+
+    // keep 54 bits, one more than a double has
+    int msb = (int) (xHigh >>> 63);
+    long mantissa = xHigh >>> (msb + 9);
+    exponent -= 1 ^ msb;
+
+    // a value exactly halfway between two doubles cannot be told from one just below or above
+    if (xLow == 0 && (xHigh & 0x1FF) == 0 && (mantissa & 3) == 1) {
+      return Double.NaN;
+    }
+
+    // round to 53 bits
+    mantissa += mantissa & 1;
+    mantissa >>>= 1;
+    if (mantissa >>> 53 > 0) {
+      mantissa >>>= 1;
+      exponent++;
+    }
+    if (exponent <= 0 || exponent >= 0x7FF) {
+      // subnormal, infinite or zero
+      return Double.NaN;
+    }
+    return Double.longBitsToDouble(exponent << 52 | mantissa & ((1L << 52) - 1));
+  }
+
+  /** Returns the high 64 bits of the unsigned 128 bit product of {@code x} and {@code y}. */
+  private static long unsignedMultiplyHigh(long x, long y) {
+    return DoubleToDecimal.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+  }
+
+  /** Returns true if {@code x} is less than {@code y}, both read as unsigned longs. */
+  private static boolean unsignedLess(long x, long y) {
+    return (x ^ Long.MIN_VALUE) < (y ^ Long.MIN_VALUE);
+  }
+
+  private DecimalToDouble() {}
+
+  /**
+   * Holds 10^q for q in [{@link #Q_MIN}, {@link #Q_MAX}], normalized to 128 bits with the most
+   * significant bit set and rounded down, split into its high and low 64 bits. The tables are only
+   * computed when the class is first used.
+   */
+  private static final class Tables {
+    static final long[] HIGH = new long[Q_MAX - Q_MIN + 1];
+    static final long[] LOW = new long[Q_MAX - Q_MIN + 1];
+
+    static {
+      for (int q = Q_MIN; q <= Q_MAX; q++) {
+        BigInteger pow = BigInteger.TEN.pow(Math.abs(q));
+        BigInteger m;
+        if (q >= 0) {
+          int shift = pow.bitLength() - 128;
+          m = shift >= 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift);
+        } else {
+          m = BigInteger.ONE.shiftLeft(pow.bitLength() + 127).divide(pow);
+        }
+        HIGH[q - Q_MIN] = m.shiftRight(64).longValue();
+        LOW[q - Q_MIN] = m.longValue();
+      }
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import java.math.BigInteger;
+
+/**
+ * Computes the shortest decimal digits which uniquely identify a double, using Raffaello
+ * Giulietti's Schubfach algorithm ("The Schubfach way to render doubles", 2020). Among the shortest
+ * candidates the one closest to the double is chosen, ties going to the even digit.
+ *
+ * <p>This is the pure Java replacement for {@code Number.prototype.toPrecision} used by {@link
+ * NumberFormat#toScaledString(StringBuilder, double)} when not running as JavaScript. Only long
+ * arithmetic is used; the table of powers of ten is computed with {@link BigInteger} on first use.
+ */
+final class DoubleToDecimal {
+
+  /** The maximum number of digits written by {@link #toDigits(double, char[], int[])}. */
+  static final int MAX_DIGITS = 17;
+
+  // precision, in bits, of a double and the minimum exponent of its least significant bit
+  private static final int P = 53;
+  private static final int Q_MIN = -1074;
+
+  // smallest normal significand
+  private static final long C_MIN = 1L << (P - 1);
+
+  // range of the decimal exponent k used to look up 10^-k
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  private static final long MASK_63 = (1L << 63) - 1;
+
+  /**
+   * Writes the shortest decimal digits of a finite, non-negative double to {@code digits} and the
+   * power of ten they have to be multiplied with to {@code scale[0]}, so that 0.25 is written as
+   * {@code "25"} with a scale of -2. The digits never have trailing zeros, except for 0 itself,
+   * which is written as {@code "0"} with a scale of 0.
+   *
+   * @param v the value to convert
+   * @param digits receives the digits, must have room for {@link #MAX_DIGITS} chars
+   * @param scale receives the scale in its first element
+   * @return the number of digits written
+   */
+  static int toDigits(double v, char[] digits, int[] scale) {
+    long bits = Double.doubleToLongBits(v);
+    long t = bits & (C_MIN - 1);
+    int bq = (int) (bits >>> (P - 1)) & 0x7FF;
+    long decimal;
+    if (bq != 0) {
+      // normal value: v = c 2^-mq
+      int mq = -Q_MIN + 1 - bq;
+      long c = C_MIN | t;
+      if (0 < mq && mq < P) {
+        // fast path for integers
+        long f = c >> mq;
+        if (f << mq == c) {
+          return write(f, 0, digits, scale);
+        }
+      }
+      decimal = toDecimal(-mq, c, scale);
+    } else if (t != 0) {
+      // subnormal value
+      decimal = toDecimal(Q_MIN, t, scale);
+    } else {
+      return write(0, 0, digits, scale);
+    }
+    return write(decimal, scale[0], digits, scale);
+  }
+
+  /**
+   * Returns the significand of the decimal chosen for {@code c 2^q}, storing its exponent in
+   * {@code exponent[0]}.
+   */
+  private static long toDecimal(int q, long c, int[] exponent) {
+    int out = (int) c & 1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != C_MIN || q == Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      // the gap below a power of two is only half as wide
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 2;
+    long g1k = Tables.G1[k - K_MIN];
+    long g0k = Tables.G0[k - K_MIN];
+
+    // v, and the bounds of its rounding interval, scaled by 10^-k and 4
+    long vb = rop(g1k, g0k, cb << h);
+    long vbl = rop(g1k, g0k, cbl << h);
+    long vbr = rop(g1k, g0k, cbr << h);
+
+    long s = vb >> 2;
+    if (s >= 10) {
+      // try one digit less: s' = floor(s / 10); unlike Double.toString, which always keeps two
+      // digits, this also shortens the few subnormal values with a two digit s
+      long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+      long tp10 = sp10 + 10;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        exponent[0] = k;
+        return upin ? sp10 : tp10;
+      }
+    }
+
+    long t = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (t << 2) + out <= vbr;
+    exponent[0] = k;
+    if (uin != win) {
+      return uin ? s : t;
+    }
+    // both candidates round to v, pick the closer one
+    long cmp = vb - ((s + t) << 1);
+    return cmp < 0 || (cmp == 0 && (s & 1) == 0) ? s : t;
+  }
+
+  /** Writes the digits of {@code f 10^e} without trailing zeros. */
+  private static int write(long f, int e, char[] digits, int[] scale) {
+    if (f == 0) {
+      digits[0] = '0';
+      scale[0] = 0;
+      return 1;
+    }
+    while (f % 10 == 0) {
+      f /= 10;
+      e++;
+    }
+    int length = 0;
+    for (long rest = f; rest != 0; rest /= 10) {
+      length++;
+    }
+    for (int i = length - 1; i >= 0; i--) {
+      digits[i] = (char) ('0' + f % 10);
+      f /= 10;
+    }
+    scale[0] = e;
+    return length;
+  }
+
+  /** Rounds {@code g cp 2^-127} to odd. */
+  private static long rop(long g1, long g0, long cp) {
+    long x1 = multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> 63);
+    return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+  }
+
+  /** Returns the high 64 bits of the 128 bit product of {@code x} and {@code y}. */
+  static long multiplyHigh(long x, long y) {
+    long x1 = x >> 32;
+    long x0 = x & 0xFFFFFFFFL;
+    long y1 = y >> 32;
+    long y0 = y & 0xFFFFFFFFL;
+    long t = x1 * y0 + ((x0 * y0) >>> 32);
+    long w1 = x0 * y1 + (t & 0xFFFFFFFFL);
+    return x1 * y1 + (t >> 32) + (w1 >> 32);
+  }
+
+  /** Returns floor(q log10(2)). */
+  private static int flog10pow2(int q) {
+    return (int) ((q * 661971961083L) >> 41);
+  }
+
+  /** Returns floor(log10(3/4 2^q)). */
+  private static int flog10threeQuartersPow2(int q) {
+    return (int) ((q * 661971961083L - 274743187321L) >> 41);
+  }
+
+  /** Returns floor(e log2(10)). */
+  private static int flog2pow10(int e) {
+    return (int) ((e * 913124641741L) >> 38);
+  }
+
+  private DoubleToDecimal() {}
+
+  /**
+   * Holds g(k) = floor(10^-k 2^-r) + 1, where 2^125 <= 10^-k 2^-r < 2^126, split into its high and
+   * low 63 bits. The tables are only computed when the class is first used.
+   */
+  private static final class Tables {
+    static final long[] G1 = new long[K_MAX - K_MIN + 1];
+    static final long[] G0 = new long[K_MAX - K_MIN + 1];
+
+    static {
+      BigInteger mask63 = BigInteger.valueOf(MASK_63);
+      for (int k = K_MIN; k <= K_MAX; k++) {
+        int r = flog2pow10(-k) - 125;
+        BigInteger g;
+        if (k <= 0) {
+          BigInteger pow = BigInteger.TEN.pow(-k);
+          g = r >= 0 ? pow.shiftRight(r) : pow.shiftLeft(-r);
+        } else {
+          g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+        }
+        g = g.add(BigInteger.ONE);
+        G1[k - K_MIN] = g.shiftRight(63).longValue();
+        G0[k - K_MIN] = g.and(mask63).longValue();
+      }
+    }
+  }
+}
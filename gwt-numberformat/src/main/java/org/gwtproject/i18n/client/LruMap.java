@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map holding at most a given number of entries, evicting the least recently used one when a new
+ * entry does not fit. Not synchronized; callers guard it with their own lock.
+ */
+final class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+  private int maximumSize;
+  private long evictionCount;
+
+  /** @param maximumSize the maximum number of entries */
+  LruMap(int maximumSize) {
+    super(16, 0.75f, true);
+    this.maximumSize = maximumSize;
+  }
+
+  int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * Changes the maximum number of entries, evicting the least recently used ones if there are more.
+   */
+  void setMaximumSize(int maximumSize) {
+    this.maximumSize = maximumSize;
+    while (size() > maximumSize) {
+      remove(keySet().iterator().next());
+      evictionCount++;
+    }
+  }
+
+  /** Returns the number of entries removed to make room for newer ones. */
+  long getEvictionCount() {
+    return evictionCount;
+  }
+
+  void resetEvictionCount() {
+    evictionCount = 0;
+  }
+
+  @Override
+  protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+    if (size() > maximumSize) {
+      evictionCount++;
+      return true;
+    }
+    return false;
+  }
+}
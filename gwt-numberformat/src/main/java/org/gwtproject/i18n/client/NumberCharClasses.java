@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import org.gwtproject.i18n.shared.cldr.NumberConstants;
+
+/**
+ * A table classifying the characters that may occur in a number of one locale, so that parsing
+ * needs a single lookup per character instead of comparing it with each symbol of the {@link
+ * NumberConstants}.
+ *
+ * <p>The class of a character is a combination of the flags below, with the value of a digit in
+ * its lowest four bits. Only the first character of each symbol is classified, as only that is
+ * compared when parsing. The table is split into pages of 256 characters; pages without any
+ * classified character are shared.
+ *
+ * <p>Tables are immutable, and shared by all formats using the same {@link NumberConstants}.
+ */
+final class NumberCharClasses {
+
+  /** The mask of the digit value. */
+  static final int DIGIT_VALUE = 0xF;
+
+  /** A latin digit or a digit of the locale. */
+  static final int DIGIT = 0x10;
+
+  /** The decimal separator. */
+  static final int DECIMAL = 0x20;
+
+  /** The grouping separator. */
+  static final int GROUPING = 0x40;
+
+  /** The monetary decimal separator. */
+  static final int MONETARY_DECIMAL = 0x80;
+
+  /** The monetary grouping separator. */
+  static final int MONETARY_GROUPING = 0x100;
+
+  /** The exponential symbol. */
+  static final int EXPONENT = 0x200;
+
+  /** A plus or minus sign. */
+  static final int SIGN = 0x400;
+
+  /** The percent sign. */
+  static final int PERCENT = 0x800;
+
+  /** The per mille sign. */
+  static final int PER_MILLE = 0x1000;
+
+  /** A character used as comma in some locale. */
+  static final int COMMA_EQUIVALENT = 0x2000;
+
+  /** A character used as dot in some locale. */
+  static final int DOT_EQUIVALENT = 0x4000;
+
+  // Localized characters for dot and comma in number patterns, used to produce
+  // the latin mapping for arbitrary locales.  Any separator not in either of
+  // these strings will be mapped to non-breaking space (U+00A0).
+  private static final String LOCALIZED_COMMA_EQUIVALENTS =
+      ",\u060C\u066B\u3001\uFE10\uFE11\uFE50\uFE51\uFF0C\uFF64";
+
+  private static final String LOCALIZED_DOT_EQUIVALENTS = ".\u2024\u3002\uFE12\uFE52\uFF0E\uFF61";
+
+  private static final int MAXIMUM_CACHED = 16;
+
+  private static final char[] EMPTY_PAGE = new char[256];
+
+  /** The classes of the characters that do not depend on the locale. */
+  private static final NumberCharClasses LOCALE_INDEPENDENT = new NumberCharClasses(null);
+
+  private static final Object lock = new Object[0];
+
+  private static final LruMap<NumberConstants, NumberCharClasses> cache =
+      new LruMap<>(MAXIMUM_CACHED);
+
+  /**
+   * Returns the table for a {@link NumberConstants} instance, creating it on first use.
+   *
+   * @param numberConstants the constants of the locale
+   * @return the shared table
+   */
+  static NumberCharClasses get(NumberConstants numberConstants) {
+    synchronized (lock) {
+      NumberCharClasses classes = cache.get(numberConstants);
+      if (classes == null) {
+        classes = new NumberCharClasses(numberConstants);
+        cache.put(numberConstants, classes);
+      }
+      return classes;
+    }
+  }
+
+  /**
+   * Returns the class of a character which does not depend on the locale, that is whether it is a
+   * latin digit, a sign, or a comma or dot equivalent.
+   */
+  static int classifyLocaleIndependent(char ch) {
+    return LOCALE_INDEPENDENT.classify(ch);
+  }
+
+  private final char[][] pages = new char[256][];
+
+  private NumberCharClasses(NumberConstants numberConstants) {
+    for (int i = 0; i < pages.length; i++) {
+      pages[i] = EMPTY_PAGE;
+    }
+    for (int digit = 0; digit <= 9; digit++) {
+      add((char) ('0' + digit), DIGIT | digit);
+    }
+    add('+', SIGN);
+    add('-', SIGN);
+    for (int i = 0; i < LOCALIZED_COMMA_EQUIVALENTS.length(); i++) {
+      add(LOCALIZED_COMMA_EQUIVALENTS.charAt(i), COMMA_EQUIVALENT);
+    }
+    for (int i = 0; i < LOCALIZED_DOT_EQUIVALENTS.length(); i++) {
+      add(LOCALIZED_DOT_EQUIVALENTS.charAt(i), DOT_EQUIVALENT);
+    }
+    if (numberConstants == null) {
+      return;
+    }
+
+    char zero = numberConstants.zeroDigit().charAt(0);
+    if (zero != '0') {
+      for (int digit = 0; digit <= 9; digit++) {
+        add((char) (zero + digit), DIGIT | digit);
+      }
+    }
+    add(numberConstants.decimalSeparator(), DECIMAL);
+    add(numberConstants.groupingSeparator(), GROUPING);
+    add(numberConstants.monetarySeparator(), MONETARY_DECIMAL);
+    add(numberConstants.monetaryGroupingSeparator(), MONETARY_GROUPING);
+    add(numberConstants.exponentialSymbol(), EXPONENT);
+    add(numberConstants.percent(), PERCENT);
+    add(numberConstants.perMill(), PER_MILLE);
+  }
+
+  /**
+   * Returns the class of a character.
+   *
+   * @param ch the character
+   * @return the combined flags of the character, 0 if it has none
+   */
+  int classify(char ch) {
+    return pages[ch >>> 8][ch & 0xFF];
+  }
+
+  private void add(String symbol, int flags) {
+    if (symbol.length() > 0) {
+      add(symbol.charAt(0), flags);
+    }
+  }
+
+  private void add(char ch, int flags) {
+    char[] page = pages[ch >>> 8];
+    if (page == EMPTY_PAGE) {
+      page = new char[256];
+      pages[ch >>> 8] = page;
+    }
+    page[ch & 0xFF] |= flags;
+  }
+}
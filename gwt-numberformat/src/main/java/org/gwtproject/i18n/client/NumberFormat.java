@@ -16,9 +16,13 @@
 package org.gwtproject.i18n.client;
 
 import elemental2.core.JsNumber;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.BitSet;
 import jsinterop.base.Js;
+import org.gwtproject.i18n.shared.GwtLocale;
 import org.gwtproject.i18n.shared.cldr.CurrencyData;
 import org.gwtproject.i18n.shared.cldr.CurrencyList;
 import org.gwtproject.i18n.shared.cldr.LocaleInfo;
@@ -298,30 +302,22 @@ public class NumberFormat {
   private static NumberFormat cachedDecimalFormat;
   private static NumberFormat cachedPercentFormat;
   private static NumberFormat cachedScientificFormat;
+  private static CurrencyFormats cachedCurrencyFormats;
 
-  // Constants for characters used in programmatic (unlocalized) patterns.
-  private static final char CURRENCY_SIGN = '\u00A4';
+  // Parsed user supplied patterns.
+  private static final NumberFormatCache formatCache = new NumberFormatCache();
+
+  // Constants and standard formatters of other locales.
+  private static final NumberFormatRegistry numberFormatRegistry = new NumberFormatRegistry();
 
   // Number constants mapped to use latin digits/separators.
   private static NumberConstants latinNumberConstants = null;
-  // Localized characters for dot and comma in number patterns, used to produce
-  // the latin mapping for arbitrary locales.  Any separator not in either of
-  // these strings will be mapped to non-breaking space (U+00A0).
-  private static final String LOCALIZED_COMMA_EQUIVALENTS =
-      ",\u060C\u066B\u3001\uFE10\uFE11\uFE50\uFE51\uFF0C\uFF64";
-
-  private static final String LOCALIZED_DOT_EQUIVALENTS = ".\u2024\u3002\uFE12\uFE52\uFF0E\uFF61";
-  private static final char PATTERN_DECIMAL_SEPARATOR = '.';
-  private static final char PATTERN_DIGIT = '#';
-  private static final char PATTERN_EXPONENT = 'E';
-  private static final char PATTERN_GROUPING_SEPARATOR = ',';
-  private static final char PATTERN_MINUS = '-';
-  private static final char PATTERN_PER_MILLE = '\u2030';
-  private static final char PATTERN_PERCENT = '%';
-  private static final char PATTERN_SEPARATOR = ';';
-  private static final char PATTERN_ZERO_DIGIT = '0';
-
-  private static final char QUOTE = '\'';
+
+  /** The maximum number of integers whose formatted strings a format caches. */
+  public static final int MAXIMUM_CACHED_INTEGERS = 65536;
+
+  // GWT only knows the system properties defined by the module, a JVM always sets java.version.
+  private static final boolean RUNNING_ON_JVM = !"".equals(System.getProperty("java.version", ""));
 
   /**
    * Returns true if all new NumberFormat instances will use latin digits and related characters
@@ -365,7 +361,34 @@ public class NumberFormat {
    * @throws IllegalArgumentException if the currency code is unknown
    */
   public static NumberFormat getCurrencyFormat(String currencyCode) {
-    return getCurrencyFormat(lookupCurrency(currencyCode));
+    return currencyFormats().get(CurrencyFormats.STANDARD, CurrencyTable.idOf(currencyCode));
+  }
+
+  /**
+   * Provides the standard currency format for a locale, using its default currency.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @return a <code>NumberFormat</code> capable of producing and consuming currency format for the
+   *     locale
+   * @throws IllegalArgumentException if no number constants are known for the locale
+   */
+  public static NumberFormat getCurrencyFormat(GwtLocale locale) {
+    NumberFormatRegistry.LocaleFormats formats = numberFormatRegistry.getFormats(locale);
+    return formats.currencyFormats.get(CurrencyFormats.STANDARD, formats.getDefaultCurrencyId());
+  }
+
+  /**
+   * Provides the standard currency format for a locale using a specified currency.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @param currencyCode valid currency code
+   * @return a <code>NumberFormat</code> capable of producing and consuming currency format for the
+   *     locale
+   * @throws IllegalArgumentException if no number constants are known for the locale or the
+   *     currency code is unknown
+   */
+  public static NumberFormat getCurrencyFormat(GwtLocale locale, String currencyCode) {
+    return getCurrencyFormat(locale, CurrencyFormats.STANDARD, currencyCode);
   }
 
   /**
@@ -383,6 +406,18 @@ public class NumberFormat {
     return cachedDecimalFormat;
   }
 
+  /**
+   * Provides the standard decimal format for a locale.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @return a <code>NumberFormat</code> capable of producing and consuming decimal format for the
+   *     locale
+   * @throws IllegalArgumentException if no number constants are known for the locale
+   */
+  public static NumberFormat getDecimalFormat(GwtLocale locale) {
+    return numberFormatRegistry.getFormats(locale).decimalFormat;
+  }
+
   /**
    * Gets a <code>NumberFormat</code> instance for the default locale using the specified pattern
    * and the default currencyCode.
@@ -392,7 +427,7 @@ public class NumberFormat {
    * @throws IllegalArgumentException if the specified pattern is invalid
    */
   public static NumberFormat getFormat(String pattern) {
-    return new NumberFormat(pattern, CurrencyList.get().getDefault(), true);
+    return formatCache.get(defaultNumberConstants, pattern, CurrencyList.get().getDefault());
   }
 
   /**
@@ -405,7 +440,7 @@ public class NumberFormat {
    * @throws IllegalArgumentException if the specified pattern is invalid
    */
   public static NumberFormat getFormat(String pattern, CurrencyData currencyData) {
-    return new NumberFormat(pattern, currencyData, true);
+    return formatCache.get(defaultNumberConstants, pattern, currencyData);
   }
 
   /**
@@ -419,7 +454,38 @@ public class NumberFormat {
    *     unknown
    */
   public static NumberFormat getFormat(String pattern, String currencyCode) {
-    return new NumberFormat(pattern, lookupCurrency(currencyCode), true);
+    return formatCache.get(defaultNumberConstants, pattern, lookupCurrency(currencyCode));
+  }
+
+  /**
+   * Gets a <code>NumberFormat</code> instance for a locale using the specified pattern and the
+   * default currency of the locale.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @param pattern pattern for this formatter
+   * @return a NumberFormat instance
+   * @throws IllegalArgumentException if the specified pattern is invalid or no number constants are
+   *     known for the locale
+   */
+  public static NumberFormat getFormat(GwtLocale locale, String pattern) {
+    NumberFormatRegistry.LocaleFormats formats = numberFormatRegistry.getFormats(locale);
+    return formatCache.get(formats.numberConstants, pattern, formats.getDefaultCurrency());
+  }
+
+  /**
+   * Returns the cache of patterns parsed by the {@code getFormat} methods, e.g. to read its hit and
+   * miss counts or to change its size.
+   */
+  public static NumberFormatCache getFormatCache() {
+    return formatCache;
+  }
+
+  /**
+   * Returns the registry of the locales other than the current one which formats may be requested
+   * for, e.g. to register their constants on a server formatting numbers for many locales.
+   */
+  public static NumberFormatRegistry getNumberFormatRegistry() {
+    return numberFormatRegistry;
   }
 
   /**
@@ -453,7 +519,21 @@ public class NumberFormat {
    * @throws IllegalArgumentException if the currency code is unknown
    */
   public static NumberFormat getGlobalCurrencyFormat(String currencyCode) {
-    return getGlobalCurrencyFormat(lookupCurrency(currencyCode));
+    return currencyFormats().get(CurrencyFormats.GLOBAL, CurrencyTable.idOf(currencyCode));
+  }
+
+  /**
+   * Provides the global currency format for a locale, using a specified currency.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @param currencyCode valid currency code
+   * @return a <code>NumberFormat</code> capable of producing and consuming currency format for the
+   *     locale
+   * @throws IllegalArgumentException if no number constants are known for the locale or the
+   *     currency code is unknown
+   */
+  public static NumberFormat getGlobalCurrencyFormat(GwtLocale locale, String currencyCode) {
+    return getCurrencyFormat(locale, CurrencyFormats.GLOBAL, currencyCode);
   }
 
   /**
@@ -471,6 +551,18 @@ public class NumberFormat {
     return cachedPercentFormat;
   }
 
+  /**
+   * Provides the standard percent format for a locale.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @return a <code>NumberFormat</code> capable of producing and consuming percent format for the
+   *     locale
+   * @throws IllegalArgumentException if no number constants are known for the locale
+   */
+  public static NumberFormat getPercentFormat(GwtLocale locale) {
+    return numberFormatRegistry.getFormats(locale).percentFormat;
+  }
+
   /**
    * Provides the standard scientific format for the default locale.
    *
@@ -486,6 +578,18 @@ public class NumberFormat {
     return cachedScientificFormat;
   }
 
+  /**
+   * Provides the standard scientific format for a locale.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @return a <code>NumberFormat</code> capable of producing and consuming scientific format for
+   *     the locale
+   * @throws IllegalArgumentException if no number constants are known for the locale
+   */
+  public static NumberFormat getScientificFormat(GwtLocale locale) {
+    return numberFormatRegistry.getFormats(locale).scientificFormat;
+  }
+
   /**
    * Provides the simple currency format for the current locale using its default currency. Note
    * that these formats may be ambiguous if the currency isn't clear from other content on the page.
@@ -520,7 +624,67 @@ public class NumberFormat {
    * @throws IllegalArgumentException if the currency code is unknown
    */
   public static NumberFormat getSimpleCurrencyFormat(String currencyCode) {
-    return getSimpleCurrencyFormat(lookupCurrency(currencyCode));
+    return currencyFormats().get(CurrencyFormats.SIMPLE, CurrencyTable.idOf(currencyCode));
+  }
+
+  /**
+   * Provides the simple currency format for a locale using a specified currency. Note that these
+   * formats may be ambiguous if the currency isn't clear from other content on the page.
+   *
+   * @param locale the locale, see {@link #getNumberFormatRegistry()}
+   * @param currencyCode valid currency code
+   * @return a <code>NumberFormat</code> capable of producing and consuming currency format for the
+   *     locale
+   * @throws IllegalArgumentException if no number constants are known for the locale or the
+   *     currency code is unknown
+   */
+  public static NumberFormat getSimpleCurrencyFormat(GwtLocale locale, String currencyCode) {
+    return getCurrencyFormat(locale, CurrencyFormats.SIMPLE, currencyCode);
+  }
+
+  /**
+   * Formats a double with each of several formats, such as the formats of the locales of the
+   * recipients of a message. The value is converted to digits and rounded once for all formats
+   * rounding it alike, which then only differ in their affixes and symbols.
+   *
+   * @param number the double to format
+   * @param formats the formats to use
+   * @return the number formatted with each format, in the order of {@code formats}
+   */
+  public static String[] formatEach(double number, NumberFormat... formats) {
+    String[] formatted = new String[formats.length];
+    if (Double.isNaN(number) || Double.isInfinite(number)) {
+      for (int i = 0; i < formats.length; ++i) {
+        formatted[i] = formats[i].format(number);
+      }
+      return formatted;
+    }
+    // the formats which rounded the value, and the rounded digits of each
+    NumberFormat[] rounding = new NumberFormat[formats.length];
+    FormatContext[] contexts = new FormatContext[formats.length];
+    int roundingCount = 0;
+    for (int i = 0; i < formats.length; ++i) {
+      NumberFormat format = formats[i];
+      FormatContext context = null;
+      for (int j = 0; j < roundingCount && context == null; ++j) {
+        if (format.roundsLike(rounding[j])) {
+          context = contexts[j];
+        }
+      }
+      int length;
+      if (context == null) {
+        context = new FormatContext();
+        length = format.layout(number, context);
+        rounding[roundingCount] = format;
+        contexts[roundingCount++] = context;
+      } else {
+        length = format.measure(context.isNegative, context);
+      }
+      char[] out = new char[length];
+      format.write(context, out, length);
+      formatted[i] = String.valueOf(out);
+    }
+    return formatted;
   }
 
   /**
@@ -665,10 +829,11 @@ public class NumberFormat {
    */
   protected static String remapSeparator(String separator) {
     char ch = separator.length() > 0 ? separator.charAt(0) : 0xFFFF;
-    if (LOCALIZED_DOT_EQUIVALENTS.indexOf(ch) >= 0) {
+    int charClass = NumberCharClasses.classifyLocaleIndependent(ch);
+    if ((charClass & NumberCharClasses.DOT_EQUIVALENT) != 0) {
       return ".";
     }
-    if (LOCALIZED_COMMA_EQUIVALENTS.indexOf(ch) >= 0) {
+    if ((charClass & NumberCharClasses.COMMA_EQUIVALENT) != 0) {
       return ",";
     }
     return "\u00A0";
@@ -679,14 +844,42 @@ public class NumberFormat {
    * places to the right of the end of the string the decimal point should be moved -- i.e., 3.5
    * would be added to the buffer as "35" and a returned scale of -1).
    *
+   * <p>In JavaScript the digits are those of {@code val.toPrecision(20)}. On the JVM they are the
+   * shortest digits which uniquely identify {@code val}, computed without JavaScript interop.
+   *
    * @param buf
    * @param val
    * @return scale to apply to the result
    */
   // @VisibleForTesting
   public static int toScaledString(StringBuilder buf, double val) {
+    if (RUNNING_ON_JVM) {
+      if (Double.isNaN(val) || Double.isInfinite(val)) {
+        // as given by toPrecision in JavaScript
+        buf.append(val);
+        return 0;
+      }
+      if (val < 0 || (val == 0 && 1 / val < 0)) {
+        buf.append('-');
+      }
+      char[] digits = new char[DoubleToDecimal.MAX_DIGITS];
+      int[] scale = new int[1];
+      buf.append(digits, 0, DoubleToDecimal.toDigits(val, digits, scale));
+      return scale[0];
+    }
     int startLen = buf.length();
     buf.append(toPrecision(val, 20));
+    return removeExponentAndPoint(buf, startLen);
+  }
+
+  /**
+   * Removes the exponent and decimal point from a number appended to a buffer.
+   *
+   * @param buf
+   * @param startLen the index of the number in {@code buf}
+   * @return scale to apply to the result
+   */
+  private static int removeExponentAndPoint(StringBuilder buf, int startLen) {
     int scale = 0;
 
     // remove exponent if present, adjusting scale
@@ -714,6 +907,24 @@ public class NumberFormat {
     return scale;
   }
 
+  /**
+   * Appends the shortest digits which uniquely identify a double, like {@link
+   * #toScaledString(StringBuilder, double)}, which it is on the JVM.
+   *
+   * @param buf
+   * @param val
+   * @return scale to apply to the result
+   */
+  private static int toShortestScaledString(StringBuilder buf, double val) {
+    if (RUNNING_ON_JVM) {
+      return toScaledString(buf, val);
+    }
+    // in JavaScript, String(val) gives the shortest digits
+    int startLen = buf.length();
+    buf.append(String.valueOf(val));
+    return removeExponentAndPoint(buf, startLen);
+  }
+
   /**
    * Lookup a currency code.
    *
@@ -722,15 +933,34 @@ public class NumberFormat {
    * @throws IllegalArgumentException if the currency code is unknown
    */
   private static CurrencyData lookupCurrency(String currencyCode) {
-    CurrencyData currencyData = CurrencyList.get().lookup(currencyCode);
-    if (currencyData == null) {
-      throw new IllegalArgumentException(
-          "Currency code "
-              + currencyCode
-              + " is unkown in locale "
-              + LocaleInfo.getCurrentLocale().getLocaleName());
+    return CurrencyTable.get(CurrencyTable.idOf(currencyCode));
+  }
+
+  /**
+   * Returns the currency formats for the current constants, see {@link #setForcedLatinDigits}.
+   *
+   * @return the shared currency formats
+   */
+  private static CurrencyFormats currencyFormats() {
+    CurrencyFormats formats = cachedCurrencyFormats;
+    if (formats == null || formats.getNumberConstants() != defaultNumberConstants) {
+      formats = new CurrencyFormats(defaultNumberConstants);
+      cachedCurrencyFormats = formats;
     }
-    return currencyData;
+    return formats;
+  }
+
+  /**
+   * Returns a currency format of a locale.
+   *
+   * @param locale the locale
+   * @param kind the kind of the format, see {@link CurrencyFormats}
+   * @param currencyCode valid currency code
+   * @return the shared format
+   */
+  private static NumberFormat getCurrencyFormat(GwtLocale locale, int kind, String currencyCode) {
+    NumberFormatRegistry.LocaleFormats formats = numberFormatRegistry.getFormats(locale);
+    return formats.currencyFormats.get(kind, CurrencyTable.idOf(currencyCode));
   }
 
   /**
@@ -745,59 +975,74 @@ public class NumberFormat {
     return Js.<JsNumber>uncheckedCast(d).toPrecision(digits);
   }
 
-  /** Information about the currency being used. */
-  private CurrencyData currencyData;
-
-  /**
-   * Holds the current decimal position during one call to {@link #format(boolean, StringBuilder,
-   * int)}.
+  /*
+   * All fields are final, so that an instance can be shared between threads once constructed. The
+   * state of a single call to format lives in a FormatContext instead.
    */
-  private transient int decimalPosition;
 
-  /** Forces the decimal separator to always appear in a formatted number. */
-  private boolean decimalSeparatorAlwaysShown = false;
+  /** Information about the currency being used. */
+  private final CurrencyData currencyData;
 
-  /**
-   * Holds the current digits length during one call to {@link #format(boolean, StringBuilder,
-   * int)}.
-   */
-  private transient int digitsLength;
+  /** Forces the decimal separator to always appear in a formatted number. */
+  private final boolean decimalSeparatorAlwaysShown;
 
-  /** Holds the current exponent during one call to {@link #format(boolean, StringBuilder, int)}. */
-  private transient int exponent;
   /** The number of digits between grouping separators in the integer portion of a number. */
-  private int groupingSize = 3;
+  private final int groupingSize;
 
-  private boolean isCurrencyFormat = false;
-  private int maximumFractionDigits = 3; // invariant, >= minFractionDigits.
+  private final boolean isCurrencyFormat;
+  private final int maximumFractionDigits; // invariant, >= minFractionDigits.
 
-  private int maximumIntegerDigits = 40;
+  private final int maximumIntegerDigits;
 
-  private int minExponentDigits;
+  private final int minExponentDigits;
 
-  private int minimumFractionDigits = 0;
+  private final int minimumFractionDigits;
 
-  private int minimumIntegerDigits = 1;
+  private final int minimumIntegerDigits;
 
   // The multiplier for use in percent, per mille, etc.
-  private int multiplier = 1;
+  private final int multiplier;
+
+  // The power of ten of the multiplier, by which doubles are scaled instead of multiplied.
+  private final int multiplierExponent;
 
-  private String negativePrefix = "-";
+  private final String negativePrefix;
 
-  private String negativeSuffix = "";
+  private final String negativeSuffix;
 
   // Locale specific symbol collection.
   private final NumberConstants numberConstants;
 
+  // The compiled pattern, shared with the formats derived from this one.
+  private final NumberPattern numberPattern;
+
   // The pattern to use for formatting and parsing.
   private final String pattern;
 
-  private String positivePrefix = "";
+  private final String positivePrefix;
+
+  private final String positiveSuffix;
 
-  private String positiveSuffix = "";
+  // How fractional digits beyond the maximum are rounded.
+  private final RoundingMode roundingMode;
+
+  // The formatted strings of the integers from cachedIntegersFrom, filled in when first
+  // formatted, or null. A race just formats a string twice, as strings are immutable.
+  private final String[] cachedIntegers;
+  private final int cachedIntegersFrom;
 
   // True to force the use of exponential (i.e. scientific) notation.
-  private boolean useExponentialNotation = false;
+  private final boolean useExponentialNotation;
+
+  // Symbols used by format, looked up once.
+  private final char decimalSeparatorChar;
+  private final char groupingSeparatorChar;
+  private final char zeroChar;
+
+  // The characters of numbers, classified for parse.
+  private final NumberCharClasses charClasses;
+  private final int decimalClass;
+  private final int groupingClass;
 
   /**
    * Constructs a format object based on the specified settings.
@@ -815,19 +1060,9 @@ public class NumberFormat {
       String pattern,
       CurrencyData cdata,
       boolean userSuppliedPattern) {
-    if (cdata == null) {
-      throw new IllegalArgumentException("Unknown currency code");
-    }
-    this.numberConstants = numberConstants;
-    this.pattern = pattern;
-    currencyData = cdata;
-
-    // TODO: handle per-currency flags, such as symbol prefix/suffix and spacing
-    parsePattern(this.pattern);
-    if (!userSuppliedPattern && isCurrencyFormat) {
-      minimumFractionDigits = currencyData.getDefaultFractionDigits();
-      maximumFractionDigits = minimumFractionDigits;
-    }
+    this(
+        NumberPattern.get(numberConstants, pattern, cdata),
+        userSuppliedPattern ? -1 : cdata.getDefaultFractionDigits());
   }
 
   /**
@@ -841,6 +1076,80 @@ public class NumberFormat {
     this(defaultNumberConstants, pattern, cdata, userSuppliedPattern);
   }
 
+  /**
+   * Constructs a format object for a compiled pattern, using the fraction digits of a currency for
+   * currency formats.
+   *
+   * @param numberPattern the compiled pattern
+   * @param currencyFractionDigits the fraction digits of the currency, or -1 to use those of the
+   *     pattern
+   */
+  NumberFormat(NumberPattern numberPattern, int currencyFractionDigits) {
+    this(
+        numberPattern,
+        numberPattern.isCurrencyFormat && currencyFractionDigits >= 0
+            ? currencyFractionDigits
+            : numberPattern.minimumFractionDigits,
+        numberPattern.isCurrencyFormat && currencyFractionDigits >= 0
+            ? currencyFractionDigits
+            : numberPattern.maximumFractionDigits,
+        RoundingMode.HALF_UP,
+        0,
+        0);
+  }
+
+  /**
+   * Constructs a format object for a compiled pattern with the given fraction digits and rounding
+   * mode. The pattern is shared, so deriving formats with other settings does not parse it again.
+   *
+   * @param numberPattern the compiled pattern
+   * @param minimumFractionDigits the minimum number of fractional digits
+   * @param maximumFractionDigits the maximum number of fractional digits
+   * @param roundingMode how digits beyond the maximum are rounded
+   * @param cachedIntegersFrom the first integer whose formatted string is cached
+   * @param cachedIntegersCount the number of integers whose formatted strings are cached
+   */
+  private NumberFormat(
+      NumberPattern numberPattern,
+      int minimumFractionDigits,
+      int maximumFractionDigits,
+      RoundingMode roundingMode,
+      int cachedIntegersFrom,
+      int cachedIntegersCount) {
+    this.numberPattern = numberPattern;
+    this.roundingMode = roundingMode;
+    this.cachedIntegersFrom = cachedIntegersFrom;
+    cachedIntegers = cachedIntegersCount > 0 ? new String[cachedIntegersCount] : null;
+    numberConstants = numberPattern.numberConstants;
+    pattern = numberPattern.pattern;
+    currencyData = numberPattern.currencyData;
+    decimalSeparatorAlwaysShown = numberPattern.decimalSeparatorAlwaysShown;
+    groupingSize = numberPattern.groupingSize;
+    isCurrencyFormat = numberPattern.isCurrencyFormat;
+    this.maximumFractionDigits = maximumFractionDigits;
+    maximumIntegerDigits = numberPattern.maximumIntegerDigits;
+    minExponentDigits = numberPattern.minExponentDigits;
+    this.minimumFractionDigits = minimumFractionDigits;
+    minimumIntegerDigits = numberPattern.minimumIntegerDigits;
+    multiplier = numberPattern.multiplier;
+    int exponent = 0;
+    for (int m = multiplier; m > 1; m /= 10) {
+      exponent++;
+    }
+    multiplierExponent = exponent;
+    negativePrefix = numberPattern.negativePrefix;
+    negativeSuffix = numberPattern.negativeSuffix;
+    positivePrefix = numberPattern.positivePrefix;
+    positiveSuffix = numberPattern.positiveSuffix;
+    useExponentialNotation = numberPattern.useExponentialNotation;
+    decimalSeparatorChar = numberPattern.decimalSeparatorChar;
+    groupingSeparatorChar = numberPattern.groupingSeparatorChar;
+    zeroChar = numberPattern.zeroChar;
+    charClasses = numberPattern.charClasses;
+    decimalClass = numberPattern.decimalClass;
+    groupingClass = numberPattern.groupingClass;
+  }
+
   /**
    * This method formats a double to produce a string.
    *
@@ -848,46 +1157,89 @@ public class NumberFormat {
    * @return the formatted number string
    */
   public String format(double number) {
+    if (cachedIntegers != null
+        && number >= cachedIntegersFrom
+        && number < (double) cachedIntegersFrom + cachedIntegers.length
+        && number == (int) number
+        && (number != 0.0 || 1 / number > 0.0)) {
+      return cachedInteger((int) number);
+    }
+    return formatTo(number, new StringBuilder()).toString();
+  }
+
+  /**
+   * This method formats a Number to produce a string.
+   *
+   * <p>Any {@link Number} which is not a {@link BigDecimal}, {@link BigInteger}, or {@link Long}
+   * instance is formatted as a {@code double} value.
+   *
+   * @param number The Number instance to format
+   * @return the formatted number string
+   */
+  public String format(Number number) {
+    if (cachedIntegers != null && (number instanceof Long || number instanceof Integer)) {
+      long value = number.longValue();
+      if (value >= cachedIntegersFrom
+          && value < (long) cachedIntegersFrom + cachedIntegers.length) {
+        return cachedInteger((int) value);
+      }
+    }
+    return formatTo(number, new StringBuilder()).toString();
+  }
+
+  /**
+   * Formats a double and appends the result to a buffer, without creating an intermediate string.
+   *
+   * @param number the double to format
+   * @param out the buffer to append to
+   * @return {@code out}
+   */
+  public StringBuilder formatTo(double number, StringBuilder out) {
     if (Double.isNaN(number)) {
-      return numberConstants.notANumber();
+      return out.append(numberConstants.notANumber());
     }
     boolean isNegative = ((number < 0.0) || (number == 0.0 && 1 / number < 0.0));
     if (isNegative) {
       number = -number;
     }
-    StringBuilder buf = new StringBuilder();
     if (Double.isInfinite(number)) {
-      buf.append(isNegative ? negativePrefix : positivePrefix);
-      buf.append(numberConstants.infinity());
-      buf.append(isNegative ? negativeSuffix : positiveSuffix);
-      return buf.toString();
-    }
-    number *= multiplier;
-    int scale = toScaledString(buf, number);
-
-    // pre-round value to deal with .15 being represented as .149999... etc
-    // check at 3 more digits than will be required in the output
-    int preRound = buf.length() + scale + maximumFractionDigits + 3;
-    if (preRound > 0 && preRound < buf.length() && buf.charAt(preRound) == '9') {
-      propagateCarry(buf, preRound - 1);
-      scale += buf.length() - preRound;
-      buf.delete(preRound, buf.length());
+      out.append(isNegative ? negativePrefix : positivePrefix);
+      out.append(numberConstants.infinity());
+      out.append(isNegative ? negativeSuffix : positiveSuffix);
+      return out;
     }
+    // the digits are written to the end of out and copied from there; the multiplier is applied to
+    // the scale, as multiplying the double would round it
+    int end = out.length();
+    int scale = toDigits(out, number) + multiplierExponent;
+    FormatContext context = createContext(null, out, end, scale);
+    out.setLength(end);
+    preRound(context);
+    return out.append(format(isNegative, context));
+  }
 
-    format(isNegative, buf, scale);
-    return buf.toString();
+  /**
+   * Formats a long and appends the result to a buffer, without creating an intermediate string.
+   *
+   * @param number the long to format
+   * @param out the buffer to append to
+   * @return {@code out}
+   */
+  public StringBuilder formatTo(long number, StringBuilder out) {
+    return formatScaledTo(number, 0, out);
   }
 
   /**
-   * This method formats a Number to produce a string.
+   * Formats a Number and appends the result to a buffer, without creating an intermediate string.
    *
    * <p>Any {@link Number} which is not a {@link BigDecimal}, {@link BigInteger}, or {@link Long}
    * instance is formatted as a {@code double} value.
    *
-   * @param number The Number instance to format
-   * @return the formatted number string
+   * @param number the Number instance to format
+   * @param out the buffer to append to
+   * @return {@code out}
    */
-  public String format(Number number) {
+  public StringBuilder formatTo(Number number, StringBuilder out) {
     if (number instanceof BigDecimal) {
       BigDecimal bigDec = (BigDecimal) number;
       boolean isNegative = bigDec.signum() < 0;
@@ -895,10 +1247,7 @@ public class NumberFormat {
         bigDec = bigDec.negate();
       }
       bigDec = bigDec.multiply(BigDecimal.valueOf(multiplier));
-      StringBuilder buf = new StringBuilder();
-      buf.append(bigDec.unscaledValue().toString());
-      format(isNegative, buf, -bigDec.scale());
-      return buf.toString();
+      return formatTo(isNegative, bigDec.unscaledValue().toString(), -bigDec.scale(), out);
     } else if (number instanceof BigInteger) {
       BigInteger bigInt = (BigInteger) number;
       boolean isNegative = bigInt.signum() < 0;
@@ -906,15 +1255,186 @@ public class NumberFormat {
         bigInt = bigInt.negate();
       }
       bigInt = bigInt.multiply(BigInteger.valueOf(multiplier));
-      StringBuilder buf = new StringBuilder();
-      buf.append(bigInt.toString());
-      format(isNegative, buf, 0);
-      return buf.toString();
+      return formatTo(isNegative, bigInt.toString(), 0, out);
     } else if (number instanceof Long) {
-      return format(number.longValue(), 0);
+      return formatTo(number.longValue(), out);
+    } else {
+      return formatTo(number.doubleValue(), out);
+    }
+  }
+
+  /**
+   * Formats a Number and appends the result to an {@link Appendable}, such as a writer.
+   *
+   * @param number the Number instance to format
+   * @param out the appendable to append to
+   * @return {@code out}
+   * @throws IOException if appending to {@code out} fails
+   * @see #formatTo(Number, StringBuilder)
+   */
+  public <A extends Appendable> A formatTo(Number number, A out) throws IOException {
+    if (out instanceof StringBuilder) {
+      formatTo(number, (StringBuilder) out);
     } else {
-      return format(number.doubleValue());
+      out.append(formatTo(number, new StringBuilder()));
+    }
+    return out;
+  }
+
+  /**
+   * Formats a double as UTF-8 into a byte array, such as the backing array of a buffer, without
+   * creating an intermediate string. Latin digits are written as single bytes, and the affixes and
+   * symbols of the locale are encoded once per pattern.
+   *
+   * @param number the double to format
+   * @param out the array to write to
+   * @param offset the index in {@code out} of the first byte written
+   * @return the index after the last byte written, or -1 if {@code out} has no room for the
+   *     formatted number, in which case nothing is written
+   */
+  public int formatTo(double number, byte[] out, int offset) {
+    FormatContext context = new FormatContext();
+    layout(number, context);
+    return write(context, out, offset);
+  }
+
+  /**
+   * Formats a long as UTF-8 into a byte array, see {@link #formatTo(double, byte[], int)}.
+   *
+   * @param number the long to format
+   * @param out the array to write to
+   * @param offset the index in {@code out} of the first byte written
+   * @return the index after the last byte written, or -1 if {@code out} has no room for the
+   *     formatted number, in which case nothing is written
+   */
+  public int formatTo(long number, byte[] out, int offset) {
+    boolean isNegative = number < 0;
+    FormatContext context = createContext(null, isNegative, isNegative ? number : -number, 0);
+    layout(isNegative, context);
+    return write(context, out, offset);
+  }
+
+  /**
+   * Formats a decimal given as an unscaled long and a scale, like a {@link BigDecimal} but without
+   * creating one. The value formatted is {@code unscaled * 10^-scale}, so an amount of 123456
+   * cents is formatted with {@code formatScaled(123456, 2)}.
+   *
+   * @param unscaled the unscaled value
+   * @param scale the number of fractional digits in {@code unscaled}
+   * @return the formatted number string
+   */
+  public String formatScaled(long unscaled, int scale) {
+    return formatScaledTo(unscaled, scale, new StringBuilder()).toString();
+  }
+
+  /**
+   * Formats a decimal given as an unscaled long and a scale and appends the result to a buffer.
+   * Fractional digits beyond the maximum are rounded in long arithmetic, and applying the
+   * multiplier of a percent or per mille format cannot overflow.
+   *
+   * @param unscaled the unscaled value
+   * @param scale the number of fractional digits in {@code unscaled}
+   * @param out the buffer to append to
+   * @return {@code out}
+   * @see #formatScaled(long, int)
+   */
+  public StringBuilder formatScaledTo(long unscaled, int scale, StringBuilder out) {
+    boolean isNegative = unscaled < 0;
+    // work with the negative magnitude, which also holds Long.MIN_VALUE
+    long magnitude = isNegative ? unscaled : -unscaled;
+    return out.append(format(isNegative, createContext(null, isNegative, magnitude, scale)));
+  }
+
+  /**
+   * Formats a column of doubles into a single buffer, one value right after the other, without
+   * creating a string per value.
+   *
+   * @param values the values to format
+   * @param out the buffer to write to
+   * @param endOffsets receives, for each value formatted, the index in {@code out} after its last
+   *     character
+   * @return the number of values formatted, less than {@code values.length} if {@code out} is full
+   * @see #formatAll(double[], int, int, char[], int, int[])
+   */
+  public int formatAll(double[] values, char[] out, int[] endOffsets) {
+    return formatAll(values, 0, values.length, out, 0, endOffsets);
+  }
+
+  /**
+   * Formats a range of a column of doubles into a buffer, one value right after the other. The
+   * value at index {@code i} is written to {@code out} up to {@code endOffsets[i - from]}, starting
+   * where the previous one ended, or at {@code offset} for the first one. Formatting stops at the
+   * first value that does not fit into {@code out}.
+   *
+   * <p>All values share a single scratch area for their digits, which is not shared with other
+   * calls; disjoint ranges of a large column may thus be formatted by separate threads, each into
+   * a buffer of its own.
+   *
+   * @param values the values to format
+   * @param from the index of the first value to format
+   * @param to the index after the last value to format
+   * @param out the buffer to write to
+   * @param offset the index in {@code out} of the first character written
+   * @param endOffsets receives the end index of each value formatted
+   * @return the number of values formatted
+   */
+  public int formatAll(
+      double[] values, int from, int to, char[] out, int offset, int[] endOffsets) {
+    FormatContext context = new FormatContext();
+    for (int i = from; i < to; ++i) {
+      int length = layout(values[i], context);
+      if (length > out.length - offset) {
+        return i - from;
+      }
+      offset += length;
+      write(context, out, offset);
+      endOffsets[i - from] = offset;
+    }
+    return to - from;
+  }
+
+  /**
+   * Formats a column of longs into a single buffer, one value right after the other, without
+   * creating a string per value.
+   *
+   * @param values the values to format
+   * @param out the buffer to write to
+   * @param endOffsets receives, for each value formatted, the index in {@code out} after its last
+   *     character
+   * @return the number of values formatted, less than {@code values.length} if {@code out} is full
+   * @see #formatAll(long[], int, int, char[], int, int[])
+   */
+  public int formatAll(long[] values, char[] out, int[] endOffsets) {
+    return formatAll(values, 0, values.length, out, 0, endOffsets);
+  }
+
+  /**
+   * Formats a range of a column of longs into a buffer, one value right after the other, see
+   * {@link #formatAll(double[], int, int, char[], int, int[])}.
+   *
+   * @param values the values to format
+   * @param from the index of the first value to format
+   * @param to the index after the last value to format
+   * @param out the buffer to write to
+   * @param offset the index in {@code out} of the first character written
+   * @param endOffsets receives the end index of each value formatted
+   * @return the number of values formatted
+   */
+  public int formatAll(long[] values, int from, int to, char[] out, int offset, int[] endOffsets) {
+    FormatContext context = new FormatContext();
+    for (int i = from; i < to; ++i) {
+      long value = values[i];
+      boolean isNegative = value < 0;
+      int length =
+          layout(isNegative, createContext(context, isNegative, isNegative ? value : -value, 0));
+      if (length > out.length - offset) {
+        return i - from;
+      }
+      offset += length;
+      write(context, out, offset);
+      endOffsets[i - from] = offset;
     }
+    return to - from;
   }
 
   /** Returns the pattern used by this number format. */
@@ -923,30 +1443,90 @@ public class NumberFormat {
   }
 
   /**
-   * Change the number of fractional digits used for formatting with this instance.
+   * Returns how fractional digits beyond the maximum are rounded.
+   *
+   * @return the rounding mode
+   * @see #overrideRoundingMode(RoundingMode)
+   */
+  public RoundingMode getRoundingMode() {
+    return roundingMode;
+  }
+
+  /**
+   * Returns a format which differs from this one only in the number of fractional digits used for
+   * formatting. This instance is not changed.
    *
    * @param digits the exact number of fractional digits for formatted values; must be >= 0
-   * @return {@code this}, for chaining purposes
+   * @return a format with the given fractional digits
    */
   public NumberFormat overrideFractionDigits(int digits) {
     return overrideFractionDigits(digits, digits);
   }
 
   /**
-   * Change the number of fractional digits used for formatting with this instance. Digits after
-   * {@code minDigits} that are zero will be omitted from the formatted value.
+   * Returns a format which differs from this one only in the number of fractional digits used for
+   * formatting. Digits after {@code minDigits} that are zero will be omitted from the formatted
+   * value. This instance is not changed.
    *
    * @param minDigits the minimum number of fractional digits for formatted values; must be >= 0
    * @param maxDigits the maximum number of fractional digits for formatted values; must be >=
    *     {@code minDigits}
-   * @return {@code this}, for chaining purposes
+   * @return a format with the given fractional digits
    */
   public NumberFormat overrideFractionDigits(int minDigits, int maxDigits) {
     assert minDigits >= 0;
     assert maxDigits >= minDigits;
-    minimumFractionDigits = minDigits;
-    maximumFractionDigits = maxDigits;
-    return this;
+    if (minDigits == minimumFractionDigits && maxDigits == maximumFractionDigits) {
+      return this;
+    }
+    return new NumberFormat(numberPattern, minDigits, maxDigits, roundingMode, 0, 0);
+  }
+
+  /**
+   * Returns a format which differs from this one only in how fractional digits beyond the maximum
+   * are rounded. Formats round {@link RoundingMode#HALF_UP} unless overridden. This instance is not
+   * changed.
+   *
+   * <p>With {@link RoundingMode#UNNECESSARY}, formatting a value which needs rounding throws an
+   * {@link ArithmeticException}.
+   *
+   * @param roundingMode the rounding mode for formatted values
+   * @return a format with the given rounding mode
+   */
+  public NumberFormat overrideRoundingMode(RoundingMode roundingMode) {
+    if (roundingMode == null) {
+      throw new IllegalArgumentException("Missing rounding mode");
+    }
+    if (roundingMode == this.roundingMode) {
+      return this;
+    }
+    return new NumberFormat(
+        numberPattern, minimumFractionDigits, maximumFractionDigits, roundingMode, 0, 0);
+  }
+
+  /**
+   * Returns a format which differs from this one only in caching the formatted strings of the
+   * integers in a range, for values formatted over and over such as small counts. Each string is
+   * cached when first formatted by {@link #format(double)} or {@link #format(Number)}, and
+   * returned by later calls without formatting the value again. This instance is not changed, and
+   * formats derived from the returned one do not cache.
+   *
+   * @param from the first integer to cache
+   * @param to the last integer to cache; at most {@link #MAXIMUM_CACHED_INTEGERS} integers can be
+   *     cached
+   * @return a format caching the given integers
+   */
+  public NumberFormat cacheIntegers(int from, int to) {
+    if (from > to || (long) to - from >= MAXIMUM_CACHED_INTEGERS) {
+      throw new IllegalArgumentException("Invalid range of integers to cache: " + from + ".." + to);
+    }
+    return new NumberFormat(
+        numberPattern,
+        minimumFractionDigits,
+        maximumFractionDigits,
+        roundingMode,
+        from,
+        to - from + 1);
   }
 
   /**
@@ -958,10 +1538,25 @@ public class NumberFormat {
    * @throws NumberFormatException if the entire text could not be converted into a double
    */
   public double parse(String text) throws NumberFormatException {
-    int[] pos = {0};
-    double result = parse(text, pos);
-    if (pos[0] == 0 || pos[0] != text.length()) {
-      throw new NumberFormatException(text);
+    return parse(text, 0, text.length());
+  }
+
+  /**
+   * Parses a region of text to produce a numeric value, without copying it. A {@link
+   * NumberFormatException} is thrown if either the region is empty or if the parse does not consume
+   * all characters of the region.
+   *
+   * @param text the text containing the number
+   * @param start the index of the first character of the number
+   * @param end the index after the last character of the number
+   * @return a double value representing the parsed number
+   * @throws NumberFormatException if the region could not be converted into a double
+   */
+  public double parse(CharSequence text, int start, int end) throws NumberFormatException {
+    int[] pos = {start};
+    double result = parseRegion(text, pos, end);
+    if (pos[0] == start || pos[0] != end) {
+      throw new NumberFormatException(text.subSequence(start, end).toString());
     }
     return result;
   }
@@ -982,70 +1577,74 @@ public class NumberFormat {
    * @throws NumberFormatException if the text segment could not be converted into a double
    */
   public double parse(String text, int[] inOutPos) throws NumberFormatException {
-    double ret = 0.0;
+    int[] pos = {inOutPos[0]};
+    double result = parseRegion(text, pos, text.length());
+    inOutPos[0] = pos[0];
+    return result;
+  }
 
-    boolean gotPositivePrefix = text.startsWith(positivePrefix, inOutPos[0]);
-    boolean gotNegativePrefix = text.startsWith(negativePrefix, inOutPos[0]);
-    boolean gotPositiveSuffix = text.endsWith(positiveSuffix);
-    boolean gotNegativeSuffix = text.endsWith(negativeSuffix);
-    boolean gotPositive = gotPositivePrefix && gotPositiveSuffix;
-    boolean gotNegative = gotNegativePrefix && gotNegativeSuffix;
+  /**
+   * Parses a column of numbers held by fields of a single buffer, such as the cells of a line of a
+   * CSV file, without copying them. Each field is parsed like {@link #parse(CharSequence, int,
+   * int)}, but a field which cannot be parsed is marked as failed instead of throwing an exception.
+   *
+   * @param buffer the text containing the fields
+   * @param fieldStarts the index of the first character of each field
+   * @param fieldEnds the index after the last character of each field
+   * @param out receives the parsed value of each field, or {@link Double#NaN} if it failed
+   * @return the indices of the fields which could not be parsed
+   */
+  public BitSet parseColumn(CharSequence buffer, int[] fieldStarts, int[] fieldEnds, double[] out) {
+    BitSet failures = new BitSet();
+    parseColumn(buffer, fieldStarts, fieldEnds, 0, fieldStarts.length, out, failures);
+    return failures;
+  }
 
-    // Handle conflicts where we get both patterns, which usually
-    // happens when one is a prefix of the other (such as the positive
-    // pattern having empty prefix/suffixes).
-    if (gotPositive && gotNegative) {
-      if (positivePrefix.length() > negativePrefix.length()) {
-        gotNegative = false;
-      } else if (positivePrefix.length() < negativePrefix.length()) {
-        gotPositive = false;
-      } else if (positiveSuffix.length() > negativeSuffix.length()) {
-        gotNegative = false;
-      } else if (positiveSuffix.length() < negativeSuffix.length()) {
-        gotPositive = false;
+  /**
+   * Parses the fields {@code from} to {@code to} of a column, see {@link
+   * #parseColumn(CharSequence, int[], int[], double[])}. Disjoint ranges of a large column may be
+   * parsed by separate threads, each marking its failures in a {@link BitSet} of its own.
+   *
+   * @param buffer the text containing the fields
+   * @param fieldStarts the index of the first character of each field
+   * @param fieldEnds the index after the last character of each field
+   * @param from the index of the first field to parse
+   * @param to the index after the last field to parse
+   * @param out receives the parsed value of each field, or {@link Double#NaN} if it failed
+   * @param failures receives the indices of the fields which could not be parsed
+   * @return the number of fields which could not be parsed
+   */
+  public int parseColumn(
+      CharSequence buffer,
+      int[] fieldStarts,
+      int[] fieldEnds,
+      int from,
+      int to,
+      double[] out,
+      BitSet failures) {
+    int failed = 0;
+    int[] pos = new int[1];
+    for (int i = from; i < to; ++i) {
+      int start = fieldStarts[i];
+      int end = fieldEnds[i];
+      double value = Double.NaN;
+      if (start < end) {
+        pos[0] = start;
+        try {
+          value = parseRegion(buffer, pos, end);
+        } catch (NumberFormatException e) {
+          pos[0] = start;
+        }
+      }
+      if (start < end && pos[0] == end) {
+        out[i] = value;
       } else {
-        // can't tell patterns apart, must be positive
-        gotNegative = false;
+        out[i] = Double.NaN;
+        failures.set(i);
+        ++failed;
       }
-    } else if (!gotPositive && !gotNegative) {
-      throw new NumberFormatException(text + " does not have either positive or negative affixes");
-    }
-
-    // Contains just the value to parse, stripping any prefix or suffix
-    String valueOnly = null;
-    if (gotPositive) {
-      inOutPos[0] += positivePrefix.length();
-      valueOnly = text.substring(inOutPos[0], text.length() - positiveSuffix.length());
-    } else {
-      inOutPos[0] += negativePrefix.length();
-      valueOnly = text.substring(inOutPos[0], text.length() - negativeSuffix.length());
-    }
-
-    // Process digits or special values, and find decimal position.
-    if (valueOnly.equals(numberConstants.infinity())) {
-      inOutPos[0] += numberConstants.infinity().length();
-      ret = Double.POSITIVE_INFINITY;
-    } else if (valueOnly.equals(numberConstants.notANumber())) {
-      inOutPos[0] += numberConstants.notANumber().length();
-      ret = Double.NaN;
-    } else {
-      int[] tempPos = {0};
-      ret = parseNumber(valueOnly, tempPos) / multiplier;
-      inOutPos[0] += tempPos[0];
-    }
-
-    // Check for suffix.
-    if (gotPositive) {
-      inOutPos[0] += positiveSuffix.length();
-    } else if (gotNegative) {
-      inOutPos[0] += negativeSuffix.length();
-    }
-
-    if (gotNegative) {
-      ret = -ret;
     }
-
-    return ret;
+    return failed;
   }
 
   /**
@@ -1071,81 +1670,131 @@ public class NumberFormat {
    *     string -- negative means the value contains fractional digits
    */
   protected void format(boolean isNegative, StringBuilder digits, int scale) {
-    char decimalSeparator;
-    char groupingSeparator;
-    if (isCurrencyFormat) {
-      decimalSeparator = numberConstants.monetarySeparator().charAt(0);
-      groupingSeparator = numberConstants.monetaryGroupingSeparator().charAt(0);
-    } else {
-      decimalSeparator = numberConstants.decimalSeparator().charAt(0);
-      groupingSeparator = numberConstants.groupingSeparator().charAt(0);
-    }
-
-    // Set these transient fields, which will be adjusted/used by the routines
-    // called in this method.
-    exponent = 0;
-    digitsLength = digits.length();
-    decimalPosition = digitsLength + scale;
+    char[] formatted = format(isNegative, createContext(null, digits, 0, scale));
+    digits.setLength(0);
+    digits.append(formatted);
+  }
 
-    boolean useExponent = this.useExponentialNotation;
-    int currentGroupingSize = this.groupingSize;
-    if (decimalPosition > 1024) {
-      // force really large numbers to be in exponential form
-      useExponent = true;
+  /**
+   * Parses text to produce an exact decimal value. A {@link NumberFormatException} is thrown if
+   * either the text is empty or if the parse does not consume all characters of the text.
+   *
+   * <p>The unscaled value is built from the digits directly, without going through a {@code
+   * double}, and keeps all fractional digits: {@code "1,234.50"} is parsed as {@code 1234.50}.
+   *
+   * @param text the text being parsed
+   * @return the parsed number
+   * @throws NumberFormatException if the entire text could not be converted into a BigDecimal
+   */
+  public BigDecimal parseBigDecimal(CharSequence text) throws NumberFormatException {
+    int[] pos = {0};
+    BigDecimal result = parseBigDecimal(text, pos);
+    if (pos[0] == 0 || pos[0] != text.length()) {
+      throw new NumberFormatException(text.toString());
     }
+    return result;
+  }
 
-    if (useExponent) {
-      computeExponent(digits);
-    }
-    processLeadingZeros(digits);
-    roundValue(digits);
-    insertGroupingSeparators(digits, groupingSeparator, currentGroupingSize);
-    adjustFractionDigits(digits);
-    addZeroAndDecimal(digits, decimalSeparator);
-    if (useExponent) {
-      addExponent(digits);
-      // the above call has invalidated digitsLength == digits.length()
-    }
-    char zeroChar = numberConstants.zeroDigit().charAt(0);
-    if (zeroChar != '0') {
-      localizeDigits(digits, zeroChar);
+  /**
+   * Parses text to produce an exact decimal value, starting at the index given by {@code
+   * inOutPos}, see {@link #parse(String, int[])}. If an error occurs, then the index of {@code
+   * inOutPos} is not changed.
+   *
+   * @param text the text to be parsed
+   * @param inOutPos position to pass in and get back
+   * @return the parsed number
+   * @throws NumberFormatException if the text segment could not be converted into a BigDecimal
+   */
+  public BigDecimal parseBigDecimal(CharSequence text, int[] inOutPos)
+      throws NumberFormatException {
+    int[] pos = {inOutPos[0]};
+    ExactContext context = parseExact(text, pos, text.length());
+    BigDecimal result;
+    if (context.bigUnscaled == null) {
+      result = BigDecimal.valueOf(context.unscaled, context.scale);
+      if (!context.isNegative) {
+        result = result.negate();
+      }
+    } else {
+      BigInteger unscaled = context.bigUnscaled;
+      if (context.isNegative) {
+        unscaled = unscaled.negate();
+      }
+      result = new BigDecimal(unscaled, context.scale);
     }
-
-    // add prefix/suffix
-    digits.insert(0, isNegative ? negativePrefix : positivePrefix);
-    digits.append(isNegative ? negativeSuffix : positiveSuffix);
+    inOutPos[0] = pos[0];
+    return result;
   }
 
   /**
-   * Parses text to produce a numeric value. A {@link NumberFormatException} is thrown if either the
-   * text is empty or if the parse does not consume all characters of the text.
+   * Parses text to produce an exact integral value. A {@link NumberFormatException} is thrown if
+   * either the text is empty, if the parse does not consume all characters of the text, or if the
+   * value is not an integer in the range of a long.
    *
-   * <p>param text the string to be parsed return a parsed number value, which may be a Double,
-   * BigInteger, or BigDecimal throws NumberFormatException if the text segment could not be
-   * converted into a number
+   * @param text the text being parsed
+   * @return the parsed number
+   * @throws NumberFormatException if the entire text could not be converted into a long
    */
-  //  public Number parseBig(String text) throws NumberFormatException {
-  //    // TODO(jat): implement
-  //    return Double.valueOf(parse(text));
-  //  }
+  public long parseLong(CharSequence text) throws NumberFormatException {
+    int[] pos = {0};
+    long result = parseLong(text, pos);
+    if (pos[0] == 0 || pos[0] != text.length()) {
+      throw new NumberFormatException(text.toString());
+    }
+    return result;
+  }
 
   /**
-   * Parses text to produce a numeric value.
+   * Parses text to produce an exact integral value, starting at the index given by {@code
+   * inOutPos}, see {@link #parse(String, int[])}. Fractional digits are allowed as long as they are
+   * zero. If an error occurs, then the index of {@code inOutPos} is not changed.
    *
-   * <p>The method attempts to parse text starting at the index given by pos. If parsing succeeds,
-   * then the index of <code>pos</code> is updated to the index after the last character used
-   * (parsing does not necessarily use all characters up to the end of the string), and the parsed
-   * number is returned. The updated <code>pos</code> can be used to indicate the starting point for
-   * the next call to this method. If an error occurs, then the index of <code>pos</code> is not
-   * changed. param text the string to be parsed pparam inOutPos position to pass in and get back
-   * return a parsed number value, which may be a Double, BigInteger, or BigDecimal throws
-   * NumberFormatException if the text segment could not be converted into a number
+   * @param text the text to be parsed
+   * @param inOutPos position to pass in and get back
+   * @return the parsed number
+   * @throws NumberFormatException if the text segment could not be converted into a long
    */
-  //  public Number parseBig(String text, int[] inOutPos)
-  //      throws NumberFormatException {
-  //    // TODO(jat): implement
-  //    return Double.valueOf(parse(text, inOutPos));
-  //  }
+  public long parseLong(CharSequence text, int[] inOutPos) throws NumberFormatException {
+    int[] pos = {inOutPos[0]};
+    ExactContext context = parseExact(text, pos, text.length());
+    if (context.bigUnscaled != null) {
+      try {
+        BigInteger unscaled = context.bigUnscaled;
+        if (context.isNegative) {
+          unscaled = unscaled.negate();
+        }
+        long result = new BigDecimal(unscaled, context.scale).longValueExact();
+        inOutPos[0] = pos[0];
+        return result;
+      } catch (ArithmeticException e) {
+        throw new NumberFormatException(text.toString());
+      }
+    }
+
+    // work with the negative magnitude, which also holds Long.MIN_VALUE
+    long magnitude = context.unscaled;
+    int scale = context.scale;
+    for (; scale > 0 && magnitude != 0; --scale) {
+      if (magnitude % 10 != 0) {
+        throw new NumberFormatException(text + " is not an integer");
+      }
+      magnitude /= 10;
+    }
+    for (; scale < 0 && magnitude != 0; ++scale) {
+      if (magnitude < Long.MIN_VALUE / 10) {
+        throw new NumberFormatException(text + " is out of range");
+      }
+      magnitude *= 10;
+    }
+    if (!context.isNegative) {
+      if (magnitude == Long.MIN_VALUE) {
+        throw new NumberFormatException(text + " is out of range");
+      }
+      magnitude = -magnitude;
+    }
+    inOutPos[0] = pos[0];
+    return magnitude;
+  }
 
   /**
    * Format a possibly scaled long value.
@@ -1156,15 +1805,7 @@ public class NumberFormat {
    * @return formatted value
    */
   protected String format(long value, int scale) {
-    boolean isNegative = value < 0;
-    if (isNegative) {
-      value = -value;
-    }
-    value *= multiplier;
-    StringBuilder buf = new StringBuilder();
-    buf.append(String.valueOf(value));
-    format(isNegative, buf, scale);
-    return buf.toString();
+    return formatScaledTo(value, -scale, new StringBuilder()).toString();
   }
 
   /**
@@ -1205,295 +1846,706 @@ public class NumberFormat {
   }
 
   /**
-   * Add exponent suffix.
-   *
-   * @param digits
+   * Returns true if this format rounds values to the same digits as another, so that they differ
+   * only in the affixes and symbols the digits are formatted with.
    */
-  private void addExponent(StringBuilder digits) {
-    digits.append(numberConstants.exponentialSymbol());
-    if (exponent < 0) {
-      exponent = -exponent;
-      digits.append(numberConstants.minusSign());
-    }
-    String exponentDigits = String.valueOf(exponent);
-    for (int i = exponentDigits.length(); i < minExponentDigits; ++i) {
-      digits.append('0');
-    }
-    digits.append(exponentDigits);
+  private boolean roundsLike(NumberFormat other) {
+    return multiplier == other.multiplier
+        && useExponentialNotation == other.useExponentialNotation
+        && minimumIntegerDigits == other.minimumIntegerDigits
+        && maximumIntegerDigits == other.maximumIntegerDigits
+        && minimumFractionDigits == other.minimumFractionDigits
+        && maximumFractionDigits == other.maximumFractionDigits
+        && roundingMode == other.roundingMode;
   }
 
   /**
-   * @param digits
-   * @param decimalSeparator
+   * Returns the formatted string of a cached integer, formatting it on first use.
+   *
+   * @param value an integer in the range of {@link #cacheIntegers(int, int)}
+   * @return the formatted integer
    */
-  private void addZeroAndDecimal(StringBuilder digits, char decimalSeparator) {
-    // add zero and decimal point if required
-    if (digitsLength == 0) {
-      digits.insert(0, '0');
-      ++decimalPosition;
-      ++digitsLength;
-    }
-    if (decimalPosition < digitsLength || decimalSeparatorAlwaysShown) {
-      digits.insert(decimalPosition, decimalSeparator);
-      ++digitsLength;
+  private String cachedInteger(int value) {
+    int index = value - cachedIntegersFrom;
+    String formatted = cachedIntegers[index];
+    if (formatted == null) {
+      formatted = formatTo((long) value, new StringBuilder()).toString();
+      cachedIntegers[index] = formatted;
     }
+    return formatted;
   }
 
   /**
    * Adjust the fraction digits, adding trailing zeroes if necessary or removing excess trailing
    * zeroes.
    *
-   * @param digits
+   * @param context
    */
-  private void adjustFractionDigits(StringBuilder digits) {
-    // adjust fraction digits as required
-    int requiredDigits = decimalPosition + minimumFractionDigits;
-    if (digitsLength < requiredDigits) {
+  private void adjustFractionDigits(FormatContext context) {
+    char[] digits = context.digits;
+    int start = context.start;
+    int requiredDigits = context.decimalPosition + minimumFractionDigits;
+    if (context.digitsLength < requiredDigits) {
       // add trailing zeros
-      while (digitsLength < requiredDigits) {
-        digits.append('0');
-        ++digitsLength;
+      while (context.digitsLength < requiredDigits) {
+        digits[start + context.digitsLength++] = '0';
       }
     } else {
       // remove excess trailing zeros
-      int toRemove = decimalPosition + maximumFractionDigits;
-      if (toRemove > digitsLength) {
-        toRemove = digitsLength;
+      int toRemove = context.decimalPosition + maximumFractionDigits;
+      if (toRemove > context.digitsLength) {
+        toRemove = context.digitsLength;
       }
-      while (toRemove > requiredDigits && digits.charAt(toRemove - 1) == '0') {
+      while (toRemove > requiredDigits && digits[start + toRemove - 1] == '0') {
         --toRemove;
       }
-      if (toRemove < digitsLength) {
-        digits.delete(toRemove, digitsLength);
-        digitsLength = toRemove;
-      }
+      context.digitsLength = toRemove;
     }
   }
 
   /**
    * Compute the exponent to use and adjust decimal position if we are using exponential notation.
    *
-   * @param digits
+   * @param context
    */
-  private void computeExponent(StringBuilder digits) {
+  private void computeExponent(FormatContext context) {
     // always trim leading zeros
     int strip = 0;
-    while (strip < digitsLength - 1 && digits.charAt(strip) == '0') {
+    while (strip < context.digitsLength - 1
+        && context.digits[context.start + strip] == '0') {
       ++strip;
     }
-    if (strip > 0) {
-      digits.delete(0, strip);
-      digitsLength -= strip;
-      exponent -= strip;
-    }
+    context.start += strip;
+    context.digitsLength -= strip;
+    context.exponent -= strip;
 
     // decimal should wind up between minimum & maximumIntegerDigits
     if (maximumIntegerDigits > minimumIntegerDigits && maximumIntegerDigits > 0) {
       // in this case, the exponent should be a multiple of
       // maximumIntegerDigits and 1 <= decimal <= maximumIntegerDigits
-      exponent += decimalPosition - 1;
-      int remainder = exponent % maximumIntegerDigits;
+      context.exponent += context.decimalPosition - 1;
+      int remainder = context.exponent % maximumIntegerDigits;
       if (remainder < 0) {
         remainder += maximumIntegerDigits;
       }
-      decimalPosition = remainder + 1;
-      exponent -= remainder;
+      context.decimalPosition = remainder + 1;
+      context.exponent -= remainder;
     } else {
-      exponent += decimalPosition - minimumIntegerDigits;
-      decimalPosition = minimumIntegerDigits;
+      context.exponent += context.decimalPosition - minimumIntegerDigits;
+      context.decimalPosition = minimumIntegerDigits;
     }
 
     // special-case 0 to have an exponent of 0
-    if (digitsLength == 1 && digits.charAt(0) == '0') {
-      exponent = 0;
-      decimalPosition = minimumIntegerDigits;
+    if (context.digitsLength == 1 && context.digits[context.start] == '0') {
+      context.exponent = 0;
+      context.decimalPosition = minimumIntegerDigits;
+    }
+  }
+
+  /**
+   * Creates the context for formatting the given digits. Its buffer has room for all zeros and
+   * carries that may be added on either side, so the digits never have to be moved.
+   *
+   * @param context a context to reuse, or null to create a new one
+   * @param digits holds the significant digits of the value from index {@code from} to its end
+   * @param from the index of the first digit
+   * @param scale the number of places to the right the decimal point should be moved
+   * @return the context, holding a copy of the digits
+   */
+  private FormatContext createContext(
+      FormatContext context, CharSequence digits, int from, int scale) {
+    int length = digits.length() - from;
+    context = createContext(context, length, scale);
+    for (int i = 0; i < length; ++i) {
+      context.digits[context.start + i] = digits.charAt(from + i);
     }
+    return context;
   }
 
   /**
-   * This method return the digit that represented by current character, it could be either '0' to
-   * '9', or a locale specific digit.
+   * Creates the context for formatting digits which the caller fills in.
    *
-   * @param ch character that represents a digit
-   * @return the digit value
+   * @param context a context to reuse, or null to create a new one
+   * @param length the number of significant digits
+   * @param scale the number of places to the right the decimal point should be moved
+   * @return the context, whose digits are still to be written
    */
-  private int getDigit(char ch) {
-    if ('0' <= ch && ch <= '0' + 9) {
-      return (ch - '0');
+  private FormatContext createContext(FormatContext context, int length, int scale) {
+    int decimalPosition = length + scale;
+    int end;
+    int leadingZeros;
+    if (useExponentialNotation || decimalPosition > 1024) {
+      // the decimal position is reset by computeExponent
+      end = Math.max(length, Math.max(maximumIntegerDigits, minimumIntegerDigits) + 1);
+      leadingZeros = minimumIntegerDigits;
     } else {
-      char zeroChar = numberConstants.zeroDigit().charAt(0);
-      return ((zeroChar <= ch && ch <= zeroChar + 9) ? (ch - zeroChar) : -1);
+      end = Math.max(length, decimalPosition + 1);
+      leadingZeros = Math.max(minimumIntegerDigits - decimalPosition, 0);
     }
+    // plus one carry each for pre-rounding, rounding and a missing zero
+    int start = leadingZeros + 3;
+    if (context == null) {
+      context = new FormatContext();
+    }
+    context.reset(start + end + minimumFractionDigits, start, length, scale);
+    return context;
+  }
+
+  /**
+   * Creates the context for formatting a decimal given as an unscaled long and a scale. The
+   * multiplier is applied by moving the decimal point, and fractional digits beyond the maximum
+   * are rounded in long arithmetic.
+   *
+   * @param context a context to reuse, or null to create a new one
+   * @param isNegative true if the value to be formatted is negative
+   * @param magnitude the negated magnitude of the unscaled value
+   * @param scale the number of fractional digits in {@code magnitude}
+   * @return the context, holding the digits of the magnitude
+   */
+  private FormatContext createContext(
+      FormatContext context, boolean isNegative, long magnitude, int scale) {
+    // the multiplier is 1, 100 or 1000, apply it by moving the decimal point instead
+    for (int m = multiplier; m > 1; m /= 10) {
+      --scale;
+    }
+    if (!useExponentialNotation && scale > maximumFractionDigits) {
+      magnitude = round(isNegative, magnitude, scale - maximumFractionDigits);
+      scale = maximumFractionDigits;
+    }
+
+    int length = 1;
+    for (long rest = magnitude / 10; rest != 0; rest /= 10) {
+      ++length;
+    }
+    context = createContext(context, length, -scale);
+    for (int i = context.start + length - 1; i >= context.start; --i) {
+      context.digits[i] = (char) ('0' - magnitude % 10);
+      magnitude /= 10;
+    }
+    return context;
   }
 
   /**
-   * Insert grouping separators if needed.
+   * Formats the significant digits of a value and appends the result to a buffer.
    *
-   * @param digits
-   * @param groupingSeparator
-   * @param g
+   * @see #format(boolean, StringBuilder, int)
    */
-  private void insertGroupingSeparators(StringBuilder digits, char groupingSeparator, int g) {
-    if (g > 0) {
-      for (int i = g; i < decimalPosition; i += g + 1) {
-        digits.insert(decimalPosition - i, groupingSeparator);
-        ++decimalPosition;
-        ++digitsLength;
+  private StringBuilder formatTo(boolean isNegative, String digits, int scale, StringBuilder out) {
+    return out.append(format(isNegative, createContext(null, digits, 0, scale)));
+  }
+
+  /**
+   * Formats the digits held by a context, see {@link #format(boolean, StringBuilder, int)}.
+   *
+   * @param isNegative true if the value to be formatted is negative
+   * @param context the digits to format, which are changed in place
+   * @return the formatted number
+   */
+  private char[] format(boolean isNegative, FormatContext context) {
+    char[] out = new char[layout(isNegative, context)];
+    write(context, out, out.length);
+    return out;
+  }
+
+  /**
+   * Appends the digits of a double, see {@link #toScaledString(StringBuilder, double)}. Rounding
+   * modes other than half up need the shortest digits, as they round those exactly.
+   *
+   * @param buf
+   * @param val
+   * @return scale to apply to the result
+   */
+  private int toDigits(StringBuilder buf, double val) {
+    return roundingMode == RoundingMode.HALF_UP
+        ? toScaledString(buf, val)
+        : toShortestScaledString(buf, val);
+  }
+
+  /**
+   * Converts a double to digits held by a context and computes the layout of the formatted number,
+   * like {@link #formatTo(double, StringBuilder)} but reusing the scratch space of the context.
+   *
+   * @param number the double to format
+   * @param context the context to reuse
+   * @return the length of the formatted number
+   */
+  private int layout(double number, FormatContext context) {
+    String special = null;
+    boolean isNegative = ((number < 0.0) || (number == 0.0 && 1 / number < 0.0));
+    if (isNegative) {
+      number = -number;
+    }
+    if (Double.isNaN(number)) {
+      special = numberConstants.notANumber();
+    } else if (Double.isInfinite(number)) {
+      special =
+          isNegative
+              ? negativePrefix + numberConstants.infinity() + negativeSuffix
+              : positivePrefix + numberConstants.infinity() + positiveSuffix;
+    }
+    if (special != null) {
+      context.special = special;
+      context.length = special.length();
+      return context.length;
+    }
+
+    // the multiplier is applied to the scale, as multiplying the double would round it
+    if (RUNNING_ON_JVM) {
+      if (context.scratchDigits == null) {
+        context.scratchDigits = new char[DoubleToDecimal.MAX_DIGITS];
+        context.scratchScale = new int[1];
+      }
+      int length = DoubleToDecimal.toDigits(number, context.scratchDigits, context.scratchScale);
+      createContext(context, length, context.scratchScale[0] + multiplierExponent);
+      System.arraycopy(context.scratchDigits, 0, context.digits, context.start, length);
+    } else {
+      if (context.scratch == null) {
+        context.scratch = new StringBuilder();
       }
+      context.scratch.setLength(0);
+      int scale = toDigits(context.scratch, number) + multiplierExponent;
+      createContext(context, context.scratch, 0, scale);
+    }
+    preRound(context);
+    return layout(isNegative, context);
+  }
+
+  /**
+   * Rounds the digits held by a context and computes the layout of the formatted number, which is
+   * stored in the context for {@link #write(FormatContext, char[], int)}.
+   *
+   * @param isNegative true if the value to be formatted is negative
+   * @param context the digits to format, which are changed in place
+   * @return the length of the formatted number
+   */
+  private int layout(boolean isNegative, FormatContext context) {
+    boolean useExponent = this.useExponentialNotation;
+    if (context.decimalPosition > 1024) {
+      // force really large numbers to be in exponential form
+      useExponent = true;
+    }
+
+    if (useExponent) {
+      computeExponent(context);
+    }
+    processLeadingZeros(context);
+    roundValue(isNegative, context);
+    adjustFractionDigits(context);
+    if (context.digitsLength == 0) {
+      // add zero if required
+      context.digits[--context.start] = '0';
+      ++context.decimalPosition;
+      ++context.digitsLength;
     }
+    context.useExponent = useExponent;
+    return measure(isNegative, context);
   }
 
   /**
-   * Replace locale-independent digits with locale-specific ones.
+   * Computes the layout of rounded digits formatted with the affixes and symbols of this format,
+   * which is stored in the context for {@link #write(FormatContext, char[], int)}.
    *
-   * @param digits StringBuilder containing formatted number
-   * @param zero locale-specific zero character -- the rest of the digits must be consecutive
+   * @param isNegative true if the value to be formatted is negative
+   * @param context the rounded digits, see {@link #layout(boolean, FormatContext)}
+   * @return the length of the formatted number
    */
-  private void localizeDigits(StringBuilder digits, char zero) {
-    // don't use digitsLength since we may have added an exponent
-    int n = digits.length();
-    for (int i = 0; i < n; ++i) {
-      char ch = digits.charAt(i);
-      if (ch >= '0' && ch <= '9') {
-        digits.setCharAt(i, (char) (ch - '0' + zero));
+  private int measure(boolean isNegative, FormatContext context) {
+    boolean useExponent = context.useExponent;
+    String prefix = isNegative ? negativePrefix : positivePrefix;
+    String suffix = isNegative ? negativeSuffix : positiveSuffix;
+    int integerDigits = context.decimalPosition;
+    int groupingSeparators =
+        groupingSize > 0 && integerDigits > 0 ? (integerDigits - 1) / groupingSize : 0;
+    boolean showDecimal =
+        context.decimalPosition < context.digitsLength || decimalSeparatorAlwaysShown;
+
+    // exponent symbol, sign, zero padding and digits
+    int exponentDigits = 0;
+    int exponentLength = 0;
+    if (useExponent) {
+      int exponent = context.exponent;
+      exponentDigits = 1;
+      for (int rest = exponent / 10; rest != 0; rest /= 10) {
+        ++exponentDigits;
       }
+      exponentLength =
+          numberConstants.exponentialSymbol().length()
+              + (exponent < 0 ? numberConstants.minusSign().length() : 0)
+              + Math.max(exponentDigits, minExponentDigits);
     }
+
+    context.isNegative = isNegative;
+    context.showDecimal = showDecimal;
+    context.exponentDigits = exponentDigits;
+    context.groupingSeparators = groupingSeparators;
+    context.length =
+        prefix.length()
+            + context.digitsLength
+            + groupingSeparators
+            + (showDecimal ? 1 : 0)
+            + exponentLength
+            + suffix.length();
+    return context.length;
   }
 
   /**
-   * This method parses affix part of pattern.
+   * Remove excess leading zeros or add some if we don't have enough.
    *
-   * @param pattern pattern string that need to be parsed
-   * @param start start position to parse
-   * @param affix store the parsed result
-   * @param inNegativePattern true if we are parsing the negative pattern and therefore only care
-   *     about the prefix and suffix
-   * @return how many characters parsed
+   * @param context
    */
-  private int parseAffix(
-      String pattern, int start, StringBuilder affix, boolean inNegativePattern) {
-    affix.delete(0, affix.length());
-    boolean inQuote = false;
-    int len = pattern.length();
+  private void processLeadingZeros(FormatContext context) {
+    char[] digits = context.digits;
+    // make sure we have enough trailing zeros
+    while (context.digitsLength < context.decimalPosition) {
+      digits[context.start + context.digitsLength++] = '0';
+    }
 
-    for (int pos = start; pos < len; ++pos) {
-      char ch = pattern.charAt(pos);
-      if (ch == QUOTE) {
-        if ((pos + 1) < len && pattern.charAt(pos + 1) == QUOTE) {
-          ++pos;
-          affix.append("'"); // 'don''t'
-        } else {
-          inQuote = !inQuote;
+    if (!useExponentialNotation) {
+      // make sure we have the right number of leading zeros
+      if (context.decimalPosition < minimumIntegerDigits) {
+        // add leading zeros
+        while (context.decimalPosition < minimumIntegerDigits) {
+          digits[--context.start] = '0';
+          ++context.decimalPosition;
+          ++context.digitsLength;
         }
-        continue;
+      } else if (context.decimalPosition > minimumIntegerDigits) {
+        // trim excess leading zeros
+        int strip = context.decimalPosition - minimumIntegerDigits;
+        for (int i = 0; i < strip; ++i) {
+          if (digits[context.start + i] != '0') {
+            strip = i;
+            break;
+          }
+        }
+        context.start += strip;
+        context.digitsLength -= strip;
+        context.decimalPosition -= strip;
       }
+    }
+  }
 
-      if (inQuote) {
-        affix.append(ch);
+  /**
+   * Parses the text before {@code end} as if it was a string of that length, see {@link
+   * #parse(String, int[])}.
+   */
+  private double parseRegion(CharSequence text, int[] inOutPos, int end) {
+    double ret = 0.0;
+    boolean gotNegative = matchAffixes(text, inOutPos, end);
+    String suffix = gotNegative ? negativeSuffix : positiveSuffix;
+    int valueEnd = end - suffix.length();
+
+    // Process digits or special values, and find decimal position.
+    String infinity = numberConstants.infinity();
+    String notANumber = numberConstants.notANumber();
+    if (valueEnd - inOutPos[0] == infinity.length()
+        && regionMatches(text, inOutPos[0], valueEnd, infinity)) {
+      inOutPos[0] += infinity.length();
+      ret = Double.POSITIVE_INFINITY;
+    } else if (valueEnd - inOutPos[0] == notANumber.length()
+        && regionMatches(text, inOutPos[0], valueEnd, notANumber)) {
+      inOutPos[0] += notANumber.length();
+      ret = Double.NaN;
+    } else {
+      ret = parseNumber(text, inOutPos, valueEnd) / multiplier;
+    }
+
+    // Check for suffix.
+    inOutPos[0] += suffix.length();
+
+    if (gotNegative) {
+      ret = -ret;
+    }
+
+    return ret;
+  }
+
+  /**
+   * Finds out whether the text before {@code end} has the positive or negative prefix and suffix,
+   * and skips the prefix.
+   *
+   * @param text the text that need to be parsed
+   * @param inOutPos in/out parsing position, moved after the prefix
+   * @param end the index after the suffix
+   * @return true if the text has the negative prefix and suffix
+   * @throws NumberFormatException if it has neither
+   */
+  private boolean matchAffixes(CharSequence text, int[] inOutPos, int end) {
+    boolean gotPositivePrefix = regionMatches(text, inOutPos[0], end, positivePrefix);
+    boolean gotNegativePrefix = regionMatches(text, inOutPos[0], end, negativePrefix);
+    boolean gotPositiveSuffix =
+        regionMatches(text, end - positiveSuffix.length(), end, positiveSuffix);
+    boolean gotNegativeSuffix =
+        regionMatches(text, end - negativeSuffix.length(), end, negativeSuffix);
+    boolean gotPositive = gotPositivePrefix && gotPositiveSuffix;
+    boolean gotNegative = gotNegativePrefix && gotNegativeSuffix;
+
+    // Handle conflicts where we get both patterns, which usually
+    // happens when one is a prefix of the other (such as the positive
+    // pattern having empty prefix/suffixes).
+    if (gotPositive && gotNegative) {
+      if (positivePrefix.length() > negativePrefix.length()) {
+        gotNegative = false;
+      } else if (positivePrefix.length() < negativePrefix.length()) {
+        gotPositive = false;
+      } else if (positiveSuffix.length() > negativeSuffix.length()) {
+        gotNegative = false;
+      } else if (positiveSuffix.length() < negativeSuffix.length()) {
+        gotPositive = false;
       } else {
-        switch (ch) {
-          case PATTERN_DIGIT:
-          case PATTERN_ZERO_DIGIT:
-          case PATTERN_GROUPING_SEPARATOR:
-          case PATTERN_DECIMAL_SEPARATOR:
-          case PATTERN_SEPARATOR:
-            return pos - start;
-          case CURRENCY_SIGN:
-            isCurrencyFormat = true;
-            if ((pos + 1) < len && pattern.charAt(pos + 1) == CURRENCY_SIGN) {
-              ++pos;
-              if (pos < len - 2
-                  && pattern.charAt(pos + 1) == CURRENCY_SIGN
-                  && pattern.charAt(pos + 2) == CURRENCY_SIGN) {
-                pos += 2;
-                affix.append(currencyData.getSimpleCurrencySymbol());
-              } else {
-                affix.append(currencyData.getCurrencyCode());
-              }
-            } else {
-              affix.append(currencyData.getCurrencySymbol());
-            }
-            break;
-          case PATTERN_PERCENT:
-            if (!inNegativePattern) {
-              if (multiplier != 1) {
-                throw new IllegalArgumentException(
-                    "Too many percent/per mille characters in pattern \"" + pattern + '"');
-              }
-              multiplier = 100;
-            }
-            affix.append(numberConstants.percent());
-            break;
-          case PATTERN_PER_MILLE:
-            if (!inNegativePattern) {
-              if (multiplier != 1) {
-                throw new IllegalArgumentException(
-                    "Too many percent/per mille characters in pattern \"" + pattern + '"');
-              }
-              multiplier = 1000;
-            }
-            affix.append(numberConstants.perMill());
-            break;
-          case PATTERN_MINUS:
-            affix.append("-");
-            break;
-          default:
-            affix.append(ch);
+        // can't tell patterns apart, must be positive
+        gotNegative = false;
+      }
+    } else if (!gotPositive && !gotNegative) {
+      throw new NumberFormatException(
+          text.subSequence(0, end) + " does not have either positive or negative affixes");
+    }
+
+    // Skip the prefix
+    int valueEnd;
+    if (gotPositive) {
+      inOutPos[0] += positivePrefix.length();
+      valueEnd = end - positiveSuffix.length();
+    } else {
+      inOutPos[0] += negativePrefix.length();
+      valueEnd = end - negativeSuffix.length();
+    }
+    if (valueEnd < inOutPos[0]) {
+      // the prefix and suffix overlap
+      throw new NumberFormatException(text.subSequence(0, end).toString());
+    }
+    return gotNegative;
+  }
+
+  /**
+   * Parses the text before {@code end} into an exact unscaled value and scale, see {@link
+   * #parseBigDecimal(CharSequence, int[])}.
+   *
+   * <p>The digits are accumulated into a negative long as long as they fit, and into a {@link
+   * BigInteger} in chunks of 18 digits after that.
+   *
+   * @param text the text that need to be parsed
+   * @param pos in/out parsing position
+   * @param end the index after the suffix
+   * @return the parsed value
+   */
+  private ExactContext parseExact(CharSequence text, int[] pos, int end) {
+    boolean gotNegative = matchAffixes(text, pos, end);
+    String suffix = gotNegative ? negativeSuffix : positiveSuffix;
+    int start = pos[0];
+    int valueEnd = end - suffix.length();
+
+    ExactContext context = new ExactContext();
+    boolean sawDecimal = false;
+    boolean sawExponent = false;
+    boolean sawDigit = false;
+    boolean sawMantissaDigit = false;
+    boolean sawExponentDigit = false;
+    boolean sawSign = false;
+    boolean negativeMantissa = false;
+    boolean negativeExponent = false;
+    long scale = 0;
+    int explicitExponent = 0;
+    long chunk = 0;
+    int chunkDigits = 0;
+    for (; pos[0] < valueEnd; ++pos[0]) {
+      char ch = text.charAt(pos[0]);
+      int charClass = charClasses.classify(ch);
+      if ((charClass & NumberCharClasses.DIGIT) != 0) {
+        int digit = charClass & NumberCharClasses.DIGIT_VALUE;
+        sawDigit = true;
+        if (sawExponent) {
+          sawExponentDigit = true;
+          if (explicitExponent < 100000) {
+            explicitExponent = explicitExponent * 10 + digit;
+          }
+          continue;
+        }
+        sawMantissaDigit = true;
+        if (sawDecimal) {
+          ++scale;
+        }
+        if (context.bigUnscaled == null) {
+          if (context.unscaled >= (Long.MIN_VALUE + digit) / 10) {
+            context.unscaled = context.unscaled * 10 - digit;
+            continue;
+          }
+          context.bigUnscaled = BigInteger.valueOf(context.unscaled).negate();
+        }
+        chunk = chunk * 10 + digit;
+        if (++chunkDigits == 18) {
+          context.bigUnscaled = appendChunk(context.bigUnscaled, chunk, chunkDigits);
+          chunk = 0;
+          chunkDigits = 0;
         }
+      } else if ((charClass & decimalClass) != 0) {
+        if (sawDecimal || sawExponent) {
+          break;
+        }
+        sawDecimal = true;
+      } else if ((charClass & groupingClass) != 0) {
+        if (sawDecimal || sawExponent) {
+          break;
+        }
+      } else if ((charClass & NumberCharClasses.EXPONENT) != 0) {
+        if (sawExponent) {
+          break;
+        }
+        sawExponent = true;
+        sawSign = false;
+      } else if ((charClass & NumberCharClasses.SIGN) != 0) {
+        if (sawSign || (sawExponent ? sawExponentDigit : sawMantissaDigit || sawDecimal)) {
+          // a sign in the middle of the number
+          throw new NumberFormatException(text.subSequence(start, valueEnd).toString());
+        }
+        sawSign = true;
+        if (sawExponent) {
+          negativeExponent = ch == '-';
+        } else {
+          negativeMantissa = ch == '-';
+        }
+      } else if ((charClass & (NumberCharClasses.PERCENT | NumberCharClasses.PER_MILLE)) != 0) {
+        if (context.percentDigits != 0) {
+          break;
+        }
+        context.percentDigits = (charClass & NumberCharClasses.PERCENT) != 0 ? 2 : 3;
+        if (sawDigit) {
+          ++pos[0];
+          break;
+        }
+      } else {
+        break;
       }
     }
-    return len - start;
+    if (!sawMantissaDigit || sawExponent != sawExponentDigit) {
+      throw new NumberFormatException(text.subSequence(start, valueEnd).toString());
+    }
+    if (context.bigUnscaled != null && chunkDigits > 0) {
+      context.bigUnscaled = appendChunk(context.bigUnscaled, chunk, chunkDigits);
+    }
+
+    // the multiplier is 1, 100 or 1000, divide by it by moving the decimal point
+    for (int m = multiplier; m > 1; m /= 10) {
+      ++scale;
+    }
+    scale += context.percentDigits;
+    scale -= negativeExponent ? -explicitExponent : explicitExponent;
+    if (scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE) {
+      throw new NumberFormatException(text.subSequence(start, valueEnd).toString());
+    }
+    context.scale = (int) scale;
+    context.isNegative = gotNegative != negativeMantissa;
+
+    // Check for suffix.
+    pos[0] += suffix.length();
+    return context;
+  }
+
+  /** Returns {@code value * 10^digits + chunk}. */
+  private static BigInteger appendChunk(BigInteger value, long chunk, int digits) {
+    return value.multiply(BigInteger.TEN.pow(digits)).add(BigInteger.valueOf(chunk));
+  }
+
+  /**
+   * Returns true if {@code part} occurs in {@code text} at {@code offset}, ending before {@code
+   * end}.
+   */
+  private static boolean regionMatches(CharSequence text, int offset, int end, String part) {
+    if (offset < 0 || offset + part.length() > end) {
+      return false;
+    }
+    for (int i = 0; i < part.length(); ++i) {
+      if (text.charAt(offset + i) != part.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
    * This function parses a "localized" text into a <code>double</code>. It needs to handle locale
    * specific decimal, grouping, exponent and digit.
    *
+   * <p>The digits are accumulated into a long mantissa and a decimal exponent, which are converted
+   * by {@link DecimalToDouble}. Only if that fails, or for unusual input like more than 19
+   * significant digits, the text is normalized and passed to {@link Double#parseDouble(String)}.
+   *
    * @param text the text that need to be parsed
    * @param pos in/out parsing position. in case of failure, this shouldn't be changed
+   * @param end the index after the last character that may be parsed
    * @return double value, could be 0.0 if nothing can be parsed
    */
-  private double parseNumber(String text, int[] pos) {
-    double ret;
+  private double parseNumber(CharSequence text, int[] pos, int end) {
+    int start = pos[0];
     boolean sawDecimal = false;
     boolean sawExponent = false;
     boolean sawDigit = false;
     int scale = 1;
-    String decimal =
-        isCurrencyFormat ? numberConstants.monetarySeparator() : numberConstants.decimalSeparator();
-    String grouping =
-        isCurrencyFormat
-            ? numberConstants.monetaryGroupingSeparator()
-            : numberConstants.groupingSeparator();
-    String exponentChar = numberConstants.exponentialSymbol();
 
-    StringBuilder normalizedText = new StringBuilder();
-    for (; pos[0] < text.length(); ++pos[0]) {
+    // the value is mantissa * 10^(exponent +/- explicitExponent)
+    long mantissa = 0;
+    int mantissaDigits = 0;
+    int exponent = 0;
+    int explicitExponent = 0;
+    boolean negativeExponent = false;
+    boolean sawMantissaDigit = false;
+    boolean sawExponentDigit = false;
+    boolean sawExponentSign = false;
+    // set when the value cannot be converted from the mantissa and exponent
+    boolean slow = false;
+
+    for (; pos[0] < end; ++pos[0]) {
       char ch = text.charAt(pos[0]);
-      int digit = getDigit(ch);
-      if (digit >= 0 && digit <= 9) {
-        normalizedText.append((char) (digit + '0'));
+      int charClass = charClasses.classify(ch);
+      if ((charClass & NumberCharClasses.DIGIT) != 0) {
+        int digit = charClass & NumberCharClasses.DIGIT_VALUE;
         sawDigit = true;
-      } else if (ch == decimal.charAt(0)) {
+        if (sawExponent) {
+          sawExponentDigit = true;
+          if (explicitExponent < 100000) {
+            explicitExponent = explicitExponent * 10 + digit;
+          }
+        } else if (mantissaDigits < DecimalToDouble.MAX_DIGITS) {
+          sawMantissaDigit = true;
+          // leading zeros are not counted
+          if (mantissa != 0 || digit != 0) {
+            mantissa = mantissa * 10 + digit;
+            ++mantissaDigits;
+          }
+          if (sawDecimal) {
+            --exponent;
+          }
+        } else {
+          // only zeros can be dropped without changing the value
+          slow |= digit != 0;
+          if (!sawDecimal) {
+            ++exponent;
+          }
+        }
+      } else if ((charClass & decimalClass) != 0) {
         if (sawDecimal || sawExponent) {
           break;
         }
-        normalizedText.append('.');
         sawDecimal = true;
-      } else if (ch == grouping.charAt(0)) {
+      } else if ((charClass & groupingClass) != 0) {
         if (sawDecimal || sawExponent) {
           break;
         }
         continue;
-      } else if (ch == exponentChar.charAt(0)) {
+      } else if ((charClass & NumberCharClasses.EXPONENT) != 0) {
         if (sawExponent) {
           break;
         }
-        normalizedText.append('E');
         sawExponent = true;
-      } else if (ch == '+' || ch == '-') {
-        normalizedText.append(ch);
-      } else if (ch == numberConstants.percent().charAt(0)) {
+      } else if ((charClass & NumberCharClasses.SIGN) != 0) {
+        if (sawExponent && !sawExponentDigit && !sawExponentSign) {
+          sawExponentSign = true;
+          negativeExponent = ch == '-';
+        } else {
+          // a sign of the mantissa, or one that makes the number invalid
+          slow = true;
+        }
+      } else if ((charClass & NumberCharClasses.PERCENT) != 0) {
         if (scale != 1) {
           break;
         }
@@ -1502,7 +2554,7 @@ public class NumberFormat {
           ++pos[0];
           break;
         }
-      } else if (ch == numberConstants.perMill().charAt(0)) {
+      } else if ((charClass & NumberCharClasses.PER_MILLE) != 0) {
         if (scale != 1) {
           break;
         }
@@ -1516,261 +2568,426 @@ public class NumberFormat {
       }
     }
 
-    // parseDouble could throw NumberFormatException, rethrow with correct text.
-    try {
-      ret = Double.parseDouble(normalizedText.toString());
-    } catch (NumberFormatException e) {
-      throw new NumberFormatException(text);
+    double ret = Double.NaN;
+    if (!slow && sawMantissaDigit && sawExponent == sawExponentDigit) {
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+      ret = DecimalToDouble.exactToDouble(mantissa, exponent);
+      if (Double.isNaN(ret) && RUNNING_ON_JVM) {
+        ret = DecimalToDouble.toDouble(mantissa, exponent);
+      }
+    }
+    if (Double.isNaN(ret)) {
+      ret = parseNormalized(text, start, pos[0], end);
     }
     ret = ret / scale;
     return ret;
   }
 
   /**
-   * Method parses provided pattern, result is stored in member variables.
+   * Parses the characters accepted by {@link #parseNumber(CharSequence, int[], int)} with {@link
+   * Double#parseDouble(String)}.
    *
-   * @param pattern
+   * @param text the text that need to be parsed
+   * @param start the index of the first accepted character
+   * @param stop the index after the last accepted character
+   * @param end the end of the value, used for the exception message
+   * @return double value
    */
-  private void parsePattern(String pattern) {
-    int pos = 0;
-    StringBuilder affix = new StringBuilder();
-
-    pos += parseAffix(pattern, pos, affix, false);
-    positivePrefix = affix.toString();
-    pos += parseTrunk(pattern, pos, false);
-    pos += parseAffix(pattern, pos, affix, false);
-    positiveSuffix = affix.toString();
+  private double parseNormalized(CharSequence text, int start, int stop, int end) {
+    StringBuilder normalizedText = new StringBuilder();
+    for (int i = start; i < stop; ++i) {
+      char ch = text.charAt(i);
+      int charClass = charClasses.classify(ch);
+      if ((charClass & NumberCharClasses.DIGIT) != 0) {
+        int digit = charClass & NumberCharClasses.DIGIT_VALUE;
+        normalizedText.append((char) (digit + '0'));
+      } else if ((charClass & decimalClass) != 0) {
+        normalizedText.append('.');
+      } else if ((charClass & NumberCharClasses.EXPONENT) != 0) {
+        normalizedText.append('E');
+      } else if ((charClass & NumberCharClasses.SIGN) != 0) {
+        normalizedText.append(ch);
+      }
+      // grouping separators and percent or per mille signs are skipped
+    }
 
-    if (pos < pattern.length() && pattern.charAt(pos) == PATTERN_SEPARATOR) {
-      ++pos;
-      pos += parseAffix(pattern, pos, affix, true);
-      negativePrefix = affix.toString();
-      // the negative pattern is only used for prefix/suffix
-      pos += parseTrunk(pattern, pos, true);
-      pos += parseAffix(pattern, pos, affix, true);
-      negativeSuffix = affix.toString();
-    } else {
-      negativePrefix = numberConstants.minusSign() + positivePrefix;
-      negativeSuffix = positiveSuffix;
+    // parseDouble could throw NumberFormatException, rethrow with correct text.
+    try {
+      return Double.parseDouble(normalizedText.toString());
+    } catch (NumberFormatException e) {
+      throw new NumberFormatException(text.subSequence(start, end).toString());
     }
   }
 
   /**
-   * This method parses the trunk part of a pattern.
+   * Rounds a negative magnitude with the rounding mode, removing the given number of its least
+   * significant digits.
    *
-   * @param pattern pattern string that need to be parsed
-   * @param start where parse started
-   * @param ignorePattern true if we are only parsing this for length and correctness, such as in
-   *     the negative portion of the pattern
-   * @return how many characters parsed
+   * @param isNegative true if the value to be formatted is negative
+   * @param magnitude the negated value to round, at most 0
+   * @param digits the number of digits to remove, at least 1
+   * @return the negated rounded value
    */
-  private int parseTrunk(String pattern, int start, boolean ignorePattern) {
-    int decimalPos = -1;
-    int digitLeftCount = 0, zeroDigitCount = 0, digitRightCount = 0;
-    byte groupingCount = -1;
-
-    int len = pattern.length();
-    int pos = start;
-    boolean loop = true;
-    for (; (pos < len) && loop; ++pos) {
-      char ch = pattern.charAt(pos);
-      switch (ch) {
-        case PATTERN_DIGIT:
-          if (zeroDigitCount > 0) {
-            ++digitRightCount;
-          } else {
-            ++digitLeftCount;
-          }
-          if (groupingCount >= 0 && decimalPos < 0) {
-            ++groupingCount;
-          }
-          break;
-        case PATTERN_ZERO_DIGIT:
-          if (digitRightCount > 0) {
-            throw new IllegalArgumentException("Unexpected '0' in pattern \"" + pattern + '"');
-          }
-          ++zeroDigitCount;
-          if (groupingCount >= 0 && decimalPos < 0) {
-            ++groupingCount;
-          }
-          break;
-        case PATTERN_GROUPING_SEPARATOR:
-          groupingCount = 0;
-          break;
-        case PATTERN_DECIMAL_SEPARATOR:
-          if (decimalPos >= 0) {
-            throw new IllegalArgumentException(
-                "Multiple decimal separators in pattern \"" + pattern + '"');
-          }
-          decimalPos = digitLeftCount + zeroDigitCount + digitRightCount;
-          break;
-        case PATTERN_EXPONENT:
-          if (!ignorePattern) {
-            if (useExponentialNotation) {
-              throw new IllegalArgumentException(
-                  "Multiple exponential " + "symbols in pattern \"" + pattern + '"');
-            }
-            useExponentialNotation = true;
-            minExponentDigits = 0;
-          }
-
-          // Use lookahead to parse out the exponential part
-          // of the pattern, then jump into phase 2.
-          while ((pos + 1) < len && pattern.charAt(pos + 1) == PATTERN_ZERO_DIGIT) {
-            ++pos;
-            if (!ignorePattern) {
-              ++minExponentDigits;
-            }
-          }
-
-          if (!ignorePattern && (digitLeftCount + zeroDigitCount) < 1 || minExponentDigits < 1) {
-            throw new IllegalArgumentException(
-                "Malformed exponential " + "pattern \"" + pattern + '"');
-          }
-          loop = false;
-          break;
-        default:
-          --pos;
-          loop = false;
-          break;
+  private long round(boolean isNegative, long magnitude, int digits) {
+    long quotient;
+    int firstRemoved;
+    boolean moreRemoved;
+    if (digits > 19) {
+      // the magnitude is less than 10^19, so all of its digits are removed
+      quotient = 0;
+      firstRemoved = 0;
+      moreRemoved = magnitude != 0;
+    } else {
+      long divisor = 1;
+      for (int i = 1; i < digits; ++i) {
+        divisor *= 10;
       }
+      // 10^19 does not fit into a long, so divide by 10^(digits - 1) first
+      long removed = magnitude / divisor;
+      quotient = removed / 10;
+      firstRemoved = (int) (quotient * 10 - removed);
+      moreRemoved = removed * divisor != magnitude;
     }
-
-    if (zeroDigitCount == 0 && digitLeftCount > 0 && decimalPos >= 0) {
-      // Handle "###.###" and "###." and ".###".
-      int n = decimalPos;
-      if (n == 0) { // Handle ".###"
-        ++n;
-      }
-      digitRightCount = digitLeftCount - n;
-      digitLeftCount = n - 1;
-      zeroDigitCount = 1;
+    if (roundsUp(isNegative, (int) -(quotient % 10), firstRemoved, moreRemoved)) {
+      --quotient;
     }
+    return quotient;
+  }
 
-    // Do syntax checking on the digits.
-    if ((decimalPos < 0 && digitRightCount > 0)
-        || (decimalPos >= 0
-            && (decimalPos < digitLeftCount || decimalPos > (digitLeftCount + zeroDigitCount)))
-        || groupingCount == 0) {
-      throw new IllegalArgumentException("Malformed pattern \"" + pattern + '"');
+  /**
+   * Decides whether the magnitude of a value is incremented when it is rounded with the rounding
+   * mode.
+   *
+   * @param isNegative true if the value to be formatted is negative
+   * @param lastKept the least significant digit kept
+   * @param firstRemoved the most significant digit removed
+   * @param moreRemoved true if any other digit removed is not zero
+   * @return true to increment the magnitude in the position of {@code lastKept}
+   * @throws ArithmeticException if the rounding mode is {@link RoundingMode#UNNECESSARY} and the
+   *     removed digits are not all zero
+   */
+  private boolean roundsUp(
+      boolean isNegative, int lastKept, int firstRemoved, boolean moreRemoved) {
+    if (firstRemoved == 0 && !moreRemoved) {
+      return false;
     }
-
-    if (ignorePattern) {
-      return pos - start;
+    switch (roundingMode) {
+      case UP:
+        return true;
+      case DOWN:
+        return false;
+      case CEILING:
+        return !isNegative;
+      case FLOOR:
+        return isNegative;
+      case HALF_UP:
+        return firstRemoved >= 5;
+      case HALF_DOWN:
+        return firstRemoved > 5 || (firstRemoved == 5 && moreRemoved);
+      case HALF_EVEN:
+        return firstRemoved > 5 || (firstRemoved == 5 && (moreRemoved || lastKept % 2 != 0));
+      default:
+        throw new ArithmeticException("Rounding necessary");
     }
+  }
 
-    int totalDigits = digitLeftCount + zeroDigitCount + digitRightCount;
-
-    maximumFractionDigits = (decimalPos >= 0 ? (totalDigits - decimalPos) : 0);
-    if (decimalPos >= 0) {
-      minimumFractionDigits = digitLeftCount + zeroDigitCount - decimalPos;
-      if (minimumFractionDigits < 0) {
-        minimumFractionDigits = 0;
+  /**
+   * Propagate a carry from incrementing the {@code i+1}'th digit. If the carry runs off the front,
+   * a 1 is added in front of the digits.
+   *
+   * @param context
+   * @param i digit to start incrementing
+   */
+  private static void propagateCarry(FormatContext context, int i) {
+    char[] digits = context.digits;
+    int start = context.start;
+    while (i >= 0) {
+      char digit = digits[start + i];
+      if (digit != '9') {
+        digits[start + i] = (char) (digit + 1);
+        return;
       }
+      // set this to zero and keep going
+      digits[start + i--] = '0';
     }
+    // ran off the front, prepend a 1
+    digits[--context.start] = '1';
+    ++context.decimalPosition;
+    ++context.digitsLength;
+  }
 
-    /*
-     * The effectiveDecimalPos is the position the decimal is at or would be at
-     * if there is no decimal. Note that if decimalPos<0, then digitTotalCount ==
-     * digitLeftCount + zeroDigitCount.
-     */
-    int effectiveDecimalPos = decimalPos >= 0 ? decimalPos : totalDigits;
-    minimumIntegerDigits = effectiveDecimalPos - digitLeftCount;
-    if (useExponentialNotation) {
-      maximumIntegerDigits = digitLeftCount + minimumIntegerDigits;
+  /**
+   * Pre-round the digits of a double to deal with .15 being represented as .149999... etc, by
+   * checking at 3 more digits than will be required in the output. Only done when rounding half
+   * up; the other rounding modes round the shortest digits of the double exactly.
+   *
+   * @param context
+   */
+  private void preRound(FormatContext context) {
+    if (roundingMode != RoundingMode.HALF_UP) {
+      return;
+    }
+    int preRound = context.decimalPosition + maximumFractionDigits + 3;
+    if (preRound > 0
+        && preRound < context.digitsLength
+        && context.digits[context.start + preRound] == '9') {
+      propagateCarry(context, preRound - 1);
+      context.digitsLength = preRound;
+    }
+  }
 
-      // In exponential display, integer part can't be empty.
-      if (maximumFractionDigits == 0 && minimumIntegerDigits == 0) {
-        minimumIntegerDigits = 1;
+  /**
+   * Round the value at the requested place with the rounding mode, propagating any carry backward
+   * into the space reserved in front of the digits.
+   *
+   * @param isNegative true if the value to be formatted is negative
+   * @param context
+   */
+  private void roundValue(boolean isNegative, FormatContext context) {
+    int roundPosition = context.decimalPosition + maximumFractionDigits;
+    if (context.digitsLength <= roundPosition) {
+      return;
+    }
+    char[] digits = context.digits;
+    int start = context.start;
+    boolean moreRemoved = false;
+    // rounding half up only depends on the first digit removed
+    if (roundingMode != RoundingMode.HALF_UP) {
+      for (int i = roundPosition + 1; i < context.digitsLength && !moreRemoved; ++i) {
+        moreRemoved = digits[start + i] != '0';
       }
     }
-
-    this.groupingSize = (groupingCount > 0) ? groupingCount : 0;
-    decimalSeparatorAlwaysShown = (decimalPos == 0 || decimalPos == totalDigits);
-
-    return pos - start;
+    int lastKept = roundPosition > 0 ? digits[start + roundPosition - 1] - '0' : 0;
+    if (roundsUp(isNegative, lastKept, digits[start + roundPosition] - '0', moreRemoved)) {
+      propagateCarry(context, roundPosition - 1);
+    }
   }
 
   /**
-   * Remove excess leading zeros or add some if we don't have enough.
+   * Writes the formatted number in a single pass from right to left, adding the grouping and
+   * decimal separators, the exponent, the prefix and suffix, and localizing the digits.
    *
-   * @param digits
+   * @param context the rounded digits and their layout, see {@link #layout(boolean,
+   *     FormatContext)}
+   * @param out the buffer to write to
+   * @param end the index after the last character to write
    */
-  private void processLeadingZeros(StringBuilder digits) {
-    // make sure we have enough trailing zeros
-    if (decimalPosition > digitsLength) {
-      while (digitsLength < decimalPosition) {
-        digits.append('0');
-        ++digitsLength;
+  private void write(FormatContext context, char[] out, int end) {
+    if (context.special != null) {
+      context.special.getChars(0, context.length, out, end - context.length);
+      return;
+    }
+    int zeroOffset = zeroChar - '0';
+    String prefix = context.isNegative ? negativePrefix : positivePrefix;
+    String suffix = context.isNegative ? negativeSuffix : positiveSuffix;
+    int pos = end;
+
+    pos -= suffix.length();
+    suffix.getChars(0, suffix.length(), out, pos);
+    if (context.useExponent) {
+      int exponent = context.exponent;
+      String exponentSign = "";
+      if (exponent < 0) {
+        exponent = -exponent;
+        exponentSign = numberConstants.minusSign();
+      }
+      for (int i = 0; i < context.exponentDigits; ++i) {
+        out[--pos] = (char) ('0' + zeroOffset + exponent % 10);
+        exponent /= 10;
+      }
+      for (int i = context.exponentDigits; i < minExponentDigits; ++i) {
+        out[--pos] = (char) ('0' + zeroOffset);
       }
+      pos -= exponentSign.length();
+      exponentSign.getChars(0, exponentSign.length(), out, pos);
+      String exponentSymbol = numberConstants.exponentialSymbol();
+      pos -= exponentSymbol.length();
+      exponentSymbol.getChars(0, exponentSymbol.length(), out, pos);
     }
 
-    if (!useExponentialNotation) {
-      // make sure we have the right number of leading zeros
-      if (decimalPosition < minimumIntegerDigits) {
-        // add leading zeros
-        StringBuilder prefix = new StringBuilder();
-        while (decimalPosition < minimumIntegerDigits) {
-          prefix.append('0');
-          ++decimalPosition;
-          ++digitsLength;
-        }
-        digits.insert(0, prefix);
-      } else if (decimalPosition > minimumIntegerDigits) {
-        // trim excess leading zeros
-        int strip = decimalPosition - minimumIntegerDigits;
-        for (int i = 0; i < strip; ++i) {
-          if (digits.charAt(i) != '0') {
-            strip = i;
-            break;
-          }
-        }
-        if (strip > 0) {
-          digits.delete(0, strip);
-          digitsLength -= strip;
-          decimalPosition -= strip;
-        }
+    char[] digits = context.digits;
+    int decimalIndex = context.start + context.decimalPosition;
+    for (int i = context.start + context.digitsLength - 1; i >= decimalIndex; --i) {
+      out[--pos] = (char) (digits[i] + zeroOffset);
+    }
+    if (context.showDecimal) {
+      out[--pos] = decimalSeparatorChar;
+    }
+    for (int i = decimalIndex - 1, group = 0; i >= context.start; --i) {
+      if (group == groupingSize && groupingSize > 0) {
+        out[--pos] = groupingSeparatorChar;
+        group = 0;
       }
+      out[--pos] = (char) (digits[i] + zeroOffset);
+      ++group;
     }
+
+    prefix.getChars(0, prefix.length(), out, end - context.length);
   }
 
   /**
-   * Propagate a carry from incrementing the {@code i+1}'th digit.
+   * Writes the formatted number as UTF-8 from left to right, like {@link #write(FormatContext,
+   * char[], int)}.
    *
-   * @param digits
-   * @param i digit to start incrementing
+   * @param context the rounded digits and their layout, see {@link #layout(boolean,
+   *     FormatContext)}
+   * @param out the array to write to
+   * @param offset the index of the first byte to write
+   * @return the index after the last byte written, or -1 if {@code out} has no room
    */
-  private void propagateCarry(StringBuilder digits, int i) {
-    boolean carry = true;
-    while (carry && i >= 0) {
-      char digit = digits.charAt(i);
-      if (digit == '9') {
-        // set this to zero and keep going
-        digits.setCharAt(i--, '0');
+  private int write(FormatContext context, byte[] out, int offset) {
+    if (context.special != null) {
+      byte[] special = Utf8Symbols.encode(context.special);
+      if (special.length > out.length - offset) {
+        return -1;
+      }
+      System.arraycopy(special, 0, out, offset, special.length);
+      return offset + special.length;
+    }
+    Utf8Symbols symbols = numberPattern.getUtf8Symbols();
+    byte[] prefix = context.isNegative ? symbols.negativePrefix : symbols.positivePrefix;
+    byte[] suffix = context.isNegative ? symbols.negativeSuffix : symbols.positiveSuffix;
+    byte[][] localDigits = symbols.digits;
+    char[] digits = context.digits;
+    int start = context.start;
+    int end = start + context.digitsLength;
+    // the digits of a script are contiguous, so they all have the same length
+    int digitLength = localDigits == null ? 1 : localDigits[0].length;
+    int exponentDigits = Math.max(context.exponentDigits, minExponentDigits);
+
+    // check for room first, so that nothing is written if the number does not fit
+    int length =
+        prefix.length
+            + context.digitsLength * digitLength
+            + context.groupingSeparators * symbols.groupingSeparator.length
+            + (context.showDecimal ? symbols.decimalSeparator.length : 0)
+            + suffix.length;
+    if (context.useExponent) {
+      length +=
+          symbols.exponentialSymbol.length
+              + (context.exponent < 0 ? symbols.minusSign.length : 0)
+              + exponentDigits * digitLength;
+    }
+    if (length > out.length - offset) {
+      return -1;
+    }
+
+    int pos = offset;
+    System.arraycopy(prefix, 0, out, pos, prefix.length);
+    pos += prefix.length;
+    int decimalIndex = start + context.decimalPosition;
+    for (int i = start; i < end; ++i) {
+      if (i == decimalIndex) {
+        pos = copy(symbols.decimalSeparator, out, pos);
+      } else if (i < decimalIndex
+          && i > start
+          && groupingSize > 0
+          && (decimalIndex - i) % groupingSize == 0) {
+        pos = copy(symbols.groupingSeparator, out, pos);
+      }
+      if (localDigits == null) {
+        out[pos++] = (byte) digits[i];
       } else {
-        digits.setCharAt(i, (char) (digit + 1));
-        carry = false;
+        pos = copy(localDigits[digits[i] - '0'], out, pos);
       }
     }
-    if (carry) {
-      // ran off the front, prepend a 1
-      digits.insert(0, '1');
-      ++decimalPosition;
-      ++digitsLength;
+    if (context.showDecimal && decimalIndex >= end) {
+      pos = copy(symbols.decimalSeparator, out, pos);
     }
+    if (context.useExponent) {
+      pos = copy(symbols.exponentialSymbol, out, pos);
+      int exponent = context.exponent;
+      if (exponent < 0) {
+        exponent = -exponent;
+        pos = copy(symbols.minusSign, out, pos);
+      }
+      // the exponent digits are written from right to left
+      for (int i = exponentDigits - 1; i >= 0; --i) {
+        int digit = exponent % 10;
+        exponent /= 10;
+        if (localDigits == null) {
+          out[pos + i] = (byte) ('0' + digit);
+        } else {
+          System.arraycopy(localDigits[digit], 0, out, pos + i * digitLength, digitLength);
+        }
+      }
+      pos += exponentDigits * digitLength;
+    }
+    return copy(suffix, out, pos);
+  }
+
+  /** Copies bytes to {@code out} at {@code pos}, returning the index after them. */
+  private static int copy(byte[] bytes, byte[] out, int pos) {
+    System.arraycopy(bytes, 0, out, pos, bytes.length);
+    return pos + bytes.length;
+  }
+
+  /** The result of a single call to {@link #parseExact(CharSequence, int[], int)}. */
+  private static final class ExactContext {
+    // the negated unscaled value, if it fits into a long
+    long unscaled;
+
+    // the unscaled value, if it does not fit into a long
+    BigInteger bigUnscaled;
+
+    // the number of fractional digits
+    int scale;
+
+    // 2 for a percent sign, 3 for a per mille sign
+    int percentDigits;
+
+    boolean isNegative;
   }
 
   /**
-   * Round the value at the requested place, propagating any carry backward.
-   *
-   * @param digits
+   * The state of a single call to {@link #format(boolean, StringBuilder, int)}: the digits being
+   * formatted, which occupy {@code digits[start, start + digitsLength)}, and the position of the
+   * decimal point relative to {@code start}.
    */
-  private void roundValue(StringBuilder digits) {
-    // TODO(jat): other rounding modes?
-    if (digitsLength > decimalPosition + maximumFractionDigits
-        && digits.charAt(decimalPosition + maximumFractionDigits) >= '5') {
-      int i = decimalPosition + maximumFractionDigits - 1;
-      propagateCarry(digits, i);
+  private static final class FormatContext {
+    char[] digits;
+
+    // the index of the first digit
+    int start;
+
+    // the current decimal position
+    int decimalPosition;
+
+    // the current digits length
+    int digitsLength;
+
+    // the current exponent
+    int exponent;
+
+    // the layout of the formatted number, see layout(boolean, FormatContext)
+    boolean isNegative;
+    boolean useExponent;
+    boolean showDecimal;
+    int exponentDigits;
+    int groupingSeparators;
+    int length;
+
+    // written instead of the digits for NaN and infinity
+    String special;
+
+    // scratch space for the digits of doubles, kept across the values formatted by formatAll
+    StringBuilder scratch;
+    char[] scratchDigits;
+    int[] scratchScale;
+
+    /**
+     * Prepares this context for new digits, reusing its buffer if it is large enough. The digits
+     * are to be written to {@code digits[start, start + digitsLength)}.
+     */
+    void reset(int capacity, int start, int digitsLength, int scale) {
+      if (digits == null || digits.length < capacity) {
+        digits = new char[capacity];
+      }
+      this.start = start;
+      this.digitsLength = digitsLength;
+      decimalPosition = digitsLength + scale;
+      exponent = 0;
+      special = null;
     }
   }
 }
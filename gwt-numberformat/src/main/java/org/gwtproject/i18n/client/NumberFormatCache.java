@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import org.gwtproject.i18n.shared.cldr.CurrencyData;
+import org.gwtproject.i18n.shared.cldr.NumberConstants;
+
+/**
+ * A bounded cache of compiled {@link NumberFormat} patterns, keyed by pattern, currency and the
+ * locale's {@link NumberConstants}. Once the cache is full, the least recently used entry is
+ * evicted.
+ *
+ * <p>This is the only cache of compiled patterns: it serves the formats of user supplied patterns
+ * as well as the standard formats and the formats of subclasses, which share the compiled pattern
+ * of an equal format.
+ *
+ * <p>All methods may be called from multiple threads.
+ *
+ * @see NumberFormat#getFormatCache()
+ */
+public final class NumberFormatCache {
+
+  /** The default maximum number of cached patterns. */
+  public static final int DEFAULT_MAXIMUM_SIZE = 128;
+
+  private final Object lock = new Object[0];
+
+  private final LruMap<Key, NumberPattern> entries = new LruMap<>(DEFAULT_MAXIMUM_SIZE);
+
+  private long hitCount;
+  private long missCount;
+
+  NumberFormatCache() {}
+
+  /** Removes all cached patterns. The statistics are kept. */
+  public void clear() {
+    synchronized (lock) {
+      entries.clear();
+    }
+  }
+
+  /** Returns the number of lookups that found a cached pattern. */
+  public long getHitCount() {
+    synchronized (lock) {
+      return hitCount;
+    }
+  }
+
+  /** Returns the number of lookups that had to parse their pattern. */
+  public long getMissCount() {
+    synchronized (lock) {
+      return missCount;
+    }
+  }
+
+  /** Returns the number of patterns removed to make room for newer ones. */
+  public long getEvictionCount() {
+    synchronized (lock) {
+      return entries.getEvictionCount();
+    }
+  }
+
+  /** Returns the maximum number of cached patterns. */
+  public int getMaximumSize() {
+    synchronized (lock) {
+      return entries.getMaximumSize();
+    }
+  }
+
+  /**
+   * Changes the maximum number of cached patterns, evicting the least recently used ones if there
+   * are more.
+   *
+   * @param maximumSize the new maximum size; 0 disables caching
+   */
+  public void setMaximumSize(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Negative maximum size: " + maximumSize);
+    }
+    synchronized (lock) {
+      entries.setMaximumSize(maximumSize);
+    }
+  }
+
+  /** Returns the number of cached patterns. */
+  public int size() {
+    synchronized (lock) {
+      return entries.size();
+    }
+  }
+
+  /** Resets the hit, miss and eviction counts to 0. */
+  public void resetStatistics() {
+    synchronized (lock) {
+      hitCount = 0;
+      missCount = 0;
+      entries.resetEvictionCount();
+    }
+  }
+
+  /**
+   * Returns the format for a user supplied pattern, parsing the pattern if it is not cached yet.
+   * Formats are immutable, so all callers share the instance kept with the cached pattern.
+   */
+  NumberFormat get(NumberConstants numberConstants, String pattern, CurrencyData currencyData) {
+    return getPattern(numberConstants, pattern, currencyData).getUserFormat();
+  }
+
+  /**
+   * Returns the compiled form of a pattern, parsing it if it is not cached yet.
+   *
+   * @throws IllegalArgumentException if the currency is unknown or the pattern is malformed
+   */
+  NumberPattern getPattern(
+      NumberConstants numberConstants, String pattern, CurrencyData currencyData) {
+    if (currencyData == null) {
+      throw new IllegalArgumentException("Unknown currency code");
+    }
+    Key key = new Key(numberConstants, pattern, currencyData);
+    NumberPattern compiled;
+    synchronized (lock) {
+      compiled = entries.get(key);
+      if (compiled != null) {
+        hitCount++;
+      } else {
+        missCount++;
+      }
+    }
+    if (compiled == null) {
+      // parse outside of the lock; a concurrent miss for the same key just parses twice
+      compiled = new NumberPattern(numberConstants, pattern, currencyData);
+      synchronized (lock) {
+        if (entries.getMaximumSize() > 0) {
+          entries.put(key, compiled);
+        }
+      }
+    }
+    return compiled;
+  }
+
+  private static final class Key {
+    private final NumberConstants numberConstants;
+    private final String pattern;
+    private final CurrencyData currencyData;
+    private final int hashCode;
+
+    Key(NumberConstants numberConstants, String pattern, CurrencyData currencyData) {
+      this.numberConstants = numberConstants;
+      this.pattern = pattern;
+      this.currencyData = currencyData;
+      hashCode =
+          (System.identityHashCode(numberConstants) * 31 + pattern.hashCode()) * 31
+              + currencyData.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      // constants are compared by identity: the latin variant of a locale is a distinct instance
+      return numberConstants == other.numberConstants
+          && pattern.equals(other.pattern)
+          && currencyData.equals(other.currencyData);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.gwtproject.i18n.shared.GwtLocale;
+import org.gwtproject.i18n.shared.cldr.CurrencyData;
+import org.gwtproject.i18n.shared.cldr.CurrencyList;
+import org.gwtproject.i18n.shared.cldr.LocaleInfo;
+import org.gwtproject.i18n.shared.cldr.NumberConstants;
+
+/**
+ * The {@link NumberConstants} of the locales a server formats numbers for, and the standard formats
+ * created from them. Only the constants of the current locale are known up front; those of other
+ * locales have to be registered before formats can be requested for them.
+ *
+ * <p>A locale without registered constants uses those of the closest locale it inherits from, so
+ * registering {@code de} also serves {@code de_CH}.
+ *
+ * <p>Currency data is not registered per locale: every locale looks up currency codes, symbols and
+ * its default currency in the {@link CurrencyList} of the current locale. A registered locale whose
+ * default currency is unknown there uses the default currency of the current locale instead.
+ *
+ * <p>All methods may be called from multiple threads.
+ *
+ * @see NumberFormat#getNumberFormatRegistry()
+ */
+public final class NumberFormatRegistry {
+
+  private final Object lock = new Object[0];
+
+  // registered constants, keyed by locale name
+  private final Map<String, NumberConstants> constants = new HashMap<>();
+
+  // the formats of each locale requested so far, keyed by locale name
+  private final Map<String, LocaleFormats> formats = new HashMap<>();
+
+  NumberFormatRegistry() {}
+
+  /**
+   * Registers the constants of a locale, replacing any registered before. The formats created so
+   * far are dropped, as locales inheriting from this one may now use other constants.
+   *
+   * <p>Only the number constants are registered; currency symbols still come from the {@link
+   * CurrencyList} of the current locale.
+   *
+   * @param locale the locale
+   * @param numberConstants the constants of the locale
+   */
+  public void register(GwtLocale locale, NumberConstants numberConstants) {
+    if (numberConstants == null) {
+      throw new IllegalArgumentException("Missing number constants for locale " + locale);
+    }
+    synchronized (lock) {
+      constants.put(nameOf(locale), numberConstants);
+      formats.clear();
+    }
+  }
+
+  /**
+   * Returns the constants used for a locale, which are those registered for the locale or the
+   * closest locale it inherits from.
+   *
+   * @param locale the locale
+   * @return the constants of the locale
+   * @throws IllegalArgumentException if no constants are known for the locale
+   */
+  public NumberConstants getNumberConstants(GwtLocale locale) {
+    return getFormats(locale).numberConstants;
+  }
+
+  /** Returns true if constants are known for a locale, see {@link #getNumberConstants}. */
+  public boolean isSupported(GwtLocale locale) {
+    synchronized (lock) {
+      return lookup(locale) != null;
+    }
+  }
+
+  /** Returns the standard formats of a locale, creating them on first use. */
+  LocaleFormats getFormats(GwtLocale locale) {
+    String name = nameOf(locale);
+    synchronized (lock) {
+      LocaleFormats localeFormats = formats.get(name);
+      if (localeFormats == null) {
+        NumberConstants numberConstants = lookup(locale);
+        if (numberConstants == null) {
+          throw new IllegalArgumentException("No number constants for locale " + name);
+        }
+        // locales resolving to the same constants share their formats
+        for (LocaleFormats other : formats.values()) {
+          if (other.numberConstants == numberConstants) {
+            localeFormats = other;
+            break;
+          }
+        }
+        if (localeFormats == null) {
+          localeFormats = new LocaleFormats(numberConstants);
+        }
+        formats.put(name, localeFormats);
+      }
+      return localeFormats;
+    }
+  }
+
+  /** Returns the constants for a locale, or null; must be called holding the lock. */
+  private NumberConstants lookup(GwtLocale locale) {
+    String currentLocale = LocaleInfo.getCurrentLocale().getLocaleName();
+    for (GwtLocale candidate : locale.getCompleteSearchList()) {
+      String name = nameOf(candidate);
+      NumberConstants numberConstants = constants.get(name);
+      if (numberConstants != null) {
+        return numberConstants;
+      }
+      if (name.equals(currentLocale)) {
+        return NumberFormat.localizedNumberConstants;
+      }
+    }
+    return null;
+  }
+
+  private static String nameOf(GwtLocale locale) {
+    return locale.isDefault() ? GwtLocale.DEFAULT_LOCALE : locale.getAsString();
+  }
+
+  /**
+   * The standard formats of a locale. The decimal, percent and scientific formats are created
+   * along with it; currency formats when first requested.
+   */
+  static final class LocaleFormats {
+    final NumberConstants numberConstants;
+    final NumberFormat decimalFormat;
+    final NumberFormat percentFormat;
+    final NumberFormat scientificFormat;
+    final CurrencyFormats currencyFormats;
+
+    LocaleFormats(NumberConstants numberConstants) {
+      this.numberConstants = numberConstants;
+      CurrencyData currencyData = getDefaultCurrency();
+      decimalFormat =
+          new NumberFormat(numberConstants, numberConstants.decimalPattern(), currencyData, false);
+      percentFormat =
+          new NumberFormat(numberConstants, numberConstants.percentPattern(), currencyData, false);
+      scientificFormat =
+          new NumberFormat(
+              numberConstants, numberConstants.scientificPattern(), currencyData, false);
+      currencyFormats = new CurrencyFormats(numberConstants);
+    }
+
+    /**
+     * Returns the currency of the standard formats, the default one of the locale if the {@link
+     * CurrencyList} of the current locale knows it.
+     */
+    CurrencyData getDefaultCurrency() {
+      return CurrencyTable.get(getDefaultCurrencyId());
+    }
+
+    /** Returns the {@link CurrencyTable} ID of {@link #getDefaultCurrency()}. */
+    int getDefaultCurrencyId() {
+      String currencyCode = numberConstants.defCurrencyCode();
+      if (CurrencyList.get().lookup(currencyCode) == null) {
+        currencyCode = CurrencyList.get().getDefault().getCurrencyCode();
+      }
+      return CurrencyTable.idOf(currencyCode);
+    }
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import org.gwtproject.i18n.shared.cldr.CurrencyData;
+import org.gwtproject.i18n.shared.cldr.NumberConstants;
+
+/**
+ * A compiled {@link NumberFormat} pattern: the affixes, digit counts, grouping and exponent
+ * settings read from the pattern string, and the locale's symbols they are formatted with.
+ *
+ * <p>Patterns are immutable, and shared by all formats created from the same pattern, currency and
+ * {@link NumberConstants}, including those derived with other fraction digits.
+ */
+final class NumberPattern {
+
+  // Constants for characters used in programmatic (unlocalized) patterns.
+  private static final char CURRENCY_SIGN = '\u00A4';
+
+  private static final char PATTERN_DECIMAL_SEPARATOR = '.';
+  private static final char PATTERN_DIGIT = '#';
+  private static final char PATTERN_EXPONENT = 'E';
+  private static final char PATTERN_GROUPING_SEPARATOR = ',';
+  private static final char PATTERN_MINUS = '-';
+  private static final char PATTERN_PER_MILLE = '\u2030';
+  private static final char PATTERN_PERCENT = '%';
+  private static final char PATTERN_SEPARATOR = ';';
+  private static final char PATTERN_ZERO_DIGIT = '0';
+
+  private static final char QUOTE = '\'';
+
+  final NumberConstants numberConstants;
+  final String pattern;
+  final CurrencyData currencyData;
+
+  final boolean decimalSeparatorAlwaysShown;
+  final int groupingSize;
+  final boolean isCurrencyFormat;
+  final int maximumFractionDigits;
+  final int maximumIntegerDigits;
+  final int minExponentDigits;
+  final int minimumFractionDigits;
+  final int minimumIntegerDigits;
+  final int multiplier;
+  final String negativePrefix;
+  final String negativeSuffix;
+  final String positivePrefix;
+  final String positiveSuffix;
+  final boolean useExponentialNotation;
+
+  // the symbols of the locale, the monetary ones for currency formats
+  final char decimalSeparatorChar;
+  final char groupingSeparatorChar;
+  final char zeroChar;
+  final NumberCharClasses charClasses;
+  final int decimalClass;
+  final int groupingClass;
+
+  // created when first formatting to bytes; a race just encodes the symbols twice
+  private Utf8Symbols utf8Symbols;
+
+  // the format of this pattern as a user supplied one; a race just creates two equal formats
+  private NumberFormat userFormat;
+
+  /**
+   * Returns the compiled form of a pattern from the {@link NumberFormatCache}, parsing it if it is
+   * not cached yet.
+   *
+   * @param numberConstants the locale-specific number constants
+   * @param pattern the pattern string
+   * @param currencyData currency data to substitute for currency signs
+   * @return the shared pattern
+   * @throws IllegalArgumentException if the currency is unknown or the pattern is malformed
+   */
+  static NumberPattern get(
+      NumberConstants numberConstants, String pattern, CurrencyData currencyData) {
+    return NumberFormat.getFormatCache().getPattern(numberConstants, pattern, currencyData);
+  }
+
+  /** Parses a pattern; use {@link #get} to share compiled patterns. */
+  NumberPattern(
+      NumberConstants numberConstants, String pattern, CurrencyData currencyData) {
+    this.numberConstants = numberConstants;
+    this.pattern = pattern;
+    this.currencyData = currencyData;
+
+    // TODO: handle per-currency flags, such as symbol prefix/suffix and spacing
+    ParsedPattern parsed = parsePattern(pattern, numberConstants, currencyData);
+    decimalSeparatorAlwaysShown = parsed.decimalSeparatorAlwaysShown;
+    groupingSize = parsed.groupingSize;
+    isCurrencyFormat = parsed.isCurrencyFormat;
+    maximumFractionDigits = parsed.maximumFractionDigits;
+    maximumIntegerDigits = parsed.maximumIntegerDigits;
+    minExponentDigits = parsed.minExponentDigits;
+    minimumFractionDigits = parsed.minimumFractionDigits;
+    minimumIntegerDigits = parsed.minimumIntegerDigits;
+    multiplier = parsed.multiplier;
+    negativePrefix = parsed.negativePrefix;
+    negativeSuffix = parsed.negativeSuffix;
+    positivePrefix = parsed.positivePrefix;
+    positiveSuffix = parsed.positiveSuffix;
+    useExponentialNotation = parsed.useExponentialNotation;
+    if (isCurrencyFormat) {
+      decimalSeparatorChar = numberConstants.monetarySeparator().charAt(0);
+      groupingSeparatorChar = numberConstants.monetaryGroupingSeparator().charAt(0);
+      decimalClass = NumberCharClasses.MONETARY_DECIMAL;
+      groupingClass = NumberCharClasses.MONETARY_GROUPING;
+    } else {
+      decimalSeparatorChar = numberConstants.decimalSeparator().charAt(0);
+      groupingSeparatorChar = numberConstants.groupingSeparator().charAt(0);
+      decimalClass = NumberCharClasses.DECIMAL;
+      groupingClass = NumberCharClasses.GROUPING;
+    }
+    zeroChar = numberConstants.zeroDigit().charAt(0);
+    charClasses = NumberCharClasses.get(numberConstants);
+  }
+
+  /** Returns the affixes and symbols of this pattern encoded as UTF-8. */
+  Utf8Symbols getUtf8Symbols() {
+    Utf8Symbols symbols = utf8Symbols;
+    if (symbols == null) {
+      symbols = new Utf8Symbols(this);
+      utf8Symbols = symbols;
+    }
+    return symbols;
+  }
+
+  /** Returns the format of this pattern as a user supplied one, shared by all its callers. */
+  NumberFormat getUserFormat() {
+    NumberFormat format = userFormat;
+    if (format == null) {
+      format = new NumberFormat(this, -1);
+      userFormat = format;
+    }
+    return format;
+  }
+
+  /**
+   * This method parses affix part of pattern.
+   *
+   * @param parsed stores the settings found in the affix
+   * @param numberConstants the locale-specific number constants
+   * @param currencyData currency data to substitute for currency signs
+   * @param pattern pattern string that need to be parsed
+   * @param start start position to parse
+   * @param affix store the parsed result
+   * @param inNegativePattern true if we are parsing the negative pattern and therefore only care
+   *     about the prefix and suffix
+   * @return how many characters parsed
+   */
+  private static int parseAffix(
+      ParsedPattern parsed,
+      NumberConstants numberConstants,
+      CurrencyData currencyData,
+      String pattern,
+      int start,
+      StringBuilder affix,
+      boolean inNegativePattern) {
+    affix.delete(0, affix.length());
+    boolean inQuote = false;
+    int len = pattern.length();
+
+    for (int pos = start; pos < len; ++pos) {
+      char ch = pattern.charAt(pos);
+      if (ch == QUOTE) {
+        if ((pos + 1) < len && pattern.charAt(pos + 1) == QUOTE) {
+          ++pos;
+          affix.append("'"); // 'don''t'
+        } else {
+          inQuote = !inQuote;
+        }
+        continue;
+      }
+
+      if (inQuote) {
+        affix.append(ch);
+      } else {
+        switch (ch) {
+          case PATTERN_DIGIT:
+          case PATTERN_ZERO_DIGIT:
+          case PATTERN_GROUPING_SEPARATOR:
+          case PATTERN_DECIMAL_SEPARATOR:
+          case PATTERN_SEPARATOR:
+            return pos - start;
+          case CURRENCY_SIGN:
+            parsed.isCurrencyFormat = true;
+            if ((pos + 1) < len && pattern.charAt(pos + 1) == CURRENCY_SIGN) {
+              ++pos;
+              if (pos < len - 2
+                  && pattern.charAt(pos + 1) == CURRENCY_SIGN
+                  && pattern.charAt(pos + 2) == CURRENCY_SIGN) {
+                pos += 2;
+                affix.append(currencyData.getSimpleCurrencySymbol());
+              } else {
+                affix.append(currencyData.getCurrencyCode());
+              }
+            } else {
+              affix.append(currencyData.getCurrencySymbol());
+            }
+            break;
+          case PATTERN_PERCENT:
+            if (!inNegativePattern) {
+              if (parsed.multiplier != 1) {
+                throw new IllegalArgumentException(
+                    "Too many percent/per mille characters in pattern \"" + pattern + '"');
+              }
+              parsed.multiplier = 100;
+            }
+            affix.append(numberConstants.percent());
+            break;
+          case PATTERN_PER_MILLE:
+            if (!inNegativePattern) {
+              if (parsed.multiplier != 1) {
+                throw new IllegalArgumentException(
+                    "Too many percent/per mille characters in pattern \"" + pattern + '"');
+              }
+              parsed.multiplier = 1000;
+            }
+            affix.append(numberConstants.perMill());
+            break;
+          case PATTERN_MINUS:
+            affix.append("-");
+            break;
+          default:
+            affix.append(ch);
+        }
+      }
+    }
+    return len - start;
+  }
+
+  /**
+   * Method parses provided pattern.
+   *
+   * @param pattern
+   * @param numberConstants the locale-specific number constants
+   * @param currencyData currency data to substitute for currency signs
+   * @return the settings found in the pattern
+   */
+  private static ParsedPattern parsePattern(
+      String pattern, NumberConstants numberConstants, CurrencyData currencyData) {
+    ParsedPattern parsed = new ParsedPattern();
+    int pos = 0;
+    StringBuilder affix = new StringBuilder();
+
+    pos += parseAffix(parsed, numberConstants, currencyData, pattern, pos, affix, false);
+    parsed.positivePrefix = affix.toString();
+    pos += parseTrunk(parsed, pattern, pos, false);
+    pos += parseAffix(parsed, numberConstants, currencyData, pattern, pos, affix, false);
+    parsed.positiveSuffix = affix.toString();
+
+    if (pos < pattern.length() && pattern.charAt(pos) == PATTERN_SEPARATOR) {
+      ++pos;
+      pos += parseAffix(parsed, numberConstants, currencyData, pattern, pos, affix, true);
+      parsed.negativePrefix = affix.toString();
+      // the negative pattern is only used for prefix/suffix
+      pos += parseTrunk(parsed, pattern, pos, true);
+      pos += parseAffix(parsed, numberConstants, currencyData, pattern, pos, affix, true);
+      parsed.negativeSuffix = affix.toString();
+    } else {
+      parsed.negativePrefix = numberConstants.minusSign() + parsed.positivePrefix;
+      parsed.negativeSuffix = parsed.positiveSuffix;
+    }
+    return parsed;
+  }
+
+  /**
+   * This method parses the trunk part of a pattern.
+   *
+   * @param parsed stores the settings found in the trunk
+   * @param pattern pattern string that need to be parsed
+   * @param start where parse started
+   * @param ignorePattern true if we are only parsing this for length and correctness, such as in
+   *     the negative portion of the pattern
+   * @return how many characters parsed
+   */
+  private static int parseTrunk(
+      ParsedPattern parsed, String pattern, int start, boolean ignorePattern) {
+    int decimalPos = -1;
+    int digitLeftCount = 0, zeroDigitCount = 0, digitRightCount = 0;
+    byte groupingCount = -1;
+
+    int len = pattern.length();
+    int pos = start;
+    boolean loop = true;
+    for (; (pos < len) && loop; ++pos) {
+      char ch = pattern.charAt(pos);
+      switch (ch) {
+        case PATTERN_DIGIT:
+          if (zeroDigitCount > 0) {
+            ++digitRightCount;
+          } else {
+            ++digitLeftCount;
+          }
+          if (groupingCount >= 0 && decimalPos < 0) {
+            ++groupingCount;
+          }
+          break;
+        case PATTERN_ZERO_DIGIT:
+          if (digitRightCount > 0) {
+            throw new IllegalArgumentException("Unexpected '0' in pattern \"" + pattern + '"');
+          }
+          ++zeroDigitCount;
+          if (groupingCount >= 0 && decimalPos < 0) {
+            ++groupingCount;
+          }
+          break;
+        case PATTERN_GROUPING_SEPARATOR:
+          groupingCount = 0;
+          break;
+        case PATTERN_DECIMAL_SEPARATOR:
+          if (decimalPos >= 0) {
+            throw new IllegalArgumentException(
+                "Multiple decimal separators in pattern \"" + pattern + '"');
+          }
+          decimalPos = digitLeftCount + zeroDigitCount + digitRightCount;
+          break;
+        case PATTERN_EXPONENT:
+          if (!ignorePattern) {
+            if (parsed.useExponentialNotation) {
+              throw new IllegalArgumentException(
+                  "Multiple exponential " + "symbols in pattern \"" + pattern + '"');
+            }
+            parsed.useExponentialNotation = true;
+            parsed.minExponentDigits = 0;
+          }
+
+          // Use lookahead to parse out the exponential part
+          // of the pattern, then jump into phase 2.
+          while ((pos + 1) < len && pattern.charAt(pos + 1) == PATTERN_ZERO_DIGIT) {
+            ++pos;
+            if (!ignorePattern) {
+              ++parsed.minExponentDigits;
+            }
+          }
+
+          if (!ignorePattern && (digitLeftCount + zeroDigitCount) < 1
+              || parsed.minExponentDigits < 1) {
+            throw new IllegalArgumentException(
+                "Malformed exponential " + "pattern \"" + pattern + '"');
+          }
+          loop = false;
+          break;
+        default:
+          --pos;
+          loop = false;
+          break;
+      }
+    }
+
+    if (zeroDigitCount == 0 && digitLeftCount > 0 && decimalPos >= 0) {
+      // Handle "###.###" and "###." and ".###".
+      int n = decimalPos;
+      if (n == 0) { // Handle ".###"
+        ++n;
+      }
+      digitRightCount = digitLeftCount - n;
+      digitLeftCount = n - 1;
+      zeroDigitCount = 1;
+    }
+
+    // Do syntax checking on the digits.
+    if ((decimalPos < 0 && digitRightCount > 0)
+        || (decimalPos >= 0
+            && (decimalPos < digitLeftCount || decimalPos > (digitLeftCount + zeroDigitCount)))
+        || groupingCount == 0) {
+      throw new IllegalArgumentException("Malformed pattern \"" + pattern + '"');
+    }
+
+    if (ignorePattern) {
+      return pos - start;
+    }
+
+    int totalDigits = digitLeftCount + zeroDigitCount + digitRightCount;
+
+    parsed.maximumFractionDigits = (decimalPos >= 0 ? (totalDigits - decimalPos) : 0);
+    if (decimalPos >= 0) {
+      parsed.minimumFractionDigits = digitLeftCount + zeroDigitCount - decimalPos;
+      if (parsed.minimumFractionDigits < 0) {
+        parsed.minimumFractionDigits = 0;
+      }
+    }
+
+    /*
+     * The effectiveDecimalPos is the position the decimal is at or would be at
+     * if there is no decimal. Note that if decimalPos<0, then digitTotalCount ==
+     * digitLeftCount + zeroDigitCount.
+     */
+    int effectiveDecimalPos = decimalPos >= 0 ? decimalPos : totalDigits;
+    parsed.minimumIntegerDigits = effectiveDecimalPos - digitLeftCount;
+    if (parsed.useExponentialNotation) {
+      parsed.maximumIntegerDigits = digitLeftCount + parsed.minimumIntegerDigits;
+
+      // In exponential display, integer part can't be empty.
+      if (parsed.maximumFractionDigits == 0 && parsed.minimumIntegerDigits == 0) {
+        parsed.minimumIntegerDigits = 1;
+      }
+    }
+
+    parsed.groupingSize = (groupingCount > 0) ? groupingCount : 0;
+    parsed.decimalSeparatorAlwaysShown = (decimalPos == 0 || decimalPos == totalDigits);
+
+    return pos - start;
+  }
+
+  /** The settings read from a pattern, before they are stored in the final fields. */
+  private static final class ParsedPattern {
+    boolean decimalSeparatorAlwaysShown = false;
+    int groupingSize = 3;
+    boolean isCurrencyFormat = false;
+    int maximumFractionDigits = 3;
+    int maximumIntegerDigits = 40;
+    int minExponentDigits;
+    int minimumFractionDigits = 0;
+    int minimumIntegerDigits = 1;
+    int multiplier = 1;
+    String negativePrefix = "-";
+    String negativeSuffix = "";
+    String positivePrefix = "";
+    String positiveSuffix = "";
+    boolean useExponentialNotation = false;
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.client;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The affixes and symbols of a {@link NumberPattern} encoded as UTF-8, so that formatting to bytes
+ * copies them instead of encoding them for each value.
+ *
+ * <p>Instances are immutable, and created once per pattern.
+ */
+final class Utf8Symbols {
+
+  final byte[] positivePrefix;
+  final byte[] positiveSuffix;
+  final byte[] negativePrefix;
+  final byte[] negativeSuffix;
+  final byte[] decimalSeparator;
+  final byte[] groupingSeparator;
+  final byte[] exponentialSymbol;
+  final byte[] minusSign;
+
+  // the localized digits, indexed by value; null if they are the latin ones
+  final byte[][] digits;
+
+  Utf8Symbols(NumberPattern pattern) {
+    positivePrefix = encode(pattern.positivePrefix);
+    positiveSuffix = encode(pattern.positiveSuffix);
+    negativePrefix = encode(pattern.negativePrefix);
+    negativeSuffix = encode(pattern.negativeSuffix);
+    decimalSeparator = encode(String.valueOf(pattern.decimalSeparatorChar));
+    groupingSeparator = encode(String.valueOf(pattern.groupingSeparatorChar));
+    exponentialSymbol = encode(pattern.numberConstants.exponentialSymbol());
+    minusSign = encode(pattern.numberConstants.minusSign());
+    if (pattern.zeroChar == '0') {
+      digits = null;
+    } else {
+      digits = new byte[10][];
+      for (int i = 0; i < 10; ++i) {
+        digits[i] = encode(String.valueOf((char) (pattern.zeroChar + i)));
+      }
+    }
+  }
+
+  static byte[] encode(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+}
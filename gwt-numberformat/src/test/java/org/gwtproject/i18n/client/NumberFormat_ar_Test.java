@@ -16,6 +16,7 @@
 package org.gwtproject.i18n.client;
 
 import com.google.gwt.junit.client.GWTTestCase;
+import java.nio.charset.StandardCharsets;
 
 /** Validate NumberFormat handles Arabic numbers properly. */
 public class NumberFormat_ar_Test extends GWTTestCase {
@@ -41,6 +42,15 @@ public class NumberFormat_ar_Test extends GWTTestCase {
     assertEquals("\u061C-\u0663\u0627\u0633\u0662", fmt.format(-314.0));
   }
 
+  public void testFormatToBytes() {
+    NumberFormat fmt = NumberFormat.getDecimalFormat();
+    byte[] out = new byte[16];
+    int end = fmt.formatTo(-3.14, out, 1);
+    assertEquals(12, end);
+    assertEquals("\u061C-\u0663\u066B\u0661\u0664", new String(out, 1, 11, StandardCharsets.UTF_8));
+    assertEquals(-1, fmt.formatTo(-3.14, out, 6));
+  }
+
   public void testForceLatin() {
     assertFalse(NumberFormat.forcedLatinDigits());
     NumberFormat.setForcedLatinDigits(true);
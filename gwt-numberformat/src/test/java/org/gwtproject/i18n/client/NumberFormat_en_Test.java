@@ -18,6 +18,10 @@ package org.gwtproject.i18n.client;
 import com.google.gwt.junit.client.GWTTestCase;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import org.gwtproject.i18n.shared.cldr.CurrencyData;
+import org.gwtproject.i18n.shared.cldr.NumberConstants;
 
 /** Test {@link NumberFormat} in the {@code en} locale. */
 public class NumberFormat_en_Test extends GWTTestCase {
@@ -84,6 +88,51 @@ public class NumberFormat_en_Test extends GWTTestCase {
     assertEquals("1,000,000,000,000,000,000,000,001", str);
   }
 
+  public void testCacheIntegers() {
+    NumberFormat percent = NumberFormat.getPercentFormat();
+    NumberFormat cached = percent.cacheIntegers(-10, 9999);
+    assertNotSame(percent, cached);
+    assertEquals("1,234%", cached.format(12.34));
+    assertEquals("123,400%", cached.format(1234));
+    assertSame(cached.format(1234), cached.format(1234));
+    assertSame(cached.format(1234), cached.format(Long.valueOf(1234)));
+    assertSame(cached.format(-10), cached.format(Integer.valueOf(-10)));
+    assertEquals("-1,000%", cached.format(-10));
+    assertEquals("-0%", cached.format(-0.0));
+    assertEquals("0%", cached.format(0));
+    assertEquals("1,000,000%", cached.format(10000));
+    assertEquals("-1,100%", cached.format(-11));
+
+    // derived formats do not share the cached strings
+    assertEquals("123,400.0%", cached.overrideFractionDigits(1).format(1234));
+    try {
+      percent.cacheIntegers(0, NumberFormat.MAXIMUM_CACHED_INTEGERS);
+      fail("Expecting IllegalArgumentException for too many integers");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  public void testCharClasses() {
+    NumberConstants constants = NumberFormat.getDecimalFormat().getNumberConstants();
+    NumberCharClasses classes = NumberCharClasses.get(constants);
+    assertSame(classes, NumberCharClasses.get(constants));
+    assertEquals(NumberCharClasses.DIGIT | 7, classes.classify('7'));
+    assertEquals(
+        NumberCharClasses.DECIMAL
+            | NumberCharClasses.MONETARY_DECIMAL
+            | NumberCharClasses.DOT_EQUIVALENT,
+        classes.classify('.'));
+    assertEquals(
+        NumberCharClasses.GROUPING
+            | NumberCharClasses.MONETARY_GROUPING
+            | NumberCharClasses.COMMA_EQUIVALENT,
+        classes.classify(','));
+    assertEquals(NumberCharClasses.PERCENT, classes.classify('%'));
+    assertEquals(0, classes.classify('x'));
+    assertEquals(
+        NumberCharClasses.DOT_EQUIVALENT, NumberCharClasses.classifyLocaleIndependent('\u3002'));
+  }
+
   public void testCurrency() {
     String str;
 
@@ -304,6 +353,205 @@ public class NumberFormat_en_Test extends GWTTestCase {
     assertEquals("3.14", unforced.format(3.14));
   }
 
+  public void testCurrencyFormatCache() {
+    NumberFormat eur = NumberFormat.getCurrencyFormat("EUR");
+    assertSame(eur, NumberFormat.getCurrencyFormat("EUR"));
+    assertNotSame(eur, NumberFormat.getCurrencyFormat("GBP"));
+    assertNotSame(eur, NumberFormat.getSimpleCurrencyFormat("EUR"));
+    assertSame(
+        NumberFormat.getGlobalCurrencyFormat("EUR"), NumberFormat.getGlobalCurrencyFormat("EUR"));
+    assertEquals("€1,234.50", eur.format(1234.5));
+    assertEquals("€1,234.50 EUR", NumberFormat.getGlobalCurrencyFormat("EUR").format(1234.5));
+    int id = CurrencyTable.idOf("EUR");
+    assertEquals(id, CurrencyTable.idOf("EUR"));
+    assertEquals("EUR", CurrencyTable.get(id).getCurrencyCode());
+    try {
+      NumberFormat.getCurrencyFormat("XYZ");
+      fail("Expecting IllegalArgumentException for an unknown currency");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  public void testFormatCache() {
+    NumberFormatCache cache = NumberFormat.getFormatCache();
+    cache.clear();
+    cache.resetStatistics();
+
+    NumberFormat first = NumberFormat.getFormat("#,##0.00");
+    NumberFormat second = NumberFormat.getFormat("#,##0.00");
+    NumberFormat brl = NumberFormat.getFormat("#,##0.00", "BRL");
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(2, cache.size());
+    assertSame(first, second);
+    assertEquals("1,234.50", second.format(1234.5));
+
+    // deriving a format must not change the cached one
+    NumberFormat rounded = first.overrideFractionDigits(0);
+    assertEquals("1,235", rounded.format(1234.5));
+    assertEquals("1,234.50", first.format(1234.5));
+    assertEquals("1,234.50", NumberFormat.getFormat("#,##0.00").format(1234.5));
+    assertEquals("1,234.50", brl.format(1234.5));
+
+    int maximumSize = cache.getMaximumSize();
+    try {
+      cache.setMaximumSize(1);
+      assertEquals(1, cache.size());
+      assertEquals(1, cache.getEvictionCount());
+      NumberFormat.getFormat("0.0");
+      assertEquals(2, cache.getEvictionCount());
+    } finally {
+      cache.setMaximumSize(maximumSize);
+    }
+  }
+
+  public void testNumberPattern() {
+    NumberConstants constants = NumberFormat.localizedNumberConstants;
+    CurrencyData usd = CurrencyTable.get(CurrencyTable.idOf("USD"));
+    NumberPattern compiled = NumberPattern.get(constants, "#,##0.00 \u00a4", usd);
+    assertSame(compiled, NumberPattern.get(constants, "#,##0.00 \u00a4", usd));
+    assertTrue(compiled.isCurrencyFormat);
+    assertEquals(2, compiled.minimumFractionDigits);
+    assertEquals(" $", compiled.positiveSuffix);
+    assertEquals("-", compiled.negativePrefix);
+
+    // user supplied formats find the pattern compiled above in the same cache
+    NumberFormatCache cache = NumberFormat.getFormatCache();
+    long hitCount = cache.getHitCount();
+    NumberFormat format = NumberFormat.getFormat("#,##0.00 \u00a4", "USD");
+    assertEquals(hitCount + 1, cache.getHitCount());
+    assertEquals("1,234.50 $", format.format(1234.5));
+
+    // derived formats share the pattern but keep their own fraction digits
+    NumberFormat currency = NumberFormat.getCurrencyFormat("USD");
+    NumberFormat whole = currency.overrideFractionDigits(0);
+    NumberFormat wide = whole.overrideFractionDigits(3, 4);
+    assertEquals("$1,235", whole.format(1234.5));
+    assertEquals("$1,234.5678", wide.format(1234.56779));
+    assertEquals("$1,234.50", currency.format(1234.5));
+    assertEquals(currency.getPattern(), wide.getPattern());
+    try {
+      NumberPattern.get(constants, "0.0.0", usd);
+      fail("Expecting IllegalArgumentException for a malformed pattern");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  public void testFormatScaled() {
+    NumberFormat format = NumberFormat.getFormat("#,##0.00");
+    assertEquals("1,234.56", format.formatScaled(123456, 2));
+    assertEquals("-1,234.56", format.formatScaled(-123456, 2));
+    assertEquals("12.35", format.formatScaled(12345, 3));
+    assertEquals("-12.35", format.formatScaled(-12345, 3));
+    assertEquals("0.01", format.formatScaled(5, 3));
+    assertEquals("0.00", format.formatScaled(4, 3));
+    assertEquals("9.99", format.formatScaled(9994, 3));
+    assertEquals("10.00", format.formatScaled(9995, 3));
+    assertEquals("0.92", format.formatScaled(Long.MAX_VALUE, 19));
+    assertEquals("-0.01", format.formatScaled(Long.MIN_VALUE, 21));
+    assertEquals("0.00", format.formatScaled(Long.MAX_VALUE, 22));
+    assertEquals("12,000.00", format.formatScaled(12, -3));
+
+    NumberFormat integer = NumberFormat.getFormat("#,##0");
+    assertEquals("-9,223,372,036,854,775,808", integer.formatScaled(Long.MIN_VALUE, 0));
+    assertEquals("-9,223,372,036,854,775,808", integer.format(Long.valueOf(Long.MIN_VALUE)));
+    assertEquals(
+        "922,337,203,685,477,580,700%",
+        NumberFormat.getPercentFormat().formatScaled(Long.MAX_VALUE, 0));
+    assertEquals("1.235E3", NumberFormat.getFormat("0.###E0").formatScaled(123456, 2));
+
+    StringBuilder buf = new StringBuilder("total: ");
+    assertSame(buf, format.formatScaledTo(-99, 2, buf));
+    assertEquals("total: -0.99", buf.toString());
+  }
+
+  public void testFormatTo() throws Exception {
+    NumberFormat format = NumberFormat.getFormat("#,##0.00;(#,##0.00)");
+    StringBuilder buf = new StringBuilder("a=");
+    assertSame(buf, format.formatTo(1234.567, buf));
+    buf.append(", b=");
+    format.formatTo(-9876543210L, buf);
+    buf.append(", c=");
+    format.formatTo(new BigDecimal("-0.005"), buf);
+    buf.append(", d=");
+    format.formatTo(Double.NaN, buf);
+    assertEquals("a=1,234.57, b=(9,876,543,210.00), c=(0.01), d=NaN", buf.toString());
+
+    Appendable appendable = new StringBuilder("x");
+    format.formatTo(new BigInteger("12345678901234567890"), appendable);
+    assertEquals("x12,345,678,901,234,567,890.00", appendable.toString());
+  }
+
+  public void testFormatToBytes() {
+    byte[] out = new byte[32];
+    NumberFormat currency = NumberFormat.getCurrencyFormat("EUR");
+    int end = currency.formatTo(-1234.5, out, 2);
+    assertEquals(2 + "-\u20ac1,234.50".getBytes(StandardCharsets.UTF_8).length, end);
+    assertEquals("-\u20ac1,234.50", new String(out, 2, end - 2, StandardCharsets.UTF_8));
+
+    NumberFormat scientific = NumberFormat.getFormat("0.00E00");
+    end = scientific.formatTo(0.00012345, out, 0);
+    assertEquals("1.23E-04", new String(out, 0, end, StandardCharsets.UTF_8));
+    end = NumberFormat.getPercentFormat().formatTo(Long.MIN_VALUE, out, 0);
+    assertEquals("-922,337,203,685,477,580,800%", new String(out, 0, end, StandardCharsets.UTF_8));
+    end = NumberFormat.getDecimalFormat().formatTo(Long.MIN_VALUE, out, 0);
+    assertEquals("-9,223,372,036,854,775,808", new String(out, 0, end, StandardCharsets.UTF_8));
+    end = NumberFormat.getDecimalFormat().formatTo(Double.NaN, out, 0);
+    assertEquals("NaN", new String(out, 0, end, StandardCharsets.UTF_8));
+    assertEquals(-1, currency.formatTo(1234.5, new byte[10], 0));
+  }
+
+  public void testFormatEach() {
+    NumberFormat[] formats = {
+      NumberFormat.getDecimalFormat(),
+      NumberFormat.getCurrencyFormat("EUR"),
+      NumberFormat.getCurrencyFormat("JPY"),
+      NumberFormat.getFormat("#,##0.00;(#,##0.00)"),
+      NumberFormat.getPercentFormat(),
+      NumberFormat.getScientificFormat(),
+      NumberFormat.getDecimalFormat().overrideRoundingMode(RoundingMode.DOWN)
+    };
+    double[] numbers = {-1234.5678, 0.125, 0, 1e20, Double.NaN, Double.NEGATIVE_INFINITY};
+    for (double number : numbers) {
+      String[] formatted = NumberFormat.formatEach(number, formats);
+      assertEquals(formats.length, formatted.length);
+      for (int i = 0; i < formats.length; ++i) {
+        assertEquals(formats[i].format(number), formatted[i]);
+      }
+    }
+    String[] formatted = NumberFormat.formatEach(-1234.5678, formats);
+    assertEquals("-1,234.568", formatted[0]);
+    assertEquals("(1,234.57)", formatted[3]);
+    assertEquals("-1,234.567", formatted[6]);
+    assertEquals(0, NumberFormat.formatEach(1).length);
+  }
+
+  public void testFormatAll() {
+    NumberFormat format = NumberFormat.getFormat("#,##0.00;(#,##0.00)");
+    double[] doubles = {1234.567, -0.005, 0, Double.NaN, Double.NEGATIVE_INFINITY, 1e20};
+    char[] out = new char[64];
+    int[] ends = new int[doubles.length];
+    assertEquals(doubles.length, format.formatAll(doubles, out, ends));
+    String[] expected = {
+      "1,234.57", "(0.01)", "0.00", "NaN", "(\u221E)", "100,000,000,000,000,000,000.00"
+    };
+    for (int i = 0, start = 0; i < doubles.length; start = ends[i++]) {
+      assertEquals(expected[i], new String(out, start, ends[i] - start));
+      assertEquals(format.format(doubles[i]), expected[i]);
+    }
+
+    long[] longs = {0, -42, Long.MIN_VALUE, 1234567};
+    out = new char[40];
+    ends = new int[longs.length];
+    // the third value does not fit
+    assertEquals(2, format.formatAll(longs, 0, longs.length, out, 3, ends));
+    assertEquals("0.00(42.00)", new String(out, 3, ends[1] - 3));
+    assertEquals(7, ends[0]);
+    assertEquals(2, format.formatAll(longs, 2, 4, new char[42], 0, ends));
+    assertEquals(30, ends[0]);
+    assertEquals(42, ends[1]);
+  }
+
   public void testGrouping() {
     String str;
 
@@ -480,6 +728,73 @@ public class NumberFormat_en_Test extends GWTTestCase {
     assertEquals("111.18000000000", str);
   }
 
+  public void testRoundingMode() {
+    NumberFormat format = NumberFormat.getFormat("#0.00");
+    assertEquals(RoundingMode.HALF_UP, format.getRoundingMode());
+    assertSame(format, format.overrideRoundingMode(RoundingMode.HALF_UP));
+
+    NumberFormat even = format.overrideRoundingMode(RoundingMode.HALF_EVEN);
+    assertEquals(RoundingMode.HALF_EVEN, even.getRoundingMode());
+    assertEquals("0.12", even.format(0.125));
+    assertEquals("0.14", even.format(0.135));
+    assertEquals("0.13", even.format(0.1251));
+    assertEquals("-0.12", even.format(-0.125));
+    assertEquals("0.12", even.formatScaled(125, 3));
+    assertEquals("0.14", even.formatScaled(135, 3));
+    assertEquals("0.13", even.formatScaled(12501, 5));
+    assertEquals("0.00", even.formatScaled(5, 3));
+    assertEquals("2.00", even.format(new BigDecimal("1.995")));
+    assertEquals("1.00", even.overrideFractionDigits(2).format(1.005));
+    assertEquals(RoundingMode.HALF_EVEN, even.overrideFractionDigits(0).getRoundingMode());
+    assertEquals("2", even.overrideFractionDigits(0).format(2.5));
+    assertEquals("0", even.overrideFractionDigits(0).format(0.5));
+
+    NumberFormat down = format.overrideRoundingMode(RoundingMode.DOWN);
+    assertEquals("0.99", down.format(0.9999));
+    assertEquals("-0.99", down.format(-0.9999));
+    assertEquals("0.10", down.format(0.1));
+    assertEquals("0.29", down.format(0.29));
+    assertEquals("9.99", down.formatScaled(99999, 4));
+    NumberFormat up = format.overrideRoundingMode(RoundingMode.UP);
+    assertEquals("0.10", up.format(0.1));
+    assertEquals("1.00", up.format(0.991));
+    assertEquals("-1.00", up.formatScaled(-991, 3));
+    NumberFormat ceiling = format.overrideRoundingMode(RoundingMode.CEILING);
+    assertEquals("0.13", ceiling.format(0.121));
+    assertEquals("-0.12", ceiling.format(-0.121));
+    NumberFormat floor = format.overrideRoundingMode(RoundingMode.FLOOR);
+    assertEquals("0.12", floor.format(0.129));
+    assertEquals("-0.13", floor.formatScaled(-121, 3));
+
+    // the multiplier of percent and per mille formats must not round the double
+    NumberFormat percent = NumberFormat.getFormat("#,##0%");
+    assertEquals("29%", percent.overrideRoundingMode(RoundingMode.DOWN).format(0.29));
+    assertEquals("57%", percent.overrideRoundingMode(RoundingMode.DOWN).format(0.57));
+    assertEquals("29%", percent.overrideRoundingMode(RoundingMode.FLOOR).format(0.29));
+    assertEquals("-29%", percent.overrideRoundingMode(RoundingMode.CEILING).format(-0.29));
+    assertEquals("57%", percent.overrideRoundingMode(RoundingMode.CEILING).format(0.57));
+    NumberFormat perMille = NumberFormat.getFormat("0.00\u2030");
+    assertEquals(
+        "512387.00\u2030", perMille.overrideRoundingMode(RoundingMode.FLOOR).format(512.387));
+    assertEquals("290.00\u2030", perMille.overrideRoundingMode(RoundingMode.DOWN).format(0.29));
+    assertEquals(
+        "-290.00\u2030", perMille.overrideRoundingMode(RoundingMode.CEILING).format(-0.29));
+    assertEquals("570.00\u2030", perMille.overrideRoundingMode(RoundingMode.CEILING).format(0.57));
+    NumberFormat halfDown = format.overrideRoundingMode(RoundingMode.HALF_DOWN);
+    assertEquals("0.12", halfDown.format(0.125));
+    assertEquals("0.13", halfDown.format(0.12501));
+    assertEquals("-1", halfDown.overrideFractionDigits(0).formatScaled(Long.MIN_VALUE, 19));
+
+    NumberFormat exact = format.overrideRoundingMode(RoundingMode.UNNECESSARY);
+    assertEquals("0.12", exact.format(0.12));
+    assertEquals("0.10", exact.formatScaled(1000, 4));
+    try {
+      exact.format(0.125);
+      fail("Expecting ArithmeticException for a value which needs rounding");
+    } catch (ArithmeticException e) {
+    }
+  }
+
   public void testStandardFormat() {
     String str;
 
@@ -16,6 +16,8 @@
 package org.gwtproject.i18n.client;
 
 import com.google.gwt.junit.client.GWTTestCase;
+import java.math.BigDecimal;
+import java.util.BitSet;
 
 /** GWT JUnit tests must extend GWTTestCase. */
 public class NumberParse_en_Test extends GWTTestCase {
@@ -26,6 +28,14 @@ public class NumberParse_en_Test extends GWTTestCase {
     return "org.gwtproject.i18n.I18NTest_en";
   }
 
+  private static void assertParseLongFails(NumberFormat format, String text) {
+    try {
+      format.parseLong(text);
+      fail("Expecting NumberFormatException to be thrown for " + text);
+    } catch (NumberFormatException e) {
+    }
+  }
+
   private static Number numberParse(String pattern, String toParse) {
     NumberFormat fmt = NumberFormat.getFormat(pattern);
     return new Double(fmt.parse(toParse));
@@ -100,6 +110,112 @@ public class NumberParse_en_Test extends GWTTestCase {
     assertTrue(Double.isNaN(value.doubleValue()));
   }
 
+  public void testParseBigDecimal() {
+    NumberFormat format = NumberFormat.getFormat("#,##0.00;(#,##0.00)");
+    assertEquals(new BigDecimal("1234.50"), format.parseBigDecimal("1,234.50"));
+    assertEquals(new BigDecimal("-0.10"), format.parseBigDecimal("(0.10)"));
+    assertEquals(
+        new BigDecimal("-12345678901234567890123.456789"),
+        format.parseBigDecimal("(12,345,678,901,234,567,890,123.456789)"));
+    assertEquals(
+        new BigDecimal("9223372036854775808"), format.parseBigDecimal("9223372036854775808"));
+    assertEquals(
+        new BigDecimal("1.5E+3"), NumberFormat.getFormat("0.#E0").parseBigDecimal("1.5E3"));
+    assertEquals(
+        new BigDecimal("0.1250"), NumberFormat.getPercentFormat().parseBigDecimal("12.50%"));
+
+    int[] pos = {4};
+    assertEquals(new BigDecimal("7.25"), format.parseBigDecimal("sum=7.25", pos));
+    assertEquals(8, pos[0]);
+    try {
+      format.parseBigDecimal("1-2");
+      fail("Expecting NumberFormatException to be thrown");
+    } catch (NumberFormatException e) {
+    }
+    pos[0] = 4;
+    try {
+      format.parseBigDecimal("sum=.", pos);
+      fail("Expecting NumberFormatException to be thrown");
+    } catch (NumberFormatException e) {
+      assertEquals(4, pos[0]);
+    }
+  }
+
+  public void testParseLong() {
+    NumberFormat format = NumberFormat.getDecimalFormat();
+    assertEquals(1234567L, format.parseLong("1,234,567"));
+    assertEquals(-12L, format.parseLong("-12.000"));
+    assertEquals(Long.MIN_VALUE, format.parseLong("-9,223,372,036,854,775,808"));
+    assertEquals(Long.MAX_VALUE, format.parseLong("9223372036854775807"));
+    assertEquals(1500L, NumberFormat.getFormat("0.#E0").parseLong("1.5E3"));
+    assertEquals(5L, format.parseLong("5.00000000000000000000000"));
+    assertParseLongFails(format, "9223372036854775808");
+    assertParseLongFails(format, "1.5");
+    assertParseLongFails(format, "");
+    assertParseLongFails(NumberFormat.getPercentFormat(), "12%");
+  }
+
+  public void testParsePositionOnError() {
+    NumberFormat format = NumberFormat.getDecimalFormat();
+    int[] pos = {0};
+    for (String text : new String[] {"E5", ".", "3.1-", "1,23+21,7"}) {
+      try {
+        format.parse(text, pos);
+        fail("Expecting NumberFormatException to be thrown for " + text);
+      } catch (NumberFormatException e) {
+        assertEquals(text, 0, pos[0]);
+      }
+    }
+    pos[0] = 4;
+    assertEquals(7.25, format.parse("sum=7.25", pos), 0);
+    assertEquals(8, pos[0]);
+  }
+
+  public void testParseColumn() {
+    NumberFormat format = NumberFormat.getFormat("#,##0.00;(#,##0.00)");
+    String line = "1,234.57;;(12.5);x;7;1.2.3";
+    int[] starts = {0, 9, 10, 17, 19, 21};
+    int[] ends = {8, 9, 16, 18, 20, 26};
+    double[] values = new double[starts.length];
+    BitSet failures = format.parseColumn(line, starts, ends, values);
+    assertEquals("{1, 3, 5}", failures.toString());
+    assertEquals(1234.57, values[0], 0);
+    assertTrue(Double.isNaN(values[1]));
+    assertEquals(-12.5, values[2], 0);
+    assertTrue(Double.isNaN(values[3]));
+    assertEquals(7, values[4], 0);
+    assertTrue(Double.isNaN(values[5]));
+
+    failures = new BitSet();
+    values = new double[starts.length];
+    assertEquals(1, format.parseColumn(line, starts, ends, 2, 4, values, failures));
+    assertEquals("{3}", failures.toString());
+    assertEquals(0, values[0], 0);
+  }
+
+  public void testParseRegion() {
+    NumberFormat format = NumberFormat.getFormat("#,##0.00;(#,##0.00)");
+    String line = "a;1,234.57;(12.5);x";
+    assertEquals(1234.57, format.parse(line, 2, 10), 0);
+    assertEquals(-12.5, format.parse(line, 11, 17), 0);
+    assertEquals(1234.57, format.parse(new StringBuilder(line), 2, 10), 0);
+    try {
+      format.parse(line, 2, 11);
+      fail("Expecting NumberFormatException to be thrown");
+    } catch (NumberFormatException e) {
+    }
+    try {
+      format.parse(line, 2, 2);
+      fail("Expecting NumberFormatException to be thrown");
+    } catch (NumberFormatException e) {
+    }
+
+    // more digits than fit into a long
+    assertEquals(
+        0.30000000000000004, format.parse("0.300000000000000044408920985006261616945", 0, 41), 0);
+    assertEquals(12345678901234567890.0, format.parse("12,345,678,901,234,567,890", 0, 26), 0);
+  }
+
   public void testPrecentParse() {
     Number value;
 
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.jvm;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+import org.gwtproject.i18n.client.NumberFormat;
+
+/** Tests that {@link NumberFormat} instances can be shared between threads. */
+public class NumberFormatConcurrency_Test extends TestCase {
+
+  private static final int THREADS = 8;
+  private static final int ITERATIONS = 20000;
+
+  @Override
+  public void setUp() throws Exception {
+    System.setProperty("locale", "en");
+  }
+
+  public void testSharedFormats() throws Exception {
+    final NumberFormat[] formats = {
+      NumberFormat.getFormat("#,##0.00"),
+      NumberFormat.getFormat("0.###E0"),
+      NumberFormat.getFormat("#,##0.00;(#,##0.00)"),
+      NumberFormat.getCurrencyFormat("USD"),
+      NumberFormat.getPercentFormat()
+    };
+
+    // the expected results are computed by a single thread
+    final String[][] expected = new String[formats.length][ITERATIONS];
+    for (int f = 0; f < formats.length; f++) {
+      for (int i = 0; i < ITERATIONS; i++) {
+        expected[f][i] = formats[f].format(value(i));
+      }
+    }
+    assertEquals("1,234,567.89", formats[0].format(new BigDecimal("1234567.891")));
+    assertEquals("(12.35)", formats[2].format(new BigDecimal("-12.345")));
+
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        final int offset = t;
+        results.add(
+            executor.submit(
+                new Callable<String>() {
+                  @Override
+                  public String call() throws Exception {
+                    start.await();
+                    for (int n = 0; n < ITERATIONS; n++) {
+                      // each thread walks the values in a different order
+                      int i = (n * (2 * offset + 1) + offset * 997) % ITERATIONS;
+                      for (int f = 0; f < formats.length; f++) {
+                        String actual = formats[f].format(value(i));
+                        if (!expected[f][i].equals(actual)) {
+                          return formats[f].getPattern()
+                              + ": expected "
+                              + expected[f][i]
+                              + " but was "
+                              + actual;
+                        }
+                      }
+                    }
+                    return null;
+                  }
+                }));
+      }
+      start.countDown();
+      for (Future<String> result : results) {
+        assertNull(result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testSharedParse() throws Exception {
+    final NumberFormat format = NumberFormat.getFormat("#,##0.00");
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        results.add(
+            executor.submit(
+                new Callable<String>() {
+                  @Override
+                  public String call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                      String text = format.format(value(i));
+                      double parsed = format.parse(text);
+                      if (parsed != value(i).setScale(2, RoundingMode.HALF_UP).doubleValue()) {
+                        return text + " parsed as " + parsed;
+                      }
+                    }
+                    return null;
+                  }
+                }));
+      }
+      start.countDown();
+      for (Future<String> result : results) {
+        assertNull(result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testOverrideFractionDigits() {
+    NumberFormat format = NumberFormat.getFormat("#,##0.00");
+    NumberFormat derived = format.overrideFractionDigits(0, 4);
+    assertNotSame(format, derived);
+    assertEquals("1,234.5678", derived.format(new BigDecimal("1234.5678")));
+    assertEquals("1,234.57", format.format(new BigDecimal("1234.5678")));
+    assertSame(format, format.overrideFractionDigits(2));
+  }
+
+  /** Returns a value with mixed signs, magnitudes and scales; BigDecimal avoids JS interop. */
+  private static BigDecimal value(int i) {
+    long unscaled = (i * 7919L) * (i % 3 == 0 ? 104729L : 1L);
+    if (i % 5 == 0) {
+      unscaled = -unscaled;
+    }
+    return BigDecimal.valueOf(unscaled, i % 7);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.jvm;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.gwtproject.i18n.client.NumberFormat;
+
+/** Tests formatting and parsing doubles with {@link NumberFormat} on the JVM. */
+public class NumberFormatDouble_Test extends TestCase {
+
+  @Override
+  public void setUp() throws Exception {
+    System.setProperty("locale", "en");
+  }
+
+  public void testToScaledString() {
+    assertScaledString("1", -1, 0.1);
+    assertScaledString("12345", 38, 12345e38);
+    assertScaledString("25", -2, 0.25);
+    assertScaledString("1", 23, 1e23);
+    assertScaledString("0", 0, 0);
+    assertScaledString("-15", -1, -1.5);
+    assertScaledString("5", -324, Double.MIN_VALUE);
+    assertScaledString("1", -323, 2 * Double.MIN_VALUE);
+    assertScaledString("17976931348623157", 292, Double.MAX_VALUE);
+    assertScaledString("9007199254740992", 0, 9007199254740993.0);
+    assertScaledString("Infinity", 0, Double.POSITIVE_INFINITY);
+    assertScaledString("-Infinity", 0, Double.NEGATIVE_INFINITY);
+    assertScaledString("NaN", 0, Double.NaN);
+  }
+
+  public void testShortestRoundTrip() {
+    Random random = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      double value = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        continue;
+      }
+      StringBuilder buf = new StringBuilder();
+      int scale = NumberFormat.toScaledString(buf, value);
+      BigDecimal decimal = new BigDecimal(new BigInteger(buf.toString()), -scale);
+      assertEquals(buf + "E" + scale, value, decimal.doubleValue(), 0);
+      assertTrue(buf.length() <= 17);
+    }
+  }
+
+  public void testParseRoundTrip() {
+    NumberFormat format = NumberFormat.getFormat("0.################E0");
+    Random random = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      double value = Double.longBitsToDouble(random.nextLong());
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        continue;
+      }
+      String text = format.format(new BigDecimal(Double.toString(value)));
+      assertEquals(text, value, format.parse(text), 0);
+    }
+    assertEquals(Double.MIN_VALUE, format.parse("4.9E-324"), 0);
+    assertEquals(Double.MAX_VALUE, format.parse("1.7976931348623157E308"), 0);
+    assertEquals(Double.POSITIVE_INFINITY, format.parse("1E309"), 0);
+    assertEquals(0.0, format.parse("1E-400"), 0);
+  }
+
+  public void testFormat() {
+    assertEquals("$123,456.790", NumberFormat.getFormat("\u00a4#,###.000").format(123456.7899));
+    assertEquals("123.4579", NumberFormat.getFormat("0.0000").format(123.45789179565757f));
+    assertEquals(
+        "112,589,990,684,262.4", NumberFormat.getFormat("#,##0.0").format(112589990684262.41));
+    assertEquals("0.2", NumberFormat.getFormat("0.#").format(0.15));
+    assertEquals("1.01", NumberFormat.getFormat("0.00").format(1.005));
+    assertEquals("-1,234.568", NumberFormat.getDecimalFormat().format(-1234.5678));
+    assertEquals("1E3", NumberFormat.getScientificFormat().format(1234.5));
+    assertEquals("12%", NumberFormat.getPercentFormat().format(0.123));
+  }
+
+  public void testMultiplierOverflow() {
+    // the product of these values and the multiplier does not fit into a double
+    assertOverflow(NumberFormat.getPercentFormat(), 1e308, "1e308");
+    assertOverflow(NumberFormat.getFormat("0.00\u2030"), 2e306, "2e306");
+    assertOverflow(NumberFormat.getFormat("0.00\u2030"), -2e306, "-2e306");
+  }
+
+  private static void assertOverflow(NumberFormat format, double value, String decimal) {
+    String expected = format.format(new BigDecimal(decimal));
+    assertEquals(expected, format.format(value));
+    assertEquals(expected, format.formatTo(value, new StringBuilder()).toString());
+
+    char[] chars = new char[expected.length()];
+    int[] endOffsets = new int[1];
+    assertEquals(1, format.formatAll(new double[] {value}, chars, endOffsets));
+    assertEquals(expected, new String(chars, 0, endOffsets[0]));
+
+    byte[] bytes = new byte[expected.length() * 3];
+    int end = format.formatTo(value, bytes, 0);
+    assertEquals(expected, new String(bytes, 0, end, StandardCharsets.UTF_8));
+  }
+
+  private static void assertScaledString(String expectedDigits, int expectedScale, double value) {
+    StringBuilder buf = new StringBuilder();
+    int scale = NumberFormat.toScaledString(buf, value);
+    assertEquals(expectedDigits, buf.toString());
+    assertEquals(expectedScale, scale);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2018 The GWT Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gwtproject.i18n.jvm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.gwtproject.i18n.client.NumberFormat;
+import org.gwtproject.i18n.client.NumberFormatRegistry;
+import org.gwtproject.i18n.processor.GwtLocaleFactoryImpl;
+import org.gwtproject.i18n.shared.GwtLocale;
+import org.gwtproject.i18n.shared.GwtLocaleFactory;
+import org.gwtproject.i18n.shared.cldr.NumberConstants;
+
+/** Tests getting formats for locales other than the current one. */
+public class NumberFormatRegistry_Test extends TestCase {
+
+  private final GwtLocaleFactory factory = new GwtLocaleFactoryImpl();
+
+  @Override
+  public void setUp() throws Exception {
+    System.setProperty("locale", "en");
+  }
+
+  public void testCurrentLocale() {
+    GwtLocale en = factory.fromString("en");
+    GwtLocale enUs = factory.fromString("en_US");
+    NumberFormat format = NumberFormat.getDecimalFormat(enUs);
+    assertSame(format, NumberFormat.getDecimalFormat(enUs));
+    NumberFormatRegistry registry = NumberFormat.getNumberFormatRegistry();
+    assertSame(registry.getNumberConstants(en), registry.getNumberConstants(enUs));
+    assertEquals("1,234.5", format.format(new BigDecimal("1234.5")));
+    assertEquals("12%", NumberFormat.getPercentFormat(en).format(new BigDecimal("0.12")));
+    assertEquals("$1,234.50", NumberFormat.getCurrencyFormat(en).format(new BigDecimal("1234.5")));
+  }
+
+  public void testRegisteredLocale() {
+    NumberFormatRegistry registry = NumberFormat.getNumberFormatRegistry();
+    GwtLocale de = factory.fromString("de");
+    GwtLocale deCh = factory.fromString("de_CH");
+    assertFalse(registry.isSupported(deCh));
+    try {
+      NumberFormat.getDecimalFormat(deCh);
+      fail("Expecting IllegalArgumentException for an unknown locale");
+    } catch (IllegalArgumentException e) {
+    }
+
+    Map<String, String> german = new HashMap<>();
+    german.put("decimalSeparator", ",");
+    german.put("groupingSeparator", ".");
+    german.put("monetarySeparator", ",");
+    german.put("monetaryGroupingSeparator", ".");
+    german.put("currencyPattern", "#,##0.00 \u00a4");
+    german.put("defCurrencyCode", "EUR");
+    NumberConstants en = registry.getNumberConstants(factory.fromString("en"));
+    NumberConstants constants = override(en, german);
+    registry.register(de, constants);
+    assertTrue(registry.isSupported(deCh));
+    assertSame(constants, registry.getNumberConstants(deCh));
+
+    NumberFormat decimal = NumberFormat.getDecimalFormat(deCh);
+    assertEquals("1.234,5", decimal.format(new BigDecimal("1234.5")));
+    assertEquals(1234.5, decimal.parse("1.234,5"), 0);
+    assertEquals(
+        "1.234,50 €", NumberFormat.getCurrencyFormat(de).format(new BigDecimal("1234.5")));
+    NumberFormat chf = NumberFormat.getCurrencyFormat(deCh, "CHF");
+    assertSame(chf, NumberFormat.getCurrencyFormat(deCh, "CHF"));
+    assertEquals("1.234,50 CHF", chf.format(new BigDecimal("1234.5")));
+    NumberFormat simple = NumberFormat.getSimpleCurrencyFormat(de, "EUR");
+    assertSame(simple, NumberFormat.getSimpleCurrencyFormat(deCh, "EUR"));
+    assertEquals("€1.234,50", simple.format(new BigDecimal("1234.5")));
+    assertEquals("0,50", NumberFormat.getFormat(de, "0.00").format(new BigDecimal("0.5")));
+
+    // the current locale is not affected
+    assertEquals("1,234.5", NumberFormat.getDecimalFormat().format(new BigDecimal("1234.5")));
+  }
+
+  /** Returns constants differing from {@code base} in the values of some methods. */
+  private static NumberConstants override(
+      final NumberConstants base, final Map<String, String> values) {
+    return (NumberConstants)
+        Proxy.newProxyInstance(
+            NumberConstants.class.getClassLoader(),
+            new Class<?>[] {NumberConstants.class},
+            new InvocationHandler() {
+              @Override
+              public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("equals")) {
+                  return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                  return System.identityHashCode(proxy);
+                } else if (values.containsKey(method.getName())) {
+                  return values.get(method.getName());
+                }
+                return method.invoke(base, args);
+              }
+            });
+  }
+}